@@ -47,6 +47,38 @@ public class Configuration {
 
     private boolean enableOffset;
 
+    private int maxChunkLength;
+
+    private boolean enableParallelSegmentation;
+
+    private int parallelSegmentationThreshold;
+
+    private boolean enableSegmentCache;
+
+    private boolean enableQueryMemo;
+
+    private boolean enableAsciiFastPath;
+
+    private long maxSegmentMillis;
+
+    private int maxTokensPerDocument;
+
+    private boolean dropOnBudgetExceeded;
+
+    private int adaptiveNlpMaxLength;
+
+    private int adaptiveStandardMaxLength;
+
+    private boolean enableHybridRecognition;
+
+    private int coalesceLineLength;
+
+    private int indexModeMinLength;
+
+    private int indexModeMaxSubWords;
+
+    private int indexModeMaxFrequency;
+
     @Inject
     public Configuration(Environment env, Settings settings) {
         this.environment = env;
@@ -66,6 +98,26 @@ public class Configuration {
         this.enableRemoteDict = settings.get("enable_remote_dict", "true").equals("true");
         this.enableNormalization = settings.get("enable_normalization", "false").equals("true");
         this.enableOffset = settings.get("enable_offset", "true").equals("true");
+        this.maxChunkLength = settings.getAsInt("max_chunk_length", 0);
+        this.enableParallelSegmentation = settings.get("enable_parallel_segmentation", "false").equals("true");
+        this.parallelSegmentationThreshold = settings.getAsInt("parallel_segmentation_threshold", 4096);
+        this.enableSegmentCache = settings.get("enable_segment_cache", "false").equals("true");
+        this.enableQueryMemo = settings.get("enable_query_memo", "false").equals("true");
+        this.enableAsciiFastPath = settings.get("enable_ascii_fast_path", "false").equals("true");
+        this.maxSegmentMillis = settings.getAsLong("max_segment_millis", 0L);
+        this.maxTokensPerDocument = settings.getAsInt("max_tokens_per_document", 0);
+        String budgetPolicy = settings.get("segment_budget_policy", "fallback");
+        if (!budgetPolicy.equals("fallback") && !budgetPolicy.equals("drop")) {
+            throw new IllegalArgumentException("unknown hanlp segment_budget_policy [" + budgetPolicy + "], expected fallback or drop");
+        }
+        this.dropOnBudgetExceeded = budgetPolicy.equals("drop");
+        this.adaptiveNlpMaxLength = settings.getAsInt("adaptive_nlp_max_length", 32);
+        this.adaptiveStandardMaxLength = settings.getAsInt("adaptive_standard_max_length", 1024);
+        this.enableHybridRecognition = settings.get("enable_hybrid_recognition", "false").equals("true");
+        this.coalesceLineLength = settings.getAsInt("coalesce_line_length", 0);
+        this.indexModeMinLength = settings.getAsInt("index_mode_min_length", 2);
+        this.indexModeMaxSubWords = settings.getAsInt("index_mode_max_sub_words", 0);
+        this.indexModeMaxFrequency = settings.getAsInt("index_mode_max_frequency", 0);
         Dictionary.initial(this);
     }
 
@@ -210,4 +262,148 @@ public class Configuration {
         this.enableOffset = enableOffset;
         return this;
     }
+
+    public int getMaxChunkLength() {
+        return maxChunkLength;
+    }
+
+    public Configuration maxChunkLength(int maxChunkLength) {
+        this.maxChunkLength = maxChunkLength;
+        return this;
+    }
+
+    public boolean isEnableParallelSegmentation() {
+        return enableParallelSegmentation;
+    }
+
+    public Configuration enableParallelSegmentation(boolean enableParallelSegmentation) {
+        this.enableParallelSegmentation = enableParallelSegmentation;
+        return this;
+    }
+
+    public int getParallelSegmentationThreshold() {
+        return parallelSegmentationThreshold;
+    }
+
+    public Configuration parallelSegmentationThreshold(int parallelSegmentationThreshold) {
+        this.parallelSegmentationThreshold = parallelSegmentationThreshold;
+        return this;
+    }
+
+    public boolean isEnableSegmentCache() {
+        return enableSegmentCache;
+    }
+
+    public Configuration enableSegmentCache(boolean enableSegmentCache) {
+        this.enableSegmentCache = enableSegmentCache;
+        return this;
+    }
+
+    public boolean isEnableQueryMemo() {
+        return enableQueryMemo;
+    }
+
+    public Configuration enableQueryMemo(boolean enableQueryMemo) {
+        this.enableQueryMemo = enableQueryMemo;
+        return this;
+    }
+
+    public boolean isEnableAsciiFastPath() {
+        return enableAsciiFastPath;
+    }
+
+    public Configuration enableAsciiFastPath(boolean enableAsciiFastPath) {
+        this.enableAsciiFastPath = enableAsciiFastPath;
+        return this;
+    }
+
+    public long getMaxSegmentMillis() {
+        return maxSegmentMillis;
+    }
+
+    public Configuration maxSegmentMillis(long maxSegmentMillis) {
+        this.maxSegmentMillis = maxSegmentMillis;
+        return this;
+    }
+
+    public int getMaxTokensPerDocument() {
+        return maxTokensPerDocument;
+    }
+
+    public Configuration maxTokensPerDocument(int maxTokensPerDocument) {
+        this.maxTokensPerDocument = maxTokensPerDocument;
+        return this;
+    }
+
+    public boolean isDropOnBudgetExceeded() {
+        return dropOnBudgetExceeded;
+    }
+
+    public Configuration dropOnBudgetExceeded(boolean dropOnBudgetExceeded) {
+        this.dropOnBudgetExceeded = dropOnBudgetExceeded;
+        return this;
+    }
+
+    public int getAdaptiveNlpMaxLength() {
+        return adaptiveNlpMaxLength;
+    }
+
+    public Configuration adaptiveNlpMaxLength(int adaptiveNlpMaxLength) {
+        this.adaptiveNlpMaxLength = adaptiveNlpMaxLength;
+        return this;
+    }
+
+    public int getAdaptiveStandardMaxLength() {
+        return adaptiveStandardMaxLength;
+    }
+
+    public Configuration adaptiveStandardMaxLength(int adaptiveStandardMaxLength) {
+        this.adaptiveStandardMaxLength = adaptiveStandardMaxLength;
+        return this;
+    }
+
+    public boolean isEnableHybridRecognition() {
+        return enableHybridRecognition;
+    }
+
+    public Configuration enableHybridRecognition(boolean enableHybridRecognition) {
+        this.enableHybridRecognition = enableHybridRecognition;
+        return this;
+    }
+
+    public int getCoalesceLineLength() {
+        return coalesceLineLength;
+    }
+
+    public Configuration coalesceLineLength(int coalesceLineLength) {
+        this.coalesceLineLength = coalesceLineLength;
+        return this;
+    }
+
+    public int getIndexModeMinLength() {
+        return indexModeMinLength;
+    }
+
+    public Configuration indexModeMinLength(int indexModeMinLength) {
+        this.indexModeMinLength = indexModeMinLength;
+        return this;
+    }
+
+    public int getIndexModeMaxSubWords() {
+        return indexModeMaxSubWords;
+    }
+
+    public Configuration indexModeMaxSubWords(int indexModeMaxSubWords) {
+        this.indexModeMaxSubWords = indexModeMaxSubWords;
+        return this;
+    }
+
+    public int getIndexModeMaxFrequency() {
+        return indexModeMaxFrequency;
+    }
+
+    public Configuration indexModeMaxFrequency(int indexModeMaxFrequency) {
+        this.indexModeMaxFrequency = indexModeMaxFrequency;
+        return this;
+    }
 }
@@ -3,60 +3,113 @@ package com.hankcs.dic;
 import com.hankcs.hanlp.HanLP.Config;
 import com.hankcs.hanlp.corpus.io.ByteArray;
 import com.hankcs.hanlp.corpus.io.IOUtil;
+import com.hankcs.hanlp.corpus.tag.Nature;
 import com.hankcs.hanlp.dictionary.stopword.Filter;
 import com.hankcs.hanlp.dictionary.stopword.StopWordDictionary;
 import com.hankcs.hanlp.seg.common.Term;
 import com.hankcs.hanlp.utility.Predefine;
 import com.hankcs.hanlp.utility.TextUtility;
+import com.hankcs.lucene.NatureSet;
 
 import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @project: elasticsearch-analysis-hanlp
- * @description: 对原停用词过滤做了修改，删除了对词性过滤，只对停用词词典中词进行过滤
+ * @description: 对原停用词过滤做了修改，删除了对词性过滤，只对停用词词典中词进行过滤。
+ * 停用词保存在不可变的{@link StopWordSet}中，远程词典等增删词时整体替换
  * @author: Hankcs
  * @editer: Kenn
  * @create: 2019-03-18 19:16
  */
 public class CoreStopWordDictionary {
 
-    private static StopWordDictionary dictionary;
+    /**
+     * 当前的停用词，不可变，增删词时整体替换
+     */
+    private static volatile StopWordSet words;
 
-    private static Filter FILTER = term -> {
-        // 除掉停用词
-        String nature = term.nature != null ? term.nature.toString() : "空";
-        char firstChar = nature.charAt(0);
-        if (firstChar == 'w') {
-            return false;
-        } else {
-            return !com.hankcs.hanlp.dictionary.stopword.CoreStopWordDictionary.contains(term.word);
-        }
-    };
+    private static final LongAdder UPDATES = new LongAdder();
+
+    private static Filter FILTER = term -> shouldInclude(term.word, term.nature);
+    /**
+     * 标点的词性，按序号查表，不再对每个词取词性名称的首字母
+     */
+    private static final NatureSet PUNCTUATION = NatureSet.of(Collections.singletonList("w*"));
 
     public CoreStopWordDictionary() {
     }
 
     public static boolean contains(String key) {
-        return dictionary.contains(key);
+        return words.contains(key);
+    }
+
+    /**
+     * @return 当前的停用词集合，可以在一次分析中持有，不受之后增删词的影响
+     */
+    public static StopWordSet words() {
+        return words;
+    }
+
+    /**
+     * 触发停用词词典的加载，加载时需要读取词典文件，须在特权块中调用
+     */
+    public static void initial() {
+        // 调用任意静态方法即触发类初始化时的词典加载
     }
 
     private static boolean shouldInclude(Term term) {
         return FILTER.shouldInclude(term);
     }
 
+    private static boolean shouldInclude(CharSequence word, Nature nature) {
+        // 除掉标点和停用词
+        return !PUNCTUATION.contains(nature) && !words.contains(word);
+    }
+
     public static boolean shouldRemove(Term term) {
         return !shouldInclude(term);
     }
 
+    /**
+     * @param word 词，可以直接传入CharTermAttribute，不需要生成字符串
+     */
+    public static boolean shouldRemove(CharSequence word, Nature nature) {
+        return !shouldInclude(word, nature);
+    }
+
     public static boolean add(String stopWord) {
-        return dictionary.add(stopWord);
+        return update(Collections.singletonList(stopWord), Collections.emptyList());
     }
 
     public static boolean remove(String stopWord) {
-        return dictionary.remove(stopWord);
+        return update(Collections.emptyList(), Collections.singletonList(stopWord));
+    }
+
+    /**
+     * 一次增删一批词，生成新的集合后整体替换，分析线程要么看到全部变化，要么看不到任何变化
+     *
+     * @param added   增加的词
+     * @param removed 删除的词
+     * @return 停用词是否有变化
+     */
+    public static synchronized boolean update(Collection<String> added, Collection<String> removed) {
+        StopWordSet current = words;
+        StopWordSet updated = current.update(added, removed);
+        if (updated == current) {
+            return false;
+        }
+        words = updated;
+        UPDATES.increment();
+        DictionaryVersion.increment();
+        return true;
     }
 
     public static void apply(List<Term> termList) {
@@ -70,7 +123,20 @@ public class CoreStopWordDictionary {
 
     }
 
+    /**
+     * @return 停用词统计
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        StopWordSet current = words;
+        stats.put("words", current.size());
+        stats.put("memory_in_bytes", current.ramBytesUsed());
+        stats.put("updates", UPDATES.sum());
+        return stats;
+    }
+
     static {
+        StopWordDictionary dictionary;
         ByteArray byteArray = ByteArray.createByteArray(Config.CoreStopWordDictionaryPath + ".bin");
         if (byteArray == null) {
             try {
@@ -88,6 +154,7 @@ public class CoreStopWordDictionary {
             dictionary = new StopWordDictionary();
             dictionary.load(byteArray);
         }
+        words = StopWordSet.of(dictionary);
     }
 }
 
@@ -0,0 +1,53 @@
+package com.hankcs.dic;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 词典版本号，自定义词典或停用词词典每次重新加载、增删词后递增，
+ * 依赖词典内容的缓存据此判断是否失效。自定义词典另有单独的版本号，只依赖自定义词典的合并trie据此判断是否重建
+ * @author: Kenn
+ * @create: 2019-05-28 10:05
+ */
+public class DictionaryVersion {
+
+    private static final AtomicLong VERSION = new AtomicLong();
+
+    private static final AtomicLong CUSTOM_VERSION = new AtomicLong();
+
+    private DictionaryVersion() {
+    }
+
+    /**
+     * @return 当前词典版本号
+     */
+    public static long current() {
+        return VERSION.get();
+    }
+
+    /**
+     * 词典内容发生变化后调用
+     *
+     * @return 新的版本号
+     */
+    public static long increment() {
+        return VERSION.incrementAndGet();
+    }
+
+    /**
+     * @return 当前自定义词典版本号
+     */
+    public static long customDictionary() {
+        return CUSTOM_VERSION.get();
+    }
+
+    /**
+     * 自定义词典内容发生变化后调用，同时递增词典版本号
+     *
+     * @return 新的词典版本号
+     */
+    public static long incrementCustomDictionary() {
+        CUSTOM_VERSION.incrementAndGet();
+        return increment();
+    }
+}
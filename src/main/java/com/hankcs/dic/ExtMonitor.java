@@ -56,6 +56,7 @@ public class ExtMonitor implements Runnable {
             } catch (Exception e) {
                 logger.error("can not reload hanlp custom dictionary", e);
             }
+            DictionaryVersion.incrementCustomDictionary();
             DictionaryFileCache.setCustomDictionaryFileList(currentDictironaryFileList);
             DictionaryFileCache.writeCache();
             logger.info("finish reload hanlp custom dictionary");
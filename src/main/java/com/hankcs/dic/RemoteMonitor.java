@@ -161,6 +161,13 @@ public class RemoteMonitor implements Runnable {
             dicCategory, pathInfo.v1(), lastModifiedOfPreviousFetch, pathInfo.v2()
         );
         logger.info("finish load hanlp remote {} dict path: {}", dicCategory.getType(), location);
+        if (dicFetchStatus.getSuccessNum() > 0) {
+            if (dicCategory.equals(DicCategory.MAIN)) {
+                DictionaryVersion.incrementCustomDictionary();
+            } else {
+                DictionaryVersion.increment();
+            }
+        }
 
         if(dicFetchStatus.getLastModified() != null) {
             last_modified = DateUtils.formatDate(dicFetchStatus.getLastModified());
@@ -268,6 +275,9 @@ public class RemoteMonitor implements Runnable {
                     );
                     String line;
                     boolean firstLine = true;
+                    // 停用词的增删先收集起来，读完后一次性替换，同一个词以最后一条命令为准
+                    Set<String> addedStopWords = new LinkedHashSet<>();
+                    Set<String> removedStopWords = new LinkedHashSet<>();
                     while ((line = in.readLine()) != null) {
                         try {
                             if (firstLine) {
@@ -299,14 +309,12 @@ public class RemoteMonitor implements Runnable {
                                 if(updateCmd.isSkip()){
                                     // skip, do nothing
                                 } else if(updateCmd.isAdd()) {
-                                    if(!CoreStopWordDictionary.contains(updateCmd.getWord())){
-                                        CoreStopWordDictionary.add(updateCmd.getWord());
-                                    }
+                                    removedStopWords.remove(updateCmd.getWord());
+                                    addedStopWords.add(updateCmd.getWord());
                                     dicFetchStatus.incrSuccessNum();
                                 } else if(updateCmd.isDelete()){
-                                    if(CoreStopWordDictionary.contains(updateCmd.getWord())) {
-                                        CoreStopWordDictionary.remove(updateCmd.getWord());
-                                    }
+                                    addedStopWords.remove(updateCmd.getWord());
+                                    removedStopWords.add(updateCmd.getWord());
                                     dicFetchStatus.incrSuccessNum();
                                 } else {
                                     final String msg = String.format("unknown update cmd = %s", line);
@@ -321,6 +329,9 @@ public class RemoteMonitor implements Runnable {
                             if (dicFetchStatus.getFailNum() < 3) logger.error(String.format("line = %s", line), e);
                         }
                     }
+                    if (!addedStopWords.isEmpty() || !removedStopWords.isEmpty()) {
+                        CoreStopWordDictionary.update(addedStopWords, removedStopWords);
+                    }
 
                 } else {
                     dicFetchStatus.setSampleException(
@@ -0,0 +1,209 @@
+package com.hankcs.dic;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 不可变的停用词集合。所有词的字符连续存放在一个char数组中，用开放寻址的int数组做哈希表，
+ * 可以直接按char缓冲区或CharSequence查询，查询时不分配对象。增删词时生成新的集合，由调用方整体替换引用
+ * @author: Kenn
+ * @create: 2019-06-21 10:00
+ */
+public final class StopWordSet {
+
+    public static final StopWordSet EMPTY = of(Collections.emptyList());
+
+    /**
+     * 所有词的字符
+     */
+    private final char[] chars;
+    /**
+     * 第i个词为chars[starts[i], starts[i + 1])
+     */
+    private final int[] starts;
+
+    private final int[] hashes;
+    /**
+     * 哈希槽，存放词的序号加1，0表示空槽
+     */
+    private final int[] slots;
+
+    private final int mask;
+
+    private StopWordSet(char[] chars, int[] starts, int size) {
+        this.chars = chars;
+        this.starts = starts;
+        this.hashes = new int[size];
+        int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < size; i++) {
+            int hash = hash(chars, starts[i], starts[i + 1] - starts[i]);
+            hashes[i] = hash;
+            int slot = spread(hash) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i + 1;
+        }
+    }
+
+    /**
+     * @param words 停用词，空串和重复的词被忽略
+     * @return 停用词集合
+     */
+    public static StopWordSet of(Collection<String> words) {
+        List<String> distinct = new ArrayList<>(words.size());
+        int length = 0;
+        Set<String> seen = new HashSet<>(words.size() * 2);
+        for (String word : words) {
+            if (word != null && !word.isEmpty() && seen.add(word)) {
+                distinct.add(word);
+                length += word.length();
+            }
+        }
+        char[] chars = new char[length];
+        int[] starts = new int[distinct.size() + 1];
+        int offset = 0;
+        for (int i = 0; i < distinct.size(); i++) {
+            String word = distinct.get(i);
+            word.getChars(0, word.length(), chars, offset);
+            starts[i] = offset;
+            offset += word.length();
+        }
+        starts[distinct.size()] = offset;
+        return new StopWordSet(chars, starts, distinct.size());
+    }
+
+    /**
+     * @return 词数
+     */
+    public int size() {
+        return hashes.length;
+    }
+
+    public boolean contains(char[] buffer, int offset, int length) {
+        int hash = hash(buffer, offset, length);
+        for (int slot = spread(hash) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int index = slots[slot] - 1;
+            if (hashes[index] == hash && equals(index, buffer, offset, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean contains(CharSequence word) {
+        int length = word.length();
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + word.charAt(i);
+        }
+        for (int slot = spread(hash) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int index = slots[slot] - 1;
+            if (hashes[index] == hash && starts[index + 1] - starts[index] == length) {
+                int start = starts[index];
+                int i = 0;
+                while (i < length && chars[start + i] == word.charAt(i)) {
+                    i++;
+                }
+                if (i == length) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在当前集合上增删词，生成新的集合，当前集合不变
+     *
+     * @param added   增加的词
+     * @param removed 删除的词，同一个词同时出现在两边时以删除为准
+     * @return 新的集合，内容没有变化时返回当前集合
+     */
+    public StopWordSet update(Collection<String> added, Collection<String> removed) {
+        Set<String> removing = new HashSet<>(removed);
+        boolean changed = false;
+        for (String word : removing) {
+            changed |= word != null && contains(word);
+        }
+        for (String word : added) {
+            changed |= word != null && !word.isEmpty() && !removing.contains(word) && !contains(word);
+        }
+        if (!changed) {
+            return this;
+        }
+        List<String> words = new ArrayList<>(size() + added.size());
+        for (String word : words()) {
+            if (!removing.contains(word)) {
+                words.add(word);
+            }
+        }
+        for (String word : added) {
+            if (word != null && !removing.contains(word)) {
+                words.add(word);
+            }
+        }
+        return of(words);
+    }
+
+    /**
+     * @return 所有词，按加入的顺序
+     */
+    public List<String> words() {
+        List<String> words = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            words.add(new String(chars, starts[i], starts[i + 1] - starts[i]));
+        }
+        return words;
+    }
+
+    /**
+     * @return 字符和哈希表占用的字节数（不含对象头）
+     */
+    public long ramBytesUsed() {
+        return (long)chars.length * Character.BYTES + (long)(starts.length + hashes.length + slots.length) * Integer.BYTES;
+    }
+
+    private boolean equals(int index, char[] buffer, int offset, int length) {
+        int start = starts[index];
+        if (starts[index + 1] - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[start + i] != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 与String.hashCode相同的算法
+     */
+    private static int hash(char[] buffer, int offset, int length) {
+        int hash = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        return hash;
+    }
+
+    /**
+     * 中文字符的哈希低位分布不均，混入高位后再取槽
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        return words().toString();
+    }
+}
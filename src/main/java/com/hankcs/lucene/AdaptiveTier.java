@@ -0,0 +1,62 @@
+package com.hankcs.lucene;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 自适应分词的档位，hanlp_adaptive按每次交给分词器的文本长度选择档位：
+ * 短文本用NLP分词，中等长度用标准分词，长文本用极速词典分词。每个档位统计文本数、字符数和耗时
+ * @author: Kenn
+ * @create: 2019-06-03 10:20
+ */
+public enum AdaptiveTier {
+    /**
+     * NLP分词，开启全部命名实体识别和词性标注
+     */
+    NLP,
+    /**
+     * 标准分词
+     */
+    STANDARD,
+    /**
+     * 极速词典分词
+     */
+    SPEED;
+
+    private final LongAdder texts = new LongAdder();
+
+    private final LongAdder chars = new LongAdder();
+
+    private final LongAdder nanos = new LongAdder();
+
+    /**
+     * 记录一次分词
+     *
+     * @param length 文本长度
+     * @param nanos  分词耗时
+     */
+    void record(int length, long nanos) {
+        this.texts.increment();
+        this.chars.add(length);
+        this.nanos.add(nanos);
+    }
+
+    /**
+     * @return 各档位的统计
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        for (AdaptiveTier tier : values()) {
+            Map<String, Object> tierStats = new HashMap<>();
+            tierStats.put("texts", tier.texts.sum());
+            tierStats.put("chars", tier.chars.sum());
+            tierStats.put("time_in_millis", TimeUnit.NANOSECONDS.toMillis(tier.nanos.sum()));
+            stats.put(tier.name().toLowerCase(Locale.ROOT), tierStats);
+        }
+        return stats;
+    }
+}
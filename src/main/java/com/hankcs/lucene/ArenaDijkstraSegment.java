@@ -0,0 +1,87 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.recognition.nr.JapanesePersonRecognition;
+import com.hankcs.hanlp.recognition.nr.PersonRecognition;
+import com.hankcs.hanlp.recognition.nr.TranslatedPersonRecognition;
+import com.hankcs.hanlp.recognition.ns.PlaceRecognition;
+import com.hankcs.hanlp.recognition.nt.OrganizationRecognition;
+import com.hankcs.hanlp.seg.Dijkstra.DijkstraSegment;
+import com.hankcs.hanlp.seg.common.Term;
+import com.hankcs.hanlp.seg.common.Vertex;
+import com.hankcs.hanlp.seg.common.WordNet;
+
+import java.util.List;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 在每线程复用的{@link LatticeArena}上求最短路的DijkstraSegment，
+ * 流程与DijkstraSegment.segSentence相同，只是不再为每次求解构建Graph
+ * @author: Kenn
+ * @create: 2019-06-13 11:00
+ */
+public class ArenaDijkstraSegment extends DijkstraSegment {
+
+    @Override
+    public List<Term> segSentence(char[] sentence) {
+        WordNet wordNetOptimum = new WordNet(sentence);
+        WordNet wordNetAll = new WordNet(wordNetOptimum.charArray);
+        generateWordNet(wordNetAll);
+        List<Vertex> vertexList = shortestPath(wordNetAll);
+        if (config.useCustomDictionary) {
+            // 与DijkstraSegment一致，合并结果未被使用
+            if (config.indexMode > 0) {
+                combineByCustomDictionary(vertexList, wordNetAll);
+            } else {
+                combineByCustomDictionary(vertexList);
+            }
+        }
+        if (config.numberQuantifierRecognize) {
+            mergeNumberQuantifier(vertexList, wordNetAll, config);
+        }
+        if (config.ner) {
+            wordNetOptimum.addAll(vertexList);
+            int preSize = wordNetOptimum.size();
+            if (config.nameRecognize) {
+                PersonRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+            }
+            if (config.translatedNameRecognize) {
+                TranslatedPersonRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+            }
+            if (config.japaneseNameRecognize) {
+                JapanesePersonRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+            }
+            if (config.placeRecognize) {
+                PlaceRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+            }
+            if (config.organizationRecognize) {
+                vertexList = shortestPath(wordNetOptimum);
+                wordNetOptimum.clear();
+                wordNetOptimum.addAll(vertexList);
+                preSize = wordNetOptimum.size();
+                OrganizationRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+            }
+            if (wordNetOptimum.size() != preSize) {
+                vertexList = shortestPath(wordNetOptimum);
+            }
+        }
+        if (config.indexMode > 0) {
+            return decorateResultForIndexMode(vertexList, wordNetAll);
+        }
+        if (config.speechTagging) {
+            speechTagging(vertexList);
+        }
+        return convert(vertexList, config.offset);
+    }
+
+    /**
+     * 代替dijkstra(generateBiGraph(wordNet))
+     */
+    static List<Vertex> shortestPath(WordNet wordNet) {
+        LatticeArena arena = LatticeArena.acquire(wordNet);
+        try {
+            return arena.shortestPath();
+        } finally {
+            arena.release();
+        }
+    }
+}
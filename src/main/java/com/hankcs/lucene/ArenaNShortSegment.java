@@ -0,0 +1,106 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.recognition.nr.JapanesePersonRecognition;
+import com.hankcs.hanlp.recognition.nr.PersonRecognition;
+import com.hankcs.hanlp.recognition.nr.TranslatedPersonRecognition;
+import com.hankcs.hanlp.recognition.ns.PlaceRecognition;
+import com.hankcs.hanlp.recognition.nt.OrganizationRecognition;
+import com.hankcs.hanlp.seg.NShort.NShortSegment;
+import com.hankcs.hanlp.seg.common.Term;
+import com.hankcs.hanlp.seg.common.Vertex;
+import com.hankcs.hanlp.seg.common.WordNet;
+import com.hankcs.hanlp.utility.Predefine;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 在每线程复用的{@link LatticeArena}上求N-最短路和最短路的NShortSegment。
+ * 流程与NShortSegment.segSentence相同，粗分结果仍取前nKind * 2条路径，
+ * 但回溯时取够即停止，不再枚举同一名次上权重相同的其余路径
+ * @author: Kenn
+ * @create: 2019-06-13 11:30
+ */
+public class ArenaNShortSegment extends NShortSegment {
+
+    @Override
+    public List<Term> segSentence(char[] sentence) {
+        WordNet wordNetOptimum = new WordNet(sentence);
+        WordNet wordNetAll = new WordNet(sentence);
+        List<List<Vertex>> coarseResult = biSegment(sentence, 2, wordNetOptimum, wordNetAll);
+        boolean nerChanged = false;
+        for (List<Vertex> vertexList : coarseResult) {
+            if (config.ner) {
+                wordNetOptimum.addAll(vertexList);
+                int preSize = wordNetOptimum.size();
+                if (config.nameRecognize) {
+                    PersonRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                }
+                if (config.translatedNameRecognize) {
+                    TranslatedPersonRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                }
+                if (config.japaneseNameRecognize) {
+                    JapanesePersonRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                }
+                if (config.placeRecognize) {
+                    PlaceRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                }
+                if (config.organizationRecognize) {
+                    vertexList = ArenaDijkstraSegment.shortestPath(wordNetOptimum);
+                    wordNetOptimum.addAll(vertexList);
+                    OrganizationRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                }
+                if (!nerChanged && preSize != wordNetOptimum.size()) {
+                    nerChanged = true;
+                }
+            }
+        }
+        List<Vertex> vertexList = coarseResult.get(0);
+        if (nerChanged) {
+            vertexList = ArenaDijkstraSegment.shortestPath(wordNetOptimum);
+        }
+        if (config.numberQuantifierRecognize) {
+            mergeNumberQuantifier(vertexList, wordNetAll, config);
+        }
+        if (config.indexMode > 0) {
+            return decorateResultForIndexMode(vertexList, wordNetAll);
+        }
+        if (config.speechTagging) {
+            speechTagging(vertexList);
+        }
+        if (config.useCustomDictionary) {
+            // 与NShortSegment一致，合并结果未被使用
+            if (config.indexMode > 0) {
+                combineByCustomDictionary(vertexList, wordNetAll);
+            } else {
+                combineByCustomDictionary(vertexList);
+            }
+        }
+        return convert(vertexList, config.offset);
+    }
+
+    @Override
+    public List<List<Vertex>> biSegment(char[] sSentence, int nKind, WordNet wordNetOptimum, WordNet wordNetAll) {
+        List<List<Vertex>> coarseResult = new LinkedList<>();
+        generateWordNet(wordNetAll);
+        LatticeArena arena = LatticeArena.acquire(wordNetAll);
+        try {
+            List<int[]> paths = arena.nShortPaths(nKind, Math.min(nKind * 2, Predefine.MAX_SEGMENT_NUM));
+            if (paths.size() == 0) {
+                throw new RuntimeException(nKind + "-最短路径求解失败，请检查词网是否存在负圈或悬孤节点");
+            }
+            for (int[] path : paths) {
+                List<Vertex> vertexList = new LinkedList<>();
+                for (int index : path) {
+                    vertexList.add(arena.vertex(index));
+                }
+                generateWord(vertexList, wordNetOptimum);
+                coarseResult.add(vertexList);
+            }
+        } finally {
+            arena.release();
+        }
+        return coarseResult;
+    }
+}
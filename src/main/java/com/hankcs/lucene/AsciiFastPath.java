@@ -0,0 +1,304 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.collection.trie.DoubleArrayTrie;
+import com.hankcs.hanlp.collection.trie.bintrie.BaseNode;
+import com.hankcs.hanlp.collection.trie.bintrie.BinTrie;
+import com.hankcs.hanlp.corpus.tag.Nature;
+import com.hankcs.hanlp.dictionary.CoreDictionary;
+import com.hankcs.hanlp.dictionary.CustomDictionary;
+import com.hankcs.hanlp.dictionary.other.CharType;
+import com.hankcs.hanlp.seg.common.Term;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 西文快速通道，文本按空格切成片段，纯ASCII且不含词典词的片段按HanLP的字符类型表直接切成原子，
+ * 其余片段连同相邻的空格交给分词器。维特比、最短路分词器对这类片段的输出就是原子序列，
+ * 空格原子又把词网切断，因此切分结果与整段交给分词器一致。邮箱和网址作为一个词输出，不再切开
+ * @author: Kenn
+ * @create: 2019-05-30 10:15
+ */
+public class AsciiFastPath {
+    /**
+     * 片段分隔符，半角空格在字符类型表中自成一类，不会与ASCII片段的首尾字符合并成一个原子
+     */
+    private static final char SEPARATOR = ' ';
+
+    private static final String[] URL_PREFIXES = {"http://", "https://", "ftp://", "www."};
+
+    private AsciiFastPath() {
+    }
+
+    /**
+     * 分词
+     *
+     * @param segmenter        对需要分词的片段分词，offset相对于片段。须使用{@link SegmentEngine#isAtomic()}的分词器且开启了offset，
+     *                         开启并行分词时片段照常并行
+     * @param text             文本
+     * @param customDictionary 分词器是否使用自定义词典
+     * @return 分词结果，offset相对于整个text
+     */
+    public static List<Term> seg(Function<char[], List<Term>> segmenter, char[] text, boolean customDictionary) {
+        if (HanLP.Config.Normalization) {
+            // 分词器内部会做全局正规化，原子与原文不再对应
+            return segmenter.apply(text);
+        }
+        List<Term> terms = null;
+        // 尚未输出的文本的起始位置
+        int pending = 0;
+        // pending开始的文本是否包含需要交给分词器的片段
+        boolean pendingSegment = false;
+        int length = text.length;
+        int start = 0;
+        while (start < length) {
+            if (text[start] == SEPARATOR) {
+                start++;
+                continue;
+            }
+            int end = start + 1;
+            while (end < length && text[end] != SEPARATOR) {
+                end++;
+            }
+            if (!isAscii(text, start, end) ||
+                (!isProtected(text, start, end) && hasDictionaryWord(text, start, end, customDictionary))) {
+                pendingSegment = true;
+            } else {
+                if (terms == null) {
+                    terms = new ArrayList<>();
+                }
+                if (pendingSegment) {
+                    // 片段前面的空格作为分词器输入的结尾，保证词网在此处被切断
+                    segment(segmenter, text, pending, start, terms);
+                    pendingSegment = false;
+                } else {
+                    atoms(text, pending, start, terms);
+                }
+                scan(text, start, end, terms);
+                pending = end;
+            }
+            start = end;
+        }
+        if (terms == null) {
+            return segmenter.apply(text);
+        }
+        if (pendingSegment) {
+            segment(segmenter, text, pending, length, terms);
+        } else {
+            atoms(text, pending, length, terms);
+        }
+        return terms;
+    }
+
+    /**
+     * 把[from, to)交给分词器
+     */
+    private static void segment(Function<char[], List<Term>> segmenter, char[] text, int from, int to, List<Term> terms) {
+        List<Term> termList = segmenter.apply(Arrays.copyOfRange(text, from, to));
+        for (Term term : termList) {
+            term.offset += from;
+            terms.add(term);
+        }
+    }
+
+    /**
+     * 切分一个ASCII片段，邮箱和网址作为整体，前后的标点照常切分
+     */
+    private static void scan(char[] text, int from, int to, List<Term> terms) {
+        int begin = protectedBegin(text, from, to);
+        int end = protectedEnd(text, begin, to);
+        if (isProtected(text, begin, end)) {
+            atoms(text, from, begin, terms);
+            terms.add(term(text, begin, end, Nature.nx));
+            atoms(text, end, to, terms);
+        } else {
+            atoms(text, from, to, terms);
+        }
+    }
+
+    /**
+     * 片段去掉首尾标点后是否为邮箱或网址
+     */
+    private static boolean isProtected(char[] text, int from, int to) {
+        int begin = protectedBegin(text, from, to);
+        int end = protectedEnd(text, begin, to);
+        return end > begin && (isUrl(text, begin, end) || isEmail(text, begin, end));
+    }
+
+    private static int protectedBegin(char[] text, int from, int to) {
+        while (from < to && isOpening(text[from])) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int protectedEnd(char[] text, int from, int to) {
+        while (to > from && isClosing(text[to - 1])) {
+            to--;
+        }
+        return to;
+    }
+
+    /**
+     * 按字符类型表切分原子，与HanLP的原子切分一致：同类字符合并，数字中间的逗号和句点并入数字
+     */
+    private static void atoms(char[] text, int from, int to, List<Term> terms) {
+        if (from >= to) {
+            return;
+        }
+        int start = from;
+        byte preType = CharType.get(text[from]);
+        for (int i = from + 1; i < to; i++) {
+            byte curType = CharType.get(text[i]);
+            if (curType != preType) {
+                if (preType == CharType.CT_NUM && (text[i] == ',' || text[i] == '.') && i + 1 < to &&
+                    CharType.get(text[i + 1]) == CharType.CT_NUM) {
+                    continue;
+                }
+                terms.add(term(text, start, i, nature(preType)));
+                start = i;
+            }
+            preType = curType;
+        }
+        terms.add(term(text, start, to, nature(preType)));
+    }
+
+    private static Nature nature(byte type) {
+        switch (type) {
+            case CharType.CT_NUM:
+                return Nature.m;
+            case CharType.CT_DELIMITER:
+            case CharType.CT_OTHER:
+                return Nature.w;
+            default:
+                return Nature.nx;
+        }
+    }
+
+    private static Term term(char[] text, int from, int to, Nature nature) {
+        Term term = new Term(new String(text, from, to - from), nature);
+        term.offset = from;
+        return term;
+    }
+
+    private static boolean isAscii(char[] text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text[i] >= 128) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 片段中是否有位置能匹配上核心词典或自定义词典中的词，有则交给分词器处理
+     */
+    private static boolean hasDictionaryWord(char[] text, int from, int to, boolean customDictionary) {
+        DoubleArrayTrie<CoreDictionary.Attribute> core = CoreDictionary.trie;
+        DoubleArrayTrie<CoreDictionary.Attribute> dat = customDictionary ? CustomDictionary.dat : null;
+        BinTrie<CoreDictionary.Attribute> trie = customDictionary ? CustomDictionary.trie : null;
+        for (int i = from; i < to; i++) {
+            if (startsWord(core, text, i, to) || (dat != null && startsWord(dat, text, i, to)) ||
+                (trie != null && startsWord(trie, text, i, to))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWord(DoubleArrayTrie<CoreDictionary.Attribute> trie, char[] text, int from, int to) {
+        int state = 1;
+        for (int i = from; i < to; i++) {
+            state = trie.transition(text[i], state);
+            if (state < 0) {
+                return false;
+            }
+            if (trie.output(state) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWord(BinTrie<CoreDictionary.Attribute> trie, char[] text, int from, int to) {
+        BaseNode<CoreDictionary.Attribute> node = trie;
+        for (int i = from; i < to; i++) {
+            node = node.transition(text[i]);
+            if (node == null) {
+                return false;
+            }
+            if (node.getValue() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isOpening(char c) {
+        return c == '(' || c == '[' || c == '{' || c == '<' || c == '"' || c == '\'';
+    }
+
+    private static boolean isClosing(char c) {
+        return c == ')' || c == ']' || c == '}' || c == '>' || c == '"' || c == '\'' ||
+            c == '.' || c == ',' || c == ';' || c == ':' || c == '!' || c == '?';
+    }
+
+    private static boolean isUrl(char[] text, int from, int to) {
+        for (String prefix : URL_PREFIXES) {
+            if (to - from > prefix.length() && startsWithIgnoreCase(text, from, prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWithIgnoreCase(char[] text, int from, String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase(text[from + i]) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 形如local@domain.tld，local由字母、数字和._%+-组成，domain由字母、数字和.-组成且至少有一个句点
+     */
+    private static boolean isEmail(char[] text, int from, int to) {
+        int at = -1;
+        for (int i = from; i < to; i++) {
+            if (text[i] == '@') {
+                if (at >= 0) {
+                    return false;
+                }
+                at = i;
+            }
+        }
+        if (at <= from || at >= to - 1) {
+            return false;
+        }
+        for (int i = from; i < at; i++) {
+            char c = text[i];
+            if (!Character.isLetterOrDigit(c) && ".-_%+".indexOf(c) < 0) {
+                return false;
+            }
+        }
+        int dot = -1;
+        for (int i = at + 1; i < to; i++) {
+            char c = text[i];
+            if (c == '.') {
+                if (i == at + 1 || text[i - 1] == '.') {
+                    return false;
+                }
+                dot = i;
+            } else if (!Character.isLetterOrDigit(c) && c != '-') {
+                return false;
+            }
+        }
+        return dot > 0 && dot < to - 1;
+    }
+}
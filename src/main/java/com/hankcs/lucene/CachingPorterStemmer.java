@@ -0,0 +1,120 @@
+package com.hankcs.lucene;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 直接在CharTermAttribute缓冲区上做porter词干提取，不再为每个英文词分配String。
+ * 英文词频近似Zipf分布，少数高频词占了大部分token，这里用一个直接映射的小缓存记住最近出现的词的词干，
+ * 命中时只需一次哈希和比较。缓存属于单个tokenizer或token filter，不需要同步
+ * @author: Kenn
+ * @create: 2019-06-19 09:30
+ */
+public final class CachingPorterStemmer {
+    /**
+     * 默认缓存槽数
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+    /**
+     * 超过该长度的词很少重复出现，不进入缓存
+     */
+    private static final int MAX_CACHED_LENGTH = 24;
+
+    private static final LongAdder WORDS = new LongAdder();
+
+    private static final LongAdder CACHE_HITS = new LongAdder();
+
+    private final PorterStemmer stemmer = new PorterStemmer();
+
+    private final int mask;
+    /**
+     * 缓存的原词，槽为空时为null
+     */
+    private final char[][] keys;
+    /**
+     * 原词对应的词干，与原词相同时为null
+     */
+    private final char[][] stems;
+
+    /**
+     * @param cacheSize 缓存槽数，向上取整为2的幂，0表示不缓存
+     */
+    public CachingPorterStemmer(int cacheSize) {
+        int size = cacheSize <= 1 ? Math.max(0, cacheSize) : Integer.highestOneBit(cacheSize - 1) << 1;
+        this.mask = size - 1;
+        this.keys = new char[size][];
+        this.stems = new char[size][];
+    }
+
+    /**
+     * 对termAtt中的词提取词干，结果直接写回termAtt的缓冲区
+     *
+     * @param termAtt 词
+     * @return 词被改变时返回true
+     */
+    public boolean stem(CharTermAttribute termAtt) {
+        char[] buffer = termAtt.buffer();
+        int length = termAtt.length();
+        WORDS.increment();
+        if (keys.length == 0 || length > MAX_CACHED_LENGTH) {
+            return stemInPlace(termAtt, buffer, length);
+        }
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        char[] key = keys[slot];
+        if (key != null && equals(key, buffer, length)) {
+            CACHE_HITS.increment();
+            char[] stem = stems[slot];
+            if (stem == null) {
+                return false;
+            }
+            System.arraycopy(stem, 0, buffer, 0, stem.length);
+            termAtt.setLength(stem.length);
+            return true;
+        }
+        key = new char[length];
+        System.arraycopy(buffer, 0, key, 0, length);
+        boolean stemmed = stemInPlace(termAtt, buffer, length);
+        keys[slot] = key;
+        stems[slot] = stemmed ? Arrays.copyOf(buffer, termAtt.length()) : null;
+        return stemmed;
+    }
+
+    private boolean stemInPlace(CharTermAttribute termAtt, char[] buffer, int length) {
+        if (!stemmer.stemInPlace(buffer, length)) {
+            return false;
+        }
+        termAtt.setLength(stemmer.getResultLength());
+        return true;
+    }
+
+    private static boolean equals(char[] key, char[] buffer, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != buffer[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 词干提取统计
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("words", WORDS.sum());
+        stats.put("cache_hits", CACHE_HITS.sum());
+        return stats;
+    }
+}
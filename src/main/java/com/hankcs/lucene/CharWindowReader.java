@@ -0,0 +1,318 @@
+package com.hankcs.lucene;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 可复用的字符窗口读取器，在缓冲区内原地查找行边界和句子边界，替代Scanner按行读取
+ * @author: Kenn
+ * @create: 2019-05-20 10:12
+ */
+public class CharWindowReader {
+    /**
+     * 初始缓冲区大小
+     */
+    private static final int INITIAL_SIZE = 1024;
+    /**
+     * reset时保留的最大缓冲区大小，超过则释放，避免单个超长文档长期占用内存
+     */
+    private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+    private Reader reader;
+    /**
+     * 字符窗口
+     */
+    private char[] buffer = new char[INITIAL_SIZE];
+    /**
+     * 窗口中第一个未消费字符的下标
+     */
+    private int position;
+    /**
+     * 窗口中有效字符的结束下标
+     */
+    private int limit;
+    /**
+     * reader是否已读完
+     */
+    private boolean eof;
+    /**
+     * 是否尚未读取任何片段
+     */
+    private boolean first;
+    /**
+     * 当前片段在窗口中的起始下标
+     */
+    private int sliceStart;
+    /**
+     * 当前片段长度（不含换行符）
+     */
+    private int sliceLength;
+    /**
+     * 当前片段是否以换行符结束
+     */
+    private boolean lineEnd;
+    /**
+     * 当前片段是否因找不到句子边界和空白而被强制截断
+     */
+    private boolean hardCut;
+    /**
+     * 当前片段是否为完整的一行，即结束于换行符或输入末尾
+     */
+    private boolean wholeLine;
+
+    public CharWindowReader() {
+    }
+
+    /**
+     * 重置读取器，复用已分配的缓冲区
+     *
+     * @param reader 输入
+     */
+    public void reset(Reader reader) {
+        this.reader = reader;
+        if (buffer.length > MAX_RETAINED_SIZE) {
+            buffer = new char[INITIAL_SIZE];
+        }
+        position = 0;
+        limit = 0;
+        eof = false;
+        first = true;
+        sliceStart = 0;
+        sliceLength = 0;
+        lineEnd = false;
+        hardCut = false;
+        wholeLine = false;
+    }
+
+    /**
+     * 读取下一行，行内容为buffer()[sliceStart(), sliceStart() + sliceLength())
+     * 与原Scanner(reader).useDelimiter("\n")的切分结果保持一致：
+     * 输入开头的一个换行符被跳过，输入末尾的换行符不产生空行
+     *
+     * @return 没有更多行时返回false
+     * @throws IOException 读取输入失败
+     */
+    public boolean nextLine() throws IOException {
+        return next(0);
+    }
+
+    /**
+     * 读取下一个片段，片段不超过maxLength个字符。
+     * 行长度超过maxLength时，优先在句末标点处切分，其次在空白处切分，都找不到时强制截断
+     *
+     * @param maxLength 片段最大长度，小于等于0时不限制，按行读取
+     * @return 没有更多片段时返回false
+     * @throws IOException 读取输入失败
+     */
+    public boolean next(int maxLength) throws IOException {
+        if (first) {
+            first = false;
+            if (ensure(1) && buffer[position] == '\n') {
+                position++;
+            }
+        }
+        if (!ensure(1)) {
+            return false;
+        }
+        int scan = position;
+        while (true) {
+            int end = maxLength > 0 ? Math.min(limit, position + maxLength) : limit;
+            while (scan < end) {
+                if (buffer[scan] == '\n') {
+                    slice(scan, true, false);
+                    position = scan + 1;
+                    return true;
+                }
+                scan++;
+            }
+            if (maxLength > 0 && end - position == maxLength) {
+                cut(end);
+                return true;
+            }
+            int consumed = position;
+            if (!fill()) {
+                slice(limit, false, false);
+                wholeLine = true;
+                position = limit;
+                return true;
+            }
+            scan -= consumed - position;
+        }
+    }
+
+    /**
+     * 将当前片段末尾的count个字符退回窗口，下次读取时重新读出。
+     * 用于强制截断时，把跨越截断点的词留给下一个片段重新切分
+     *
+     * @param count 退回的字符数，必须小于当前片段长度
+     */
+    public void pushBack(int count) {
+        assert hardCut && count > 0 && count < sliceLength;
+        sliceLength -= count;
+        position -= count;
+    }
+
+    /**
+     * 将刚读出的片段整个退回窗口，下次读取时重新读出，只能紧接在{@link #next(int)}之后调用
+     */
+    public void unread() {
+        position = sliceStart;
+    }
+
+    /**
+     * 当前片段是否为空白（空串或只包含空白字符）
+     *
+     * @return 是否空白
+     */
+    public boolean isBlank() {
+        for (int i = sliceStart, end = sliceStart + sliceLength; i < end; i++) {
+            if (!Character.isWhitespace(buffer[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isLineEnd() {
+        return lineEnd;
+    }
+
+    public boolean isHardCut() {
+        return hardCut;
+    }
+
+    public boolean isWholeLine() {
+        return wholeLine;
+    }
+
+    public char[] buffer() {
+        return buffer;
+    }
+
+    public int sliceStart() {
+        return sliceStart;
+    }
+
+    public int sliceLength() {
+        return sliceLength;
+    }
+
+    private void slice(int end, boolean lineEnd, boolean hardCut) {
+        this.sliceStart = position;
+        this.sliceLength = end - position;
+        this.lineEnd = lineEnd;
+        this.hardCut = hardCut;
+        this.wholeLine = lineEnd;
+    }
+
+    /**
+     * 在[position, end)内寻找切分点并切出片段
+     *
+     * @param end 片段最大结束位置
+     */
+    private void cut(int end) {
+        int boundary = lastBoundary(end);
+        if (boundary > position) {
+            slice(boundary, false, false);
+            position = boundary;
+            return;
+        }
+        int cut = end;
+        if (Character.isHighSurrogate(buffer[cut - 1]) && cut - 1 > position) {
+            cut--;
+        }
+        slice(cut, false, true);
+        position = cut;
+    }
+
+    /**
+     * 从后向前寻找句子边界，找不到时寻找空白
+     *
+     * @param end 查找的结束位置
+     * @return 边界之后的第一个字符下标，找不到时返回-1
+     */
+    private int lastBoundary(int end) {
+        for (int i = end - 1; i >= position; i--) {
+            if (isSentenceDelimiter(buffer, i, limit)) {
+                return i + 1;
+            }
+        }
+        for (int i = end - 1; i > position; i--) {
+            if (Character.isWhitespace(buffer[i])) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 是否句末标点，半角句点只有后面跟空白时才算，避免切开小数、网址等
+     *
+     * @param text  文本
+     * @param i     下标
+     * @param limit 文本有效长度
+     * @return 是否句子边界
+     */
+    static boolean isSentenceDelimiter(char[] text, int i, int limit) {
+        switch (text[i]) {
+            case '。':
+            case '！':
+            case '？':
+            case '；':
+            case '!':
+            case '?':
+            case ';':
+                return true;
+            case '.':
+                return i + 1 < limit && Character.isWhitespace(text[i + 1]);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 确保窗口中至少有count个未消费字符
+     *
+     * @param count 字符数
+     * @return 输入不足count个字符时返回false
+     * @throws IOException 读取输入失败
+     */
+    private boolean ensure(int count) throws IOException {
+        while (limit - position < count) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 压缩窗口并从reader中读入更多字符，窗口已满时扩容
+     *
+     * @return 已到达输入末尾时返回false
+     * @throws IOException 读取输入失败
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            char[] grown = new char[buffer.length << 1];
+            System.arraycopy(buffer, 0, grown, 0, limit);
+            buffer = grown;
+        }
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        if (read == -1) {
+            eof = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+}
@@ -0,0 +1,250 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.corpus.dictionary.StringDictionary;
+import com.hankcs.hanlp.corpus.io.IOUtil;
+import com.hankcs.hanlp.dictionary.other.CharTable;
+import com.hankcs.help.ESPluginLoggerFactory;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 繁简转换方向。词条与HanLP的ts包中对应词典的构建方式相同，由data/dictionary/tc下的词典生成，
+ * 港台方向先与繁简词条串联成一个自动机。自动机在节点内每个方向只加载一次，并预编译保存在词典目录下，
+ * 词典比预编译文件新时重新构建
+ * @author: Kenn
+ * @create: 2019-06-18 10:00
+ */
+public enum ChineseConversion {
+    /**
+     * 繁体转简体
+     */
+    T2S("t2s.txt") {
+        @Override
+        TreeMap<String, String> entries() {
+            return load("t2s.txt", false);
+        }
+    },
+    /**
+     * 简体转繁体
+     */
+    S2T("s2t.txt") {
+        @Override
+        TreeMap<String, String> entries() {
+            return load("s2t.txt", false);
+        }
+    },
+    /**
+     * 香港繁体转简体
+     */
+    HK2S("t2s.txt", "t2hk.txt") {
+        @Override
+        TreeMap<String, String> entries() {
+            return combineReverseChain(load("t2s.txt", false), load("t2hk.txt", true));
+        }
+    },
+    /**
+     * 简体转香港繁体
+     */
+    S2HK("s2t.txt", "t2hk.txt") {
+        @Override
+        TreeMap<String, String> entries() {
+            return combineChain(load("s2t.txt", false), load("t2hk.txt", false));
+        }
+    },
+    /**
+     * 台湾正体转简体
+     */
+    TW2S("t2s.txt", "t2tw.txt") {
+        @Override
+        TreeMap<String, String> entries() {
+            return combineReverseChain(load("t2s.txt", false), load("t2tw.txt", true));
+        }
+    },
+    /**
+     * 简体转台湾正体
+     */
+    S2TW("s2t.txt", "t2tw.txt") {
+        @Override
+        TreeMap<String, String> entries() {
+            return combineChain(load("s2t.txt", false), load("t2tw.txt", false));
+        }
+    };
+
+    private static final Logger logger = ESPluginLoggerFactory.getLogger(ChineseConversion.class.getName());
+
+    private static final Map<ChineseConversion, Long> LOAD_NANOS = new EnumMap<>(ChineseConversion.class);
+
+    private final String[] sources;
+
+    private volatile ConversionAutomaton automaton;
+
+    ChineseConversion(String... sources) {
+        this.sources = sources;
+    }
+
+    /**
+     * @return 转换词条
+     */
+    abstract TreeMap<String, String> entries();
+
+    /**
+     * 按char filter名称和地区选择转换方向
+     *
+     * @param toTraditional 是否转为繁体
+     * @param region        地区，为空时表示通用繁体，hk表示香港，tw表示台湾
+     * @return 转换方向
+     */
+    public static ChineseConversion of(boolean toTraditional, String region) {
+        switch (region == null ? "" : region) {
+            case "":
+                return toTraditional ? S2T : T2S;
+            case "hk":
+                return toTraditional ? S2HK : HK2S;
+            case "tw":
+                return toTraditional ? S2TW : TW2S;
+            default:
+                throw new IllegalArgumentException("unknown hanlp conversion region [" + region + "], expected hk or tw");
+        }
+    }
+
+    /**
+     * 获取节点级共享的自动机，首次使用时加载预编译文件或由词典构建
+     *
+     * @return 自动机
+     */
+    public ConversionAutomaton automaton() {
+        ConversionAutomaton current = automaton;
+        if (current == null) {
+            synchronized (this) {
+                if (automaton == null) {
+                    automaton = AccessController.doPrivileged((PrivilegedAction<ConversionAutomaton>)this::load);
+                }
+                current = automaton;
+            }
+        }
+        return current;
+    }
+
+    private ConversionAutomaton load() {
+        long begin = System.nanoTime();
+        Path compiled = Paths.get(HanLP.Config.tcDictionaryRoot + name().toLowerCase() + ".automaton");
+        // 与HanLP相同，词典在classpath中时（路径以data/开头）不读写预编译文件
+        boolean cache = !IOUtil.isResource(HanLP.Config.tcDictionaryRoot);
+        try {
+            ConversionAutomaton loaded = cache && isFresh(compiled) ? ConversionAutomaton.read(compiled) : null;
+            if (loaded == null) {
+                loaded = ConversionAutomaton.compile(entries());
+                if (cache) {
+                    try {
+                        loaded.write(compiled);
+                    } catch (IOException e) {
+                        logger.warn("can not save hanlp conversion automaton " + compiled, e);
+                    }
+                }
+            }
+            long nanos = System.nanoTime() - begin;
+            synchronized (LOAD_NANOS) {
+                LOAD_NANOS.put(this, nanos);
+            }
+            logger.info("load hanlp conversion {}, entries: {}, took: {}ms", name().toLowerCase(), loaded.size(),
+                TimeUnit.NANOSECONDS.toMillis(nanos));
+            return loaded;
+        } catch (IOException e) {
+            throw new IllegalStateException("can not load hanlp conversion automaton: " + compiled, e);
+        }
+    }
+
+    /**
+     * @return 预编译文件是否存在且不比任何来源词典旧
+     */
+    private boolean isFresh(Path compiled) throws IOException {
+        if (!Files.exists(compiled)) {
+            return false;
+        }
+        for (String source : sources) {
+            Path path = Paths.get(HanLP.Config.tcDictionaryRoot + source);
+            if (Files.exists(path) && Files.getLastModifiedTime(path).compareTo(Files.getLastModifiedTime(compiled)) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static TreeMap<String, String> load(String file, boolean reverse) {
+        StringDictionary dictionary = new StringDictionary("=");
+        String path = HanLP.Config.tcDictionaryRoot + file;
+        if (!dictionary.load(path)) {
+            throw new IllegalStateException("can not load hanlp conversion dictionary: " + path);
+        }
+        if (reverse) {
+            dictionary = dictionary.reverse();
+        }
+        TreeMap<String, String> entries = new TreeMap<>();
+        for (Map.Entry<String, String> entry : dictionary.entrySet()) {
+            entries.put(entry.getKey(), entry.getValue());
+        }
+        return entries;
+    }
+
+    /**
+     * 简体到繁体的词条后接繁体到地区繁体的词条，与BaseChineseDictionary.combineChain相同
+     */
+    private static TreeMap<String, String> combineChain(TreeMap<String, String> s2t, TreeMap<String, String> t2x) {
+        for (Map.Entry<String, String> entry : s2t.entrySet()) {
+            String x = t2x.get(entry.getValue());
+            if (x != null) {
+                entry.setValue(x);
+            }
+        }
+        for (Map.Entry<String, String> entry : t2x.entrySet()) {
+            String s = CharTable.convert(entry.getKey());
+            if (!s2t.containsKey(s)) {
+                s2t.put(s, entry.getValue());
+            }
+        }
+        return s2t;
+    }
+
+    /**
+     * 地区繁体到繁体的词条后接繁体到简体的词条，与BaseChineseDictionary.combineReverseChain相同
+     */
+    private static TreeMap<String, String> combineReverseChain(TreeMap<String, String> t2s, TreeMap<String, String> x2t) {
+        for (Map.Entry<String, String> entry : x2t.entrySet()) {
+            String s = t2s.get(entry.getValue());
+            t2s.put(entry.getKey(), s == null ? CharTable.convert(entry.getValue()) : s);
+        }
+        return t2s;
+    }
+
+    /**
+     * @return 各转换方向的加载情况
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        for (ChineseConversion conversion : values()) {
+            ConversionAutomaton current = conversion.automaton;
+            if (current != null) {
+                Map<String, Object> stat = new HashMap<>();
+                stat.put("entries", current.size());
+                synchronized (LOAD_NANOS) {
+                    stat.put("load_time_in_millis", TimeUnit.NANOSECONDS.toMillis(LOAD_NANOS.get(conversion)));
+                }
+                stats.put(conversion.name().toLowerCase(), stat);
+            }
+        }
+        return stats;
+    }
+}
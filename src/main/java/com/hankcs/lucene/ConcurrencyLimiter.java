@@ -0,0 +1,203 @@
+package com.hankcs.lucene;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 节点级并发限制，重建索引时大量写线程同时做角色标注或N-最短路分词会占满CPU，查询分析得不到调度。
+ * 这里为每类重量级分词维护一个公平信号量，超出并发数的调用方最多等待timeout，
+ * 超时后改用配置的轻量分词引擎，或在没有配置时直接失败
+ * @author: Kenn
+ * @create: 2019-06-06 10:20
+ */
+public class ConcurrencyLimiter {
+    /**
+     * 需要限制并发的分词类别，与分词类型hanlp_nlp、hanlp_n_short、hanlp_dijkstra、hanlp_crf对应
+     */
+    public enum Group {
+        /**
+         * 开启了命名实体识别的维特比分词
+         */
+        NLP,
+        /**
+         * N-最短路分词
+         */
+        N_SHORT,
+        /**
+         * 最短路分词
+         */
+        DIJKSTRA,
+        /**
+         * CRF分词
+         */
+        CRF;
+
+        /**
+         * @param spec 分词器配置
+         * @return 配置所属的类别，不需要限制时返回null
+         */
+        static Group of(SegmentSpec spec) {
+            switch (spec.getEngine()) {
+                case N_SHORT:
+                    return N_SHORT;
+                case DIJKSTRA:
+                    return DIJKSTRA;
+                case CRF:
+                    return CRF;
+                case VITERBI:
+                    return spec.isRecognition() ? NLP : null;
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * @return 小写名称，用于配置项和统计
+         */
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * 各类别的限制，未限制的类别为null
+     */
+    private static volatile ConcurrencyLimiter[] limiters = new ConcurrencyLimiter[Group.values().length];
+    /**
+     * 最长等待时间
+     */
+    private static volatile long timeoutNanos = TimeUnit.SECONDS.toNanos(1);
+    /**
+     * 等待超时后使用的分词引擎，为null时直接失败
+     */
+    private static volatile SegmentEngine fallback = SegmentEngine.SPEED;
+
+    private final Semaphore semaphore;
+
+    private final int permits;
+
+    private final LongAdder acquisitions = new LongAdder();
+
+    private final LongAdder waits = new LongAdder();
+
+    private final LongAdder waitNanos = new LongAdder();
+
+    private final LongAdder fallbacks = new LongAdder();
+
+    private final LongAdder rejections = new LongAdder();
+
+    private ConcurrencyLimiter(int permits) {
+        this.permits = permits;
+        this.semaphore = new Semaphore(permits, true);
+    }
+
+    /**
+     * 配置并发限制，已获取的许可仍归还给原来的信号量
+     *
+     * @param permits       各类别的最大并发数，不大于0或缺失时不限制
+     * @param timeoutMillis 最长等待时间
+     * @param fallback      等待超时后使用的分词方式，speed为极速词典分词，standard为关闭命名实体识别的标准分词，none为直接失败
+     */
+    public static synchronized void configure(Map<Group, Integer> permits, long timeoutMillis, String fallback) {
+        ConcurrencyLimiter[] limiters = new ConcurrencyLimiter[Group.values().length];
+        for (Map.Entry<Group, Integer> entry : permits.entrySet()) {
+            if (entry.getValue() != null && entry.getValue() > 0) {
+                limiters[entry.getKey().ordinal()] = new ConcurrencyLimiter(entry.getValue());
+            }
+        }
+        ConcurrencyLimiter.fallback = parseFallback(fallback);
+        ConcurrencyLimiter.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        ConcurrencyLimiter.limiters = limiters;
+    }
+
+    private static SegmentEngine parseFallback(String fallback) {
+        switch (fallback) {
+            case "speed":
+                return SegmentEngine.SPEED;
+            case "standard":
+                return SegmentEngine.VITERBI;
+            case "none":
+                return null;
+            default:
+                throw new IllegalArgumentException("unknown hanlp concurrency limit fallback [" + fallback + "], expected one of [speed, standard, none]");
+        }
+    }
+
+    /**
+     * @param group 分词类别，可以为null
+     * @return 该类别的限制，未限制时返回null
+     */
+    public static ConcurrencyLimiter get(Group group) {
+        return group == null ? null : limiters[group.ordinal()];
+    }
+
+    /**
+     * @return 等待超时后使用的分词引擎，为null时直接失败
+     */
+    public static SegmentEngine fallback() {
+        return fallback;
+    }
+
+    /**
+     * 获取一个许可，按到达顺序排队，最多等待timeout
+     *
+     * @return 是否获取到许可，获取到时须调用{@link #release()}，超时后由调用方改用{@link #fallback()}或失败
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean acquire() throws InterruptedException {
+        // 公平信号量的无参tryAcquire会插队，这里用带超时的版本
+        if (semaphore.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+            acquisitions.increment();
+            return true;
+        }
+        waits.increment();
+        long begin = System.nanoTime();
+        boolean acquired = semaphore.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+        waitNanos.add(System.nanoTime() - begin);
+        if (acquired) {
+            acquisitions.increment();
+        } else {
+            (fallback == null ? rejections : fallbacks).increment();
+        }
+        return acquired;
+    }
+
+    /**
+     * 归还许可
+     */
+    public void release() {
+        semaphore.release();
+    }
+
+    /**
+     * @return 各类别的并发统计
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        ConcurrencyLimiter[] limiters = ConcurrencyLimiter.limiters;
+        for (Group group : Group.values()) {
+            ConcurrencyLimiter limiter = limiters[group.ordinal()];
+            if (limiter == null) {
+                continue;
+            }
+            Map<String, Object> stat = new HashMap<>();
+            stat.put("max_concurrency", limiter.permits);
+            stat.put("active", limiter.permits - limiter.semaphore.availablePermits());
+            stat.put("queue", limiter.semaphore.getQueueLength());
+            stat.put("acquisitions", limiter.acquisitions.sum());
+            stat.put("waits", limiter.waits.sum());
+            stat.put("wait_time_in_millis", TimeUnit.NANOSECONDS.toMillis(limiter.waitNanos.sum()));
+            stat.put("fallbacks", limiter.fallbacks.sum());
+            stat.put("rejections", limiter.rejections.sum());
+            stats.put(group.key(), stat);
+        }
+        stats.put("timeout_in_millis", TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+        stats.put("fallback", fallback == null ? "none" : fallback == SegmentEngine.SPEED ? "speed" : "standard");
+        return stats;
+    }
+}
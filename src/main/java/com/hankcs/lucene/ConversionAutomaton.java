@@ -0,0 +1,156 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.collection.AhoCorasick.AhoCorasickDoubleArrayTrie;
+import com.hankcs.hanlp.corpus.io.ByteArray;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.TreeMap;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 繁简转换使用的双数组AC自动机。转换规则与HanLP的BaseChineseDictionary.segLongest一致：
+ * 从左到右在每个位置取最长的词条替换，没有词条时原样输出。每个位置的最长词条只依赖从该位置出发的转移，
+ * 因此流式转换只走双数组的goto函数，不需要失败指针
+ * @author: Kenn
+ * @create: 2019-06-18 09:30
+ */
+public final class ConversionAutomaton extends AhoCorasickDoubleArrayTrie<String> {
+
+    private static final int MAGIC = 0x48504354;
+
+    private static final int VERSION = 1;
+    /**
+     * 最长词条的长度，流式转换时至少预读这么多字符才能确定一个位置上的最长匹配
+     */
+    private int maxLength;
+    /**
+     * 按词条下标排列的转换结果。父类的值数组由build创建时实际类型为Object[]，不能按String[]访问
+     */
+    private String[] values;
+
+    private ConversionAutomaton() {
+    }
+
+    /**
+     * 由转换词条构建
+     *
+     * @param entries 原文到转换结果的词条
+     * @return 自动机
+     */
+    static ConversionAutomaton compile(TreeMap<String, String> entries) {
+        ConversionAutomaton automaton = new ConversionAutomaton();
+        automaton.build(entries);
+        automaton.values = entries.values().toArray(new String[0]);
+        for (String key : entries.keySet()) {
+            automaton.maxLength = Math.max(automaton.maxLength, key.length());
+        }
+        return automaton;
+    }
+
+    /**
+     * 读取预编译的自动机
+     *
+     * @param path 预编译文件
+     * @return 自动机，文件格式不符时返回null
+     * @throws IOException 读取失败
+     */
+    static ConversionAutomaton read(Path path) throws IOException {
+        ByteArray bytes = new ByteArray(Files.readAllBytes(path));
+        if (bytes.nextInt() != MAGIC || bytes.nextInt() != VERSION) {
+            return null;
+        }
+        ConversionAutomaton automaton = new ConversionAutomaton();
+        automaton.maxLength = bytes.nextInt();
+        automaton.values = new String[bytes.nextInt()];
+        for (int i = 0; i < automaton.values.length; i++) {
+            automaton.values[i] = bytes.nextString();
+        }
+        return automaton.load(bytes, automaton.values) ? automaton : null;
+    }
+
+    /**
+     * 保存为预编译文件，先写临时文件再替换，多个节点同时写入时互不影响
+     *
+     * @param target  预编译文件
+     * @throws IOException 写入失败
+     */
+    void write(Path target) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(maxLength);
+                out.writeInt(values.length);
+                for (String value : values) {
+                    out.writeInt(value.length());
+                    out.writeChars(value);
+                }
+                save(out);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 查找从from开始的最长词条
+     *
+     * @param text 文本
+     * @param from 起始位置
+     * @param to   可用文本的结束位置
+     * @return 词条下标，没有时返回-1
+     */
+    public int longest(char[] text, int from, int to) {
+        int result = -1;
+        int b = base[0];
+        for (int i = from; i < to; i++) {
+            int p = b + text[i] + 1;
+            if (p >= check.length || check[p] != b) {
+                break;
+            }
+            b = base[p];
+            int n = base[b];
+            if (check[b] == b && n < 0) {
+                result = -n - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param index 词条下标
+     * @return 词条的转换结果
+     */
+    public String value(int index) {
+        return values[index];
+    }
+
+    /**
+     * @param index 词条下标
+     * @return 词条的长度
+     */
+    public int length(int index) {
+        return l[index];
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+}
@@ -0,0 +1,30 @@
+package com.hankcs.lucene;
+
+import com.hankcs.cfg.Configuration;
+import org.apache.lucene.analysis.Analyzer;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 自适应分析器，按文本长度选择NLP、标准或极速词典分词
+ * @author: Kenn
+ * @create: 2019-06-03 10:20
+ */
+public class HanLPAdaptiveAnalyzer extends Analyzer {
+    /**
+     * 分词配置
+     */
+    private SegmentationProfile profile;
+
+    public HanLPAdaptiveAnalyzer(Configuration configuration) {
+        this.profile = new SegmentationProfile(SegmentEngine.VITERBI, configuration, true);
+    }
+
+    public HanLPAdaptiveAnalyzer() {
+        super();
+    }
+
+    @Override
+    protected Analyzer.TokenStreamComponents createComponents(String fieldName) {
+        return new Analyzer.TokenStreamComponents(TokenizerBuilder.tokenizer(profile));
+    }
+}
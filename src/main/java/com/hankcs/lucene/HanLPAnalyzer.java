@@ -1,13 +1,8 @@
 package com.hankcs.lucene;
 
 import com.hankcs.cfg.Configuration;
-import com.hankcs.hanlp.HanLP;
-import com.hankcs.hanlp.seg.Segment;
 import org.apache.lucene.analysis.Analyzer;
 
-import java.security.AccessController;
-import java.security.PrivilegedAction;
-
 /**
  * @project: elasticsearch-analysis-hanlp
  * @description: Hanlp默认分析器
@@ -18,10 +13,10 @@ public class HanLPAnalyzer extends Analyzer {
     /**
      * 分词配置
      */
-    private Configuration configuration;
+    private SegmentationProfile profile;
 
     public HanLPAnalyzer(Configuration configuration) {
-        this.configuration = configuration;
+        this.profile = new SegmentationProfile(SegmentEngine.VITERBI, configuration);
     }
 
     public HanLPAnalyzer() {
@@ -30,6 +25,6 @@ public class HanLPAnalyzer extends Analyzer {
 
     @Override
     protected Analyzer.TokenStreamComponents createComponents(String fieldName) {
-        return new Analyzer.TokenStreamComponents(TokenizerBuilder.tokenizer(AccessController.doPrivileged((PrivilegedAction<Segment>)HanLP::newSegment), configuration));
+        return new Analyzer.TokenStreamComponents(TokenizerBuilder.tokenizer(profile));
     }
 }
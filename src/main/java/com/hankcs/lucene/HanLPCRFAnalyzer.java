@@ -1,13 +1,8 @@
 package com.hankcs.lucene;
 
 import com.hankcs.cfg.Configuration;
-import com.hankcs.hanlp.seg.CRF.CRFSegment;
-import com.hankcs.hanlp.seg.Segment;
 import org.apache.lucene.analysis.Analyzer;
 
-import java.security.AccessController;
-import java.security.PrivilegedAction;
-
 /**
  * @project: elasticsearch-analysis-hanlp
  * @description: CRF分析器
@@ -17,10 +12,10 @@ import java.security.PrivilegedAction;
 @Deprecated
 public class HanLPCRFAnalyzer extends Analyzer {
 
-    private Configuration configuration;
+    private SegmentationProfile profile;
 
     public HanLPCRFAnalyzer(Configuration configuration) {
-        this.configuration = configuration;
+        this.profile = new SegmentationProfile(SegmentEngine.CRF, configuration);
     }
 
     public HanLPCRFAnalyzer() {
@@ -29,6 +24,6 @@ public class HanLPCRFAnalyzer extends Analyzer {
 
     @Override
     protected Analyzer.TokenStreamComponents createComponents(String fieldName) {
-        return new Analyzer.TokenStreamComponents(TokenizerBuilder.tokenizer(AccessController.doPrivileged((PrivilegedAction<Segment>)CRFSegment::new), configuration));
+        return new Analyzer.TokenStreamComponents(TokenizerBuilder.tokenizer(profile));
     }
 }
@@ -0,0 +1,121 @@
+package com.hankcs.lucene;
+
+import org.apache.lucene.analysis.charfilter.BaseCharFilter;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 按{@link ChineseConversion}做繁简转换的char filter。从左到右在每个位置取最长词条替换，
+ * 结果与HanLP的繁简转换接口相同。词条前后长度不同时按MappingCharFilter的方式记录偏移校正，
+ * 高亮时转换后的词能对应回原文
+ * @author: Kenn
+ * @create: 2019-06-18 10:30
+ */
+public class HanLPConversionCharFilter extends BaseCharFilter {
+
+    private final ConversionAutomaton automaton;
+    /**
+     * 预读的原文，至少保留最长词条的长度才能确定当前位置的最长匹配
+     */
+    private final char[] buffer;
+
+    private int start;
+
+    private int end;
+
+    private boolean eof;
+    /**
+     * 上一个词条尚未输出完的转换结果
+     */
+    private String replacement;
+
+    private int replacementOffset;
+    /**
+     * 已消费的原文字符数
+     */
+    private int inputOffset;
+
+    public HanLPConversionCharFilter(Reader in, ChineseConversion conversion) {
+        super(in);
+        this.automaton = conversion.automaton();
+        this.buffer = new char[Math.max(1024, automaton.getMaxLength() * 2)];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        int write = off;
+        int limit = off + len;
+        while (write < limit) {
+            if (replacement != null) {
+                int count = Math.min(limit - write, replacement.length() - replacementOffset);
+                replacement.getChars(replacementOffset, replacementOffset + count, cbuf, write);
+                write += count;
+                replacementOffset += count;
+                if (replacementOffset == replacement.length()) {
+                    replacement = null;
+                }
+                continue;
+            }
+            if (end - start < automaton.getMaxLength() && !eof) {
+                fill();
+            }
+            if (start == end) {
+                break;
+            }
+            int index = automaton.longest(buffer, start, end);
+            if (index < 0) {
+                cbuf[write++] = buffer[start++];
+                inputOffset++;
+                continue;
+            }
+            int length = automaton.length(index);
+            String value = automaton.value(index);
+            start += length;
+            inputOffset += length;
+            correctOffset(length, value.length());
+            replacement = value;
+            replacementOffset = 0;
+        }
+        return write == off && len > 0 ? -1 : write - off;
+    }
+
+    /**
+     * 与MappingCharFilter相同的偏移校正：变短时在转换结果末尾记录，变长时为多出的每个字符记录
+     */
+    private void correctOffset(int inputLength, int outputLength) {
+        int diff = inputLength - outputLength;
+        if (diff == 0) {
+            return;
+        }
+        int cumulativeDiff = getLastCumulativeDiff();
+        if (diff > 0) {
+            addOffCorrectMap(inputOffset - diff - cumulativeDiff, cumulativeDiff + diff);
+        } else {
+            int outputStart = inputOffset - cumulativeDiff;
+            for (int i = 0; i < -diff; i++) {
+                addOffCorrectMap(outputStart + i, cumulativeDiff - i - 1);
+            }
+        }
+    }
+
+    /**
+     * 把未消费的原文移到缓冲区开头，再读到至少有最长词条的长度或读完为止
+     */
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        while (end - start < automaton.getMaxLength()) {
+            int read = input.read(buffer, end, buffer.length - end);
+            if (read == -1) {
+                eof = true;
+                return;
+            }
+            end += read;
+        }
+    }
+}
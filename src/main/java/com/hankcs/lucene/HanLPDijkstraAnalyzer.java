@@ -1,13 +1,8 @@
 package com.hankcs.lucene;
 
 import com.hankcs.cfg.Configuration;
-import com.hankcs.hanlp.seg.Dijkstra.DijkstraSegment;
-import com.hankcs.hanlp.seg.Segment;
 import org.apache.lucene.analysis.Analyzer;
 
-import java.security.AccessController;
-import java.security.PrivilegedAction;
-
 /**
  * @project: elasticsearch-analysis-hanlp
  * @description: 最短路分析器
@@ -18,11 +13,11 @@ public class HanLPDijkstraAnalyzer extends Analyzer {
     /**
      * 分词配置
      */
-    private Configuration configuration;
+    private SegmentationProfile profile;
 
     public HanLPDijkstraAnalyzer(Configuration configuration) {
-        this.configuration = configuration;
-        this.configuration.enableCustomDictionary(false).enablePlaceRecognize(true).enableOrganizationRecognize(true);
+        configuration.enableCustomDictionary(false).enablePlaceRecognize(true).enableOrganizationRecognize(true);
+        this.profile = new SegmentationProfile(SegmentEngine.DIJKSTRA, configuration);
     }
 
     public HanLPDijkstraAnalyzer() {
@@ -31,6 +26,6 @@ public class HanLPDijkstraAnalyzer extends Analyzer {
 
     @Override
     protected Analyzer.TokenStreamComponents createComponents(String fieldName) {
-        return new Analyzer.TokenStreamComponents(TokenizerBuilder.tokenizer(AccessController.doPrivileged((PrivilegedAction<Segment>)DijkstraSegment::new), configuration));
+        return new Analyzer.TokenStreamComponents(TokenizerBuilder.tokenizer(profile));
     }
 }
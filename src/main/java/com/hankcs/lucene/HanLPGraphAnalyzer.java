@@ -0,0 +1,31 @@
+package com.hankcs.lucene;
+
+import com.hankcs.cfg.Configuration;
+import org.apache.lucene.analysis.Analyzer;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: token图分析器，一次分词同时输出粗粒度词和索引模式的子词
+ * @author: Kenn
+ * @create: 2019-06-15 11:00
+ */
+public class HanLPGraphAnalyzer extends Analyzer {
+    /**
+     * 分词配置
+     */
+    private SegmentationProfile profile;
+
+    public HanLPGraphAnalyzer(Configuration configuration) {
+        configuration.enableIndexMode(true).enableOffset(true);
+        this.profile = new SegmentationProfile(SegmentEngine.VITERBI, configuration);
+    }
+
+    public HanLPGraphAnalyzer() {
+        super();
+    }
+
+    @Override
+    protected Analyzer.TokenStreamComponents createComponents(String fieldName) {
+        return new Analyzer.TokenStreamComponents(TokenizerBuilder.graphTokenizer(profile));
+    }
+}
@@ -0,0 +1,383 @@
+package com.hankcs.lucene;
+
+import com.hankcs.dic.CoreStopWordDictionary;
+import com.hankcs.hanlp.corpus.tag.Nature;
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.utility.TextUtility;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+
+import java.io.IOException;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Arrays;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 一次索引模式分词同时输出粗细两种粒度的token图。粗粒度词的PositionLength为其细粒度切分的段数，
+ * 细粒度切分由子词铺满整个词，优先使用子词、其次段数最少，铺不满的字单独成段；
+ * 其余与切分边界不对齐的子词放在包含它的最小节点区间上。图中每条粗粒度路径和细粒度路径都是完整的切分，
+ * 以它作为search_analyzer时match_phrase会按图展开路径
+ * @author: Kenn
+ * @create: 2019-06-15 10:00
+ */
+public class HanLPGraphTokenizer extends Tokenizer {
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+
+    private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+
+    private final PositionIncrementAttribute positionAttr = addAttribute(PositionIncrementAttribute.class);
+
+    private final PositionLengthAttribute positionLengthAttr = addAttribute(PositionLengthAttribute.class);
+
+    private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+
+    private final NatureAttribute natureAtt = addAttribute(NatureAttribute.class);
+    /**
+     * 编译后的分词配置，须开启索引模式和offset
+     */
+    private final SegmentationProfile profile;
+
+    private final SegmentWrapper segment;
+
+    private final CachingPorterStemmer stemmer = new CachingPorterStemmer(CachingPorterStemmer.DEFAULT_CACHE_SIZE);
+    /**
+     * 分词器已读出但还未处理的下一个粗粒度词
+     */
+    private boolean lookahead;
+    /**
+     * 当前粗粒度词及其子词，下标0为粗粒度词，起止位置相对于粗粒度词
+     */
+    private String[] words = new String[8];
+
+    private Nature[] natures = new Nature[8];
+
+    private int[] starts = new int[8];
+
+    private int[] ends = new int[8];
+
+    private int wordCount;
+    /**
+     * 粗粒度词在输入中的偏移量
+     */
+    private int groupOffset;
+    /**
+     * 粗粒度词起始节点的绝对位置
+     */
+    private int groupPosition;
+    /**
+     * 待输出的token：词下标、相对于groupPosition的位置和位置长度，已按位置和起始偏移排序
+     */
+    private int[] tokens = new int[8];
+
+    private int[] tokenPositions = new int[8];
+
+    private int[] tokenLengths = new int[8];
+
+    private int tokenCount;
+
+    private int tokenIndex;
+    /**
+     * 上一个输出的token的绝对位置
+     */
+    private int lastPosition = -1;
+    /**
+     * 下一个粗粒度词的起始节点
+     */
+    private int nextPosition;
+    /**
+     * 细粒度切分的动态规划：到达各边界的代价、前驱边界和使用的子词，-1表示单字
+     */
+    private int[] cost = new int[16];
+
+    private int[] from = new int[16];
+
+    private int[] via = new int[16];
+    /**
+     * 细粒度切分的节点边界，以及各边界向前、向后取整的节点下标
+     */
+    private int[] nodes = new int[16];
+
+    private int[] floorNodes = new int[16];
+
+    private int[] ceilNodes = new int[16];
+    /**
+     * 细粒度切分各段对应的词下标
+     */
+    private int[] pieceWords = new int[16];
+
+    private int totalOffset = 0;
+
+    /**
+     * @param segment HanLP中的某个分词器，须已按profile配置好
+     * @param profile 编译后的分词配置
+     */
+    public HanLPGraphTokenizer(Segment segment, SegmentationProfile profile) {
+        this.profile = profile;
+        if (profile.isStopDictionary()) {
+            AccessController.doPrivileged((PrivilegedAction<Void>)() -> {
+                CoreStopWordDictionary.initial();
+                return null;
+            });
+        }
+        this.segment = new SegmentWrapper(this.input, segment, profile);
+    }
+
+    @Override
+    public final boolean incrementToken() throws IOException {
+        clearAttributes();
+        if (tokenIndex == tokenCount && !nextGroup()) {
+            return false;
+        }
+        int i = tokenIndex++;
+        int word = tokens[i];
+        int position = groupPosition + tokenPositions[i];
+        termAtt.setEmpty().append(words[word]);
+        positionAttr.setPositionIncrement(position - lastPosition);
+        positionLengthAttr.setPositionLength(tokenLengths[i]);
+        offsetAtt.setOffset(correctOffset(groupOffset + starts[word]), correctOffset(groupOffset + ends[word]));
+        Nature nature = natures[word];
+        typeAtt.setType(nature == null ? "null" : nature.toString());
+        natureAtt.setNature(nature);
+        lastPosition = position;
+        return true;
+    }
+
+    /**
+     * 读入下一个粗粒度词及其全部子词，并排好待输出的token
+     *
+     * @return 没有更多词时返回false
+     */
+    private boolean nextGroup() throws IOException {
+        while (true) {
+            if (!lookahead && !segment.next()) {
+                return false;
+            }
+            lookahead = false;
+            String word = segment.word();
+            if (TextUtility.isBlank(word)) {
+                totalOffset += word.length();
+                continue;
+            }
+            int offset = segment.offset();
+            Nature nature = segment.nature();
+            wordCount = 0;
+            add(word, nature, 0, word.length());
+            // 索引模式的子词紧跟在所属的词之后，且不超出该词
+            while (segment.next()) {
+                if (segment.offset() >= offset + word.length()) {
+                    lookahead = true;
+                    break;
+                }
+                int start = segment.offset() - offset;
+                add(segment.word(), segment.nature(), start, start + segment.length());
+            }
+            totalOffset += word.length();
+            if (profile.isPorterStemming() && nature == Nature.nx) {
+                termAtt.setEmpty().append(word);
+                if (stemmer.stem(termAtt)) {
+                    words[0] = termAtt.toString();
+                }
+            }
+            if (profile.isStopDictionary() && CoreStopWordDictionary.shouldRemove(words[0], nature)) {
+                continue;
+            }
+            groupOffset = offset;
+            groupPosition = nextPosition;
+            nextPosition += arrange(word);
+            return true;
+        }
+    }
+
+    private void add(String word, Nature nature, int start, int end) {
+        if (wordCount == words.length) {
+            int capacity = wordCount * 2;
+            words = Arrays.copyOf(words, capacity);
+            natures = Arrays.copyOf(natures, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        words[wordCount] = word;
+        natures[wordCount] = nature;
+        starts[wordCount] = start;
+        ends[wordCount] = end;
+        wordCount++;
+    }
+
+    /**
+     * 求细粒度切分并排好当前词组的token
+     *
+     * @param word 粗粒度词的原文
+     * @return 粗粒度词的位置长度
+     */
+    private int arrange(String word) {
+        int length = word.length();
+        tokenCount = 0;
+        tokenIndex = 0;
+        int subWords = wordCount;
+        if (subWords == 1) {
+            addToken(0, 0, 1);
+            return 1;
+        }
+        ensureBoundaries(length + 1);
+        // 单字的代价大于任意多个子词，代价相同时取先出现的边
+        int fillerCost = length + 1;
+        Arrays.fill(cost, 0, length + 1, Integer.MAX_VALUE);
+        cost[0] = 0;
+        for (int b = 0; b < length; b++) {
+            if (cost[b] == Integer.MAX_VALUE) {
+                continue;
+            }
+            for (int i = 1; i < subWords; i++) {
+                if (starts[i] == b && ends[i] <= length && !(b == 0 && ends[i] == length)) {
+                    relax(b, ends[i], cost[b] + 1, i);
+                }
+            }
+            relax(b, b + 1, cost[b] + fillerCost + 1, -1);
+        }
+        int pieces = 0;
+        for (int b = length; b > 0; b = from[b]) {
+            pieces++;
+        }
+        nodes[pieces] = length;
+        for (int b = length, j = pieces - 1; b > 0; b = from[b], j--) {
+            nodes[j] = from[b];
+            if (via[b] >= 0) {
+                pieceWords[j] = via[b];
+            } else {
+                add(String.valueOf(word.charAt(from[b])), natures[0], from[b], b);
+                pieceWords[j] = wordCount - 1;
+            }
+        }
+        for (int j = 0, b = 0; b <= length; b++) {
+            while (j < pieces && nodes[j + 1] <= b) {
+                j++;
+            }
+            floorNodes[b] = j;
+        }
+        for (int j = pieces, b = length; b >= 0; b--) {
+            while (j > 0 && nodes[j - 1] >= b) {
+                j--;
+            }
+            ceilNodes[b] = j;
+        }
+        addToken(0, 0, pieces);
+        if (pieces == 1) {
+            return 1;
+        }
+        for (int j = 0; j < pieces; j++) {
+            addToken(pieceWords[j], j, 1);
+        }
+        for (int i = 1; i < subWords; i++) {
+            if (ends[i] > length || (starts[i] == 0 && ends[i] == length) || isPlaced(i)) {
+                continue;
+            }
+            int position = floorNodes[starts[i]];
+            addToken(i, position, ceilNodes[ends[i]] - position);
+        }
+        sortTokens();
+        return pieces;
+    }
+
+    private void relax(int b, int e, int candidate, int word) {
+        if (candidate < cost[e]) {
+            cost[e] = candidate;
+            from[e] = b;
+            via[e] = word;
+        }
+    }
+
+    /**
+     * @return 同一区间是否已有token
+     */
+    private boolean isPlaced(int word) {
+        for (int t = 0; t < tokenCount; t++) {
+            int placed = tokens[t];
+            if (starts[placed] == starts[word] && ends[placed] == ends[word]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addToken(int word, int position, int positionLength) {
+        if (tokenCount == tokens.length) {
+            int capacity = tokenCount * 2;
+            tokens = Arrays.copyOf(tokens, capacity);
+            tokenPositions = Arrays.copyOf(tokenPositions, capacity);
+            tokenLengths = Arrays.copyOf(tokenLengths, capacity);
+        }
+        tokens[tokenCount] = word;
+        tokenPositions[tokenCount] = position;
+        tokenLengths[tokenCount] = positionLength;
+        tokenCount++;
+    }
+
+    /**
+     * 粗粒度词之后的token按位置、起始偏移升序，位置长度降序插入排序，保证起始偏移不减
+     */
+    private void sortTokens() {
+        for (int i = 2; i < tokenCount; i++) {
+            int word = tokens[i];
+            int position = tokenPositions[i];
+            int positionLength = tokenLengths[i];
+            int j = i - 1;
+            while (j > 0 && compare(tokens[j], tokenPositions[j], tokenLengths[j], word, position, positionLength) > 0) {
+                tokens[j + 1] = tokens[j];
+                tokenPositions[j + 1] = tokenPositions[j];
+                tokenLengths[j + 1] = tokenLengths[j];
+                j--;
+            }
+            tokens[j + 1] = word;
+            tokenPositions[j + 1] = position;
+            tokenLengths[j + 1] = positionLength;
+        }
+    }
+
+    private int compare(int word, int position, int positionLength, int otherWord, int otherPosition, int otherPositionLength) {
+        if (position != otherPosition) {
+            return Integer.compare(position, otherPosition);
+        }
+        if (starts[word] != starts[otherWord]) {
+            return Integer.compare(starts[word], starts[otherWord]);
+        }
+        return Integer.compare(otherPositionLength, positionLength);
+    }
+
+    private void ensureBoundaries(int size) {
+        if (cost.length < size) {
+            int capacity = Math.max(size, cost.length * 2);
+            cost = new int[capacity];
+            from = new int[capacity];
+            via = new int[capacity];
+            nodes = new int[capacity];
+            floorNodes = new int[capacity];
+            ceilNodes = new int[capacity];
+            pieceWords = new int[capacity];
+        }
+    }
+
+    @Override
+    public void end() throws IOException {
+        super.end();
+        offsetAtt.setOffset(totalOffset, totalOffset);
+        totalOffset = 0;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        segment.reset(this.input);
+        lookahead = false;
+        wordCount = 0;
+        tokenCount = 0;
+        tokenIndex = 0;
+        lastPosition = -1;
+        nextPosition = 0;
+    }
+}
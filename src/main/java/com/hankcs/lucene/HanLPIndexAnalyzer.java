@@ -1,13 +1,8 @@
 package com.hankcs.lucene;
 
 import com.hankcs.cfg.Configuration;
-import com.hankcs.hanlp.HanLP;
-import com.hankcs.hanlp.seg.Segment;
 import org.apache.lucene.analysis.Analyzer;
 
-import java.security.AccessController;
-import java.security.PrivilegedAction;
-
 /**
  * @project: elasticsearch-analysis-hanlp
  * @description: 索引分析器
@@ -18,11 +13,11 @@ public class HanLPIndexAnalyzer extends Analyzer {
     /**
      * 分词配置
      */
-    private Configuration configuration;
+    private SegmentationProfile profile;
 
     public HanLPIndexAnalyzer(Configuration configuration) {
-        this.configuration = configuration;
-        this.configuration.enableIndexMode(true);
+        configuration.enableIndexMode(true);
+        this.profile = new SegmentationProfile(SegmentEngine.VITERBI, configuration);
     }
 
     public HanLPIndexAnalyzer() {
@@ -31,6 +26,6 @@ public class HanLPIndexAnalyzer extends Analyzer {
 
     @Override
     protected Analyzer.TokenStreamComponents createComponents(String fieldName) {
-        return new Analyzer.TokenStreamComponents(TokenizerBuilder.tokenizer(AccessController.doPrivileged((PrivilegedAction<Segment>)HanLP::newSegment), configuration));
+        return new Analyzer.TokenStreamComponents(TokenizerBuilder.tokenizer(profile));
     }
 }
@@ -1,13 +1,8 @@
 package com.hankcs.lucene;
 
 import com.hankcs.cfg.Configuration;
-import com.hankcs.hanlp.HanLP;
-import com.hankcs.hanlp.seg.Segment;
 import org.apache.lucene.analysis.Analyzer;
 
-import java.security.AccessController;
-import java.security.PrivilegedAction;
-
 /**
  * @project: elasticsearch-analysis-hanlp
  * @description: NLP分析器
@@ -18,13 +13,13 @@ public class HanLPNLPAnalyzer extends Analyzer {
     /**
      * 分词配置
      */
-    private Configuration configuration;
+    private SegmentationProfile profile;
 
     public HanLPNLPAnalyzer(Configuration configuration) {
-        this.configuration = configuration;
-        this.configuration.enableNameRecognize(true).enableTranslatedNameRecognize(true)
+        configuration.enableNameRecognize(true).enableTranslatedNameRecognize(true)
                 .enableJapaneseNameRecognize(true).enablePlaceRecognize(true).enableOrganizationRecognize(true)
                 .enablePartOfSpeechTagging(true);
+        this.profile = new SegmentationProfile(SegmentEngine.VITERBI, configuration);
     }
 
     public HanLPNLPAnalyzer() {
@@ -33,6 +28,6 @@ public class HanLPNLPAnalyzer extends Analyzer {
 
     @Override
     protected Analyzer.TokenStreamComponents createComponents(String fieldName) {
-        return new Analyzer.TokenStreamComponents(TokenizerBuilder.tokenizer(AccessController.doPrivileged((PrivilegedAction<Segment>)HanLP::newSegment), configuration));
+        return new Analyzer.TokenStreamComponents(TokenizerBuilder.tokenizer(profile));
     }
 }
@@ -0,0 +1,114 @@
+package com.hankcs.lucene;
+
+import org.apache.lucene.analysis.charfilter.BaseCharFilter;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 按{@link NormalizationTable}逐字符规范化的char filter，读入调用方的缓冲区后原地映射。
+ * 只有半角片假名与其后的浊音符合成一个字符时长度发生变化，此时记录一次偏移校正。
+ * 末尾可合成的片假名留到下一次读取时输出，以便与跨缓冲区的浊音符合成
+ * @author: Kenn
+ * @create: 2019-06-17 10:00
+ */
+public class HanLPNormalizationCharFilter extends BaseCharFilter {
+
+    private final NormalizationTable table;
+    /**
+     * 上一次读取留下的已映射字符，没有时为-1
+     */
+    private int pending = -1;
+    /**
+     * 已输出的字符数
+     */
+    private int outputOffset;
+    /**
+     * 合成减少的字符数
+     */
+    private int diff;
+
+    public HanLPNormalizationCharFilter(Reader in) {
+        super(in);
+        this.table = NormalizationTable.get();
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len <= 0) {
+            return 0;
+        }
+        int limit = off + len;
+        while (true) {
+            int write = off;
+            if (pending >= 0) {
+                if (len == 1) {
+                    return readAfterPending(cbuf, off);
+                }
+                cbuf[write++] = (char)pending;
+                pending = -1;
+            }
+            int read = input.read(cbuf, write, limit - write);
+            if (read > 0) {
+                write = map(cbuf, off, write, write + read);
+                if (table.isCombinable(cbuf[write - 1])) {
+                    pending = cbuf[--write];
+                }
+            }
+            if (write > off) {
+                outputOffset += write - off;
+                return write - off;
+            }
+            if (read == -1) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 原地映射cbuf[from, end)，合成时向前压缩
+     *
+     * @return 映射后的结束位置
+     */
+    private int map(char[] cbuf, int off, int from, int end) {
+        int write = from;
+        for (int i = from; i < end; i++) {
+            char c = cbuf[i];
+            if (write > off && NormalizationTable.isMark(c)) {
+                char composed = table.combine(cbuf[write - 1], c);
+                if (composed != 0) {
+                    cbuf[write - 1] = composed;
+                    addOffCorrectMap(outputOffset + write - off, ++diff);
+                    continue;
+                }
+            }
+            cbuf[write++] = table.map(c);
+        }
+        return write;
+    }
+
+    /**
+     * 只能输出一个字符时，先读入下一个字符判断留下的片假名能否合成
+     */
+    private int readAfterPending(char[] cbuf, int off) throws IOException {
+        int next = input.read();
+        char kana = (char)pending;
+        pending = -1;
+        if (next >= 0 && NormalizationTable.isMark((char)next)) {
+            char composed = table.combine(kana, (char)next);
+            if (composed != 0) {
+                cbuf[off] = composed;
+                addOffCorrectMap(outputOffset + 1, ++diff);
+                outputOffset++;
+                return 1;
+            }
+        }
+        cbuf[off] = kana;
+        if (next >= 0) {
+            pending = table.map((char)next);
+        }
+        outputOffset++;
+        return 1;
+    }
+}
@@ -0,0 +1,30 @@
+package com.hankcs.lucene;
+
+import com.hankcs.cfg.Configuration;
+import org.apache.lucene.analysis.Analyzer;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 感知机分析器，模型只读映射并在节点内共享
+ * @author: Kenn
+ * @create: 2019-06-14 11:00
+ */
+public class HanLPPerceptronAnalyzer extends Analyzer {
+    /**
+     * 分词配置
+     */
+    private SegmentationProfile profile;
+
+    public HanLPPerceptronAnalyzer(Configuration configuration) {
+        this.profile = new SegmentationProfile(SegmentEngine.PERCEPTRON, configuration);
+    }
+
+    public HanLPPerceptronAnalyzer() {
+        super();
+    }
+
+    @Override
+    protected Analyzer.TokenStreamComponents createComponents(String fieldName) {
+        return new Analyzer.TokenStreamComponents(TokenizerBuilder.tokenizer(profile));
+    }
+}
@@ -0,0 +1,44 @@
+package com.hankcs.lucene;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.KeywordAttribute;
+
+import java.io.IOException;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: porter词干提取token filter，结果与Lucene的PorterStemFilter相同，
+ * 但直接在CharTermAttribute的缓冲区上提取，并缓存高频词的词干。标记为关键词的token不做处理
+ * @author: Kenn
+ * @create: 2019-06-19 10:00
+ */
+public final class HanLPPorterStemFilter extends TokenFilter {
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+
+    private final KeywordAttribute keywordAtt = addAttribute(KeywordAttribute.class);
+
+    private final CachingPorterStemmer stemmer;
+
+    /**
+     * @param input     输入的token流，词须已转为小写
+     * @param cacheSize 缓存槽数，0表示不缓存
+     */
+    public HanLPPorterStemFilter(TokenStream input, int cacheSize) {
+        super(input);
+        this.stemmer = new CachingPorterStemmer(cacheSize);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        if (!input.incrementToken()) {
+            return false;
+        }
+        if (!keywordAtt.isKeyword()) {
+            stemmer.stem(termAtt);
+        }
+        return true;
+    }
+}
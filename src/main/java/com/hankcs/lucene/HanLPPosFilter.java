@@ -0,0 +1,36 @@
+package com.hankcs.lucene;
+
+import org.apache.lucene.analysis.FilteringTokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 按词性过滤token，词性取自hanlp分词器设置的{@link NatureAttribute}，
+ * 由{@link NatureSet}查表判断，不读取TypeAttribute中的词性名称。被过滤的token的位置增量累加到下一个token上
+ * @author: Kenn
+ * @create: 2019-06-20 10:30
+ */
+public final class HanLPPosFilter extends FilteringTokenFilter {
+
+    private final NatureAttribute natureAtt = addAttribute(NatureAttribute.class);
+
+    private final NatureSet natures;
+
+    private final boolean keep;
+
+    /**
+     * @param input   输入的token流
+     * @param natures 词性集合
+     * @param keep    为true时只保留集合中的词性，为false时去掉集合中的词性
+     */
+    public HanLPPosFilter(TokenStream input, NatureSet natures, boolean keep) {
+        super(input);
+        this.natures = natures;
+        this.keep = keep;
+    }
+
+    @Override
+    protected boolean accept() {
+        return natures.contains(natureAtt.getNature()) == keep;
+    }
+}
@@ -1,13 +1,8 @@
 package com.hankcs.lucene;
 
 import com.hankcs.cfg.Configuration;
-import com.hankcs.hanlp.seg.Other.DoubleArrayTrieSegment;
-import com.hankcs.hanlp.seg.Segment;
 import org.apache.lucene.analysis.Analyzer;
 
-import java.security.AccessController;
-import java.security.PrivilegedAction;
-
 /**
  * @project: elasticsearch-analysis-hanlp
  * @description: 极速词典分析器
@@ -18,11 +13,12 @@ public class HanLPSpeedAnalyzer extends Analyzer {
     /**
      * 分词配置
      */
-    private Configuration configuration;
+    private SegmentationProfile profile;
 
     public HanLPSpeedAnalyzer(Configuration configuration) {
-        this.configuration = configuration;
-        this.configuration.enableCustomDictionary(false);
+        // 极速词典分词默认不使用自定义词典，显式开启时使用合并后的trie
+        configuration.enableCustomDictionary(configuration.getSettings().get("enable_custom_dictionary", "false").equals("true"));
+        this.profile = new SegmentationProfile(SegmentEngine.SPEED, configuration);
     }
 
     public HanLPSpeedAnalyzer() {
@@ -31,6 +27,6 @@ public class HanLPSpeedAnalyzer extends Analyzer {
 
     @Override
     protected Analyzer.TokenStreamComponents createComponents(String fieldName) {
-        return new Analyzer.TokenStreamComponents(TokenizerBuilder.tokenizer(AccessController.doPrivileged((PrivilegedAction<Segment>)DoubleArrayTrieSegment::new), configuration));
+        return new Analyzer.TokenStreamComponents(TokenizerBuilder.tokenizer(profile));
     }
 }
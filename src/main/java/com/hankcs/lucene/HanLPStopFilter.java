@@ -0,0 +1,51 @@
+package com.hankcs.lucene;
+
+import com.hankcs.dic.CoreStopWordDictionary;
+import com.hankcs.dic.StopWordSet;
+import org.apache.lucene.analysis.FilteringTokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.io.IOException;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 停用词token filter，去掉索引自己的停用词和全局停用词词典中的词。全局停用词在每次reset时取当时的集合，
+ * 同一段文本的分析过程中不受远程词典增删词的影响。直接按CharTermAttribute的缓冲区查询，不生成字符串
+ * @author: Kenn
+ * @create: 2019-06-21 11:00
+ */
+public final class HanLPStopFilter extends FilteringTokenFilter {
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+
+    private final StopWordSet stopWords;
+
+    private final boolean useGlobal;
+
+    private StopWordSet global = StopWordSet.EMPTY;
+
+    /**
+     * @param input     输入的token流
+     * @param stopWords 索引自己的停用词
+     * @param useGlobal 是否同时使用全局停用词词典
+     */
+    public HanLPStopFilter(TokenStream input, StopWordSet stopWords, boolean useGlobal) {
+        super(input);
+        this.stopWords = stopWords;
+        this.useGlobal = useGlobal;
+    }
+
+    @Override
+    protected boolean accept() {
+        char[] buffer = termAtt.buffer();
+        int length = termAtt.length();
+        return !stopWords.contains(buffer, 0, length) && !global.contains(buffer, 0, length);
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        global = useGlobal ? CoreStopWordDictionary.words() : StopWordSet.EMPTY;
+    }
+}
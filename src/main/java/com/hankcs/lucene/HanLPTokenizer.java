@@ -2,9 +2,9 @@ package com.hankcs.lucene;
 
 import com.hankcs.cfg.Configuration;
 import com.hankcs.dic.CoreStopWordDictionary;
+import com.hankcs.dic.DictionaryVersion;
 import com.hankcs.hanlp.corpus.tag.Nature;
 import com.hankcs.hanlp.seg.Segment;
-import com.hankcs.hanlp.seg.common.Term;
 import com.hankcs.hanlp.utility.TextUtility;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
@@ -12,8 +12,8 @@ import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 
@@ -38,17 +38,50 @@ public class HanLPTokenizer extends Tokenizer {
      */
     private TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
     /**
-     * 配置
+     * 词性对象，供hanlp_pos_filter按序号过滤
      */
-    private Configuration configuration;
+    private final NatureAttribute natureAtt = addAttribute(NatureAttribute.class);
+    /**
+     * 编译后的分词配置
+     */
+    private final SegmentationProfile profile;
     /**
      * 分词器
      */
     private SegmentWrapper segment;
     /**
-     *
+     * 英文词的词干提取，直接改写termAtt的缓冲区
      */
-    private final PorterStemmer stemmer = new PorterStemmer();
+    private final CachingPorterStemmer stemmer = new CachingPorterStemmer(CachingPorterStemmer.DEFAULT_CACHE_SIZE);
+
+    /**
+     * 正在回放的查询分析备忘
+     */
+    private QueryMemo.Entry replay;
+    /**
+     * 下一个回放的token下标
+     */
+    private int replayIndex;
+    /**
+     * 未命中备忘时记录本次分析的输出
+     */
+    private QueryMemo.Builder recorder;
+    /**
+     * 本次分析的查询文本和分析前读取的词典版本
+     */
+    private String memoText;
+
+    private long memoVersion;
+
+    private int memoStartOffset;
+    /**
+     * 读入查询文本的缓冲区，跨reset复用，比备忘的长度限制多一个字符，用于判断文本是否超长
+     */
+    private char[] memoBuffer;
+    /**
+     * 把缓冲区中已读入的文本和剩余输入交给分词器，跨reset复用
+     */
+    private final PrefixedReader memoReader = new PrefixedReader();
 
     /**
      * 单文档当前所在的总offset，当reset（切换multi-value fields中的value）的时候不清零，在end（切换field）时清零
@@ -60,44 +93,91 @@ public class HanLPTokenizer extends Tokenizer {
      * @param configuration 分词配置
      */
     public HanLPTokenizer(Segment segment, Configuration configuration) {
-        this.configuration = configuration;
-        this.segment = new SegmentWrapper(this.input, segment, configuration);
+        this(segment, new SegmentationProfile(null, configuration));
+    }
+
+    /**
+     * @param segment HanLP中的某个分词器，须已按profile配置好
+     * @param profile 编译后的分词配置
+     */
+    public HanLPTokenizer(Segment segment, SegmentationProfile profile) {
+        this.profile = profile;
+        if (profile.isStopDictionary()) {
+            AccessController.doPrivileged((PrivilegedAction<Void>)() -> {
+                CoreStopWordDictionary.initial();
+                return null;
+            });
+        }
+        this.segment = new SegmentWrapper(this.input, segment, profile);
     }
 
     @Override
     final public boolean incrementToken() throws IOException {
         clearAttributes();
+        if (replay != null) {
+            return replay();
+        }
         int position = 0;
-        Term term;
         boolean unIncreased = true;
         do {
-            term = segment.next();
-            if (term == null) {
+            if (!segment.next()) {
+                if (recorder != null) {
+                    QueryMemo.put(profile, memoVersion, memoText, recorder.build(totalOffset - memoStartOffset));
+                    recorder = null;
+                    memoText = null;
+                }
                 return false;
             }
-            if (TextUtility.isBlank(term.word)) {
-                totalOffset += term.length();
+            if (TextUtility.isBlank(segment.word())) {
+                totalOffset += segment.length();
                 continue;
             }
-            if (configuration.isEnablePorterStemming() && term.nature == Nature.nx) {
-                term.word = stemmer.stem(term.word);
+            segment.copyTo(termAtt);
+            boolean stemmed = false;
+            if (profile.isPorterStemming() && segment.nature() == Nature.nx) {
+                stemmed = stemmer.stem(termAtt);
             }
-            final Term copyTerm = term;
-            if ((!this.configuration.isEnableStopDictionary()) || (!AccessController.doPrivileged(
-                (PrivilegedAction<Boolean>)() -> CoreStopWordDictionary.shouldRemove(copyTerm)))) {
+            if ((!profile.isStopDictionary()) || (!CoreStopWordDictionary.shouldRemove(
+                stemmed ? termAtt : segment.word(), segment.nature()))) {
                 position++;
                 unIncreased = false;
             } else {
-                totalOffset += term.length();
+                totalOffset += termAtt.length();
             }
         }
         while (unIncreased);
 
+        int offset = segment.offset();
         positionAttr.setPositionIncrement(position);
-        termAtt.setEmpty().append(term.word);
-        offsetAtt.setOffset(correctOffset(term.offset), correctOffset(term.offset + term.word.length()));
-        typeAtt.setType(term.nature == null ? "null" : term.nature.toString());
-        totalOffset += term.length();
+        offsetAtt.setOffset(correctOffset(offset), correctOffset(offset + termAtt.length()));
+        Nature nature = segment.nature();
+        typeAtt.setType(nature == null ? "null" : nature.toString());
+        natureAtt.setNature(nature);
+        if (recorder != null) {
+            recorder.add(termAtt.toString(), offset, offset + termAtt.length(), position, nature);
+        }
+        totalOffset += termAtt.length();
+        return true;
+    }
+
+    /**
+     * 回放备忘的查询分析结果
+     *
+     * @return 没有更多token时返回false
+     */
+    private boolean replay() {
+        if (replayIndex == replay.size()) {
+            totalOffset += replay.offsetIncrement;
+            replay = null;
+            return false;
+        }
+        int i = replayIndex++;
+        termAtt.setEmpty().append(replay.terms[i]);
+        positionAttr.setPositionIncrement(replay.positionIncrements[i]);
+        offsetAtt.setOffset(correctOffset(replay.startOffsets[i]), correctOffset(replay.endOffsets[i]));
+        Nature nature = replay.natures[i];
+        typeAtt.setType(nature == null ? "null" : nature.toString());
+        natureAtt.setNature(nature);
         return true;
     }
 
@@ -114,6 +194,86 @@ public class HanLPTokenizer extends Tokenizer {
     @Override
     public void reset() throws IOException {
         super.reset();
-        segment.reset(new BufferedReader(this.input));
+        replay = null;
+        recorder = null;
+        if (!profile.isQueryMemo() || !QueryMemo.isEnabled()) {
+            segment.reset(this.input);
+            return;
+        }
+        int length = read(this.input);
+        if (!QueryMemo.accept(length)) {
+            // 超出长度限制后不再读入，已读入的部分和剩余输入一起交给分词器
+            memoReader.reset(memoBuffer, length, this.input);
+            segment.reset(memoReader);
+            return;
+        }
+        String text = new String(memoBuffer, 0, length);
+        memoText = text;
+        memoVersion = DictionaryVersion.current();
+        replay = QueryMemo.get(profile, memoVersion, text);
+        if (replay != null) {
+            replayIndex = 0;
+            return;
+        }
+        recorder = new QueryMemo.Builder();
+        memoStartOffset = totalOffset;
+        memoReader.reset(memoBuffer, length, null);
+        segment.reset(memoReader);
+    }
+
+    /**
+     * 将查询文本读入memoBuffer，读满缓冲区即超出备忘的长度限制时停止
+     *
+     * @param reader 输入
+     * @return 读入的字符数
+     * @throws IOException 读取输入失败
+     */
+    private int read(Reader reader) throws IOException {
+        if (memoBuffer == null) {
+            memoBuffer = new char[QueryMemo.MAX_TEXT_LENGTH + 1];
+        }
+        int length = 0;
+        int read;
+        while (length < memoBuffer.length && (read = reader.read(memoBuffer, length, memoBuffer.length - length)) != -1) {
+            length += read;
+        }
+        return length;
+    }
+
+    /**
+     * 先读出缓冲区中的字符，再读剩余的输入
+     */
+    private static final class PrefixedReader extends Reader {
+
+        private char[] prefix;
+
+        private int length;
+
+        private int position;
+
+        private Reader rest;
+
+        void reset(char[] prefix, int length, Reader rest) {
+            this.prefix = prefix;
+            this.length = length;
+            this.position = 0;
+            this.rest = rest;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int count) throws IOException {
+            if (position < length) {
+                int read = Math.min(count, length - position);
+                System.arraycopy(prefix, position, buffer, offset, read);
+                position += read;
+                return read;
+            }
+            return rest == null ? -1 : rest.read(buffer, offset, count);
+        }
+
+        @Override
+        public void close() {
+            // 剩余输入由Tokenizer关闭
+        }
     }
 }
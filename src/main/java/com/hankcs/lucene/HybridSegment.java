@@ -0,0 +1,199 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.corpus.tag.Nature;
+import com.hankcs.hanlp.dictionary.CoreDictionary;
+import com.hankcs.hanlp.dictionary.other.CharType;
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.seg.common.Term;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 两级分词，先用关闭命名实体识别的分词器切分，只有可能包含未登录词的片段
+ * （连续的单字、人名地名机构名的构成词）连同前后各CONTEXT个词交给开启识别的分词器重新切分，
+ * 再替换回原结果。大部分句子没有未登录词，不再经过角色标注
+ * @author: Kenn
+ * @create: 2019-06-04 09:50
+ */
+public class HybridSegment extends Segment {
+    /**
+     * 可疑片段前后带上的上下文词数，角色标注需要参考前后的词
+     */
+    private static final int CONTEXT = 2;
+
+    private static final LongAdder TEXTS = new LongAdder();
+
+    private static final LongAdder CHARS = new LongAdder();
+
+    private static final LongAdder RECOGNIZED_CHARS = new LongAdder();
+    /**
+     * 关闭命名实体识别的分词器
+     */
+    private final Segment plain;
+    /**
+     * 开启命名实体识别的分词器
+     */
+    private final Segment recognizer;
+
+    /**
+     * @param plain      关闭命名实体识别的分词器，须开启offset
+     * @param recognizer 开启命名实体识别的分词器，其余配置须与plain相同
+     */
+    public HybridSegment(Segment plain, Segment recognizer) {
+        this.plain = plain;
+        this.recognizer = recognizer;
+    }
+
+    @Override
+    protected List<Term> segSentence(char[] sentence) {
+        List<Term> terms = plain.seg(sentence);
+        TEXTS.increment();
+        CHARS.add(sentence.length);
+        int size = terms.size();
+        // 顶层词的起始位置和结束位置，索引模式下的子词包含在顶层词中，不参与边界计算
+        int[] starts = new int[size];
+        int[] ends = new int[size];
+        boolean[] suspicious = new boolean[size];
+        int count = 0;
+        int covered = 0;
+        int singles = 0;
+        for (Term term : terms) {
+            int end = term.offset + term.length();
+            if (term.offset < covered) {
+                continue;
+            }
+            covered = end;
+            starts[count] = term.offset;
+            ends[count] = end;
+            if (isSingleChinese(term)) {
+                singles++;
+                // 连续的单字可能是被切碎的未登录词
+                if (singles >= 2) {
+                    suspicious[count] = true;
+                    suspicious[count - 1] = true;
+                }
+            } else {
+                singles = 0;
+            }
+            if (isEntityPart(term)) {
+                suspicious[count] = true;
+            }
+            count++;
+        }
+        List<Term> result = null;
+        int copied = 0;
+        int i = 0;
+        while (i < count) {
+            if (!suspicious[i]) {
+                i++;
+                continue;
+            }
+            int from = Math.max(0, i - CONTEXT);
+            int to = i;
+            // 合并上下文相互重叠的可疑片段
+            while (to < count && (suspicious[to] || hasSuspicious(suspicious, to + 1, Math.min(count, to + 1 + 2 * CONTEXT)))) {
+                to++;
+            }
+            to = Math.min(count, to + CONTEXT);
+            if (result == null) {
+                result = new ArrayList<>(size);
+            }
+            int begin = starts[from];
+            int end = ends[to - 1];
+            copied = copy(terms, copied, begin, result);
+            while (copied < size && terms.get(copied).offset < end) {
+                copied++;
+            }
+            for (Term term : recognizer.seg(Arrays.copyOfRange(sentence, begin, end))) {
+                term.offset += begin;
+                result.add(term);
+            }
+            RECOGNIZED_CHARS.add(end - begin);
+            i = to;
+        }
+        if (result == null) {
+            return terms;
+        }
+        copy(terms, copied, sentence.length, result);
+        return result;
+    }
+
+    /**
+     * 把terms中从index开始、起始位置在end之前的词复制到result
+     *
+     * @return 下一个未复制的词的下标
+     */
+    private static int copy(List<Term> terms, int index, int end, List<Term> result) {
+        while (index < terms.size() && terms.get(index).offset < end) {
+            result.add(terms.get(index++));
+        }
+        return index;
+    }
+
+    private static boolean hasSuspicious(boolean[] suspicious, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (suspicious[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否为可能构成未登录词的单字，虚词、代词、数量词、方位词等单字通常独立成词
+     */
+    private static boolean isSingleChinese(Term term) {
+        if (term.length() != 1 || CharType.get(term.word.charAt(0)) != CharType.CT_CHINESE) {
+            return false;
+        }
+        Nature nature = term.nature;
+        return nature == null || !(nature.startsWith("u") || nature.startsWith("p") || nature.startsWith("c") ||
+            nature.startsWith("d") || nature.startsWith("r") || nature.startsWith("m") || nature.startsWith("q") ||
+            nature.startsWith("f") || nature.startsWith("y") || nature.startsWith("e") || nature.startsWith("w"));
+    }
+
+    /**
+     * 词性是否表明该词可能是人名、地名、机构名的一部分，单字还要查看核心词典中的全部词性，如可作姓氏的字
+     */
+    private static boolean isEntityPart(Term term) {
+        if (isEntityNature(term.nature)) {
+            return true;
+        }
+        if (term.length() == 1) {
+            CoreDictionary.Attribute attribute = CoreDictionary.get(term.word);
+            if (attribute != null) {
+                for (Nature nature : attribute.nature) {
+                    if (nature.startsWith("nr")) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isEntityNature(Nature nature) {
+        if (nature == null) {
+            return false;
+        }
+        return nature.startsWith("nr") || nature.startsWith("ns") || nature.startsWith("nt") ||
+            nature == Nature.nz || nature == Nature.nis;
+    }
+
+    /**
+     * @return 两级分词统计
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("texts", TEXTS.sum());
+        stats.put("chars", CHARS.sum());
+        stats.put("recognized_chars", RECOGNIZED_CHARS.sum());
+        return stats;
+    }
+}
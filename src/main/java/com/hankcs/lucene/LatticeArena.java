@@ -0,0 +1,489 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.seg.common.EdgeFrom;
+import com.hankcs.hanlp.seg.common.Graph;
+import com.hankcs.hanlp.seg.common.Vertex;
+import com.hankcs.hanlp.seg.common.WordNet;
+import com.hankcs.hanlp.utility.MathUtility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 每线程复用的词图。HanLP每次求最短路都把词网转成Graph，每条边一个EdgeFrom对象和一个字符串，
+ * 再用对象堆或链表队列求解。这里把边和权重放进按终点分组的基本类型数组，求解用的堆和队列也是数组，
+ * 数组在同一线程的多次分词间复用。顶点编号、边的顺序、堆的调整和队列的插入位置都与HanLP一致，
+ * 权重相同时的选择也相同，因此结果与{@link com.hankcs.hanlp.seg.common.Graph}上求解一致
+ * @author: Kenn
+ * @create: 2019-06-13 10:10
+ */
+final class LatticeArena {
+    /**
+     * 超过该顶点数的数组用完后不再保留，避免一个超长句子让线程一直占着大数组
+     */
+    private static final int MAX_RETAINED_VERTEXES = 1 << 14;
+
+    private static final int INITIAL_VERTEXES = 256;
+
+    private static final ThreadLocal<LatticeArena> ARENA = ThreadLocal.withInitial(LatticeArena::new);
+
+    private int vertexCount;
+
+    private Vertex[] vertexes = new Vertex[INITIAL_VERTEXES];
+    /**
+     * 顶点所在的行
+     */
+    private int[] rows = new int[INITIAL_VERTEXES];
+    /**
+     * 以顶点为终点的边在edgeFrom、edgeWeight中的起始位置，长度为顶点数加一
+     */
+    private int[] edgeStart = new int[INITIAL_VERTEXES + 1];
+
+    private int[] edgeFrom = new int[INITIAL_VERTEXES * 4];
+
+    private double[] edgeWeight = new double[INITIAL_VERTEXES * 4];
+    /**
+     * 按终点所在行分组的起点，同一行的所有顶点有相同的起点
+     */
+    private int[] groupStart = new int[INITIAL_VERTEXES + 1];
+
+    private int[] groupFrom = new int[INITIAL_VERTEXES];
+
+    private double[] distance = new double[INITIAL_VERTEXES];
+
+    private int[] path = new int[INITIAL_VERTEXES];
+
+    private double[] heapCost = new double[INITIAL_VERTEXES];
+
+    private int[] heapVertex = new int[INITIAL_VERTEXES];
+
+    private int heapSize;
+    /**
+     * N-最短路每个(顶点, 名次)的路径权重和前驱队列
+     */
+    private double[] pathWeight = new double[INITIAL_VERTEXES * 2];
+
+    private int[] queueHead = new int[INITIAL_VERTEXES * 2];
+
+    private int[] queueCursor = new int[INITIAL_VERTEXES * 2];
+    /**
+     * 前驱队列的节点，前驱队列只在头部插入
+     */
+    private int[] nodeFrom = new int[INITIAL_VERTEXES * 2];
+
+    private int[] nodeIndex = new int[INITIAL_VERTEXES * 2];
+
+    private int[] nodeNext = new int[INITIAL_VERTEXES * 2];
+
+    private int nodeCount;
+    /**
+     * 求解当前顶点时的候选队列，按权重升序，权重相同时后加入的在前
+     */
+    private int[] workFrom = new int[INITIAL_VERTEXES];
+
+    private int[] workIndex = new int[INITIAL_VERTEXES];
+
+    private double[] workWeight = new double[INITIAL_VERTEXES];
+
+    private int[] workNext = new int[INITIAL_VERTEXES];
+
+    private int workCount;
+
+    private int workHead;
+
+    private int[] stackFrom = new int[INITIAL_VERTEXES];
+
+    private int[] stackIndex = new int[INITIAL_VERTEXES];
+
+    private int stackSize;
+
+    private LatticeArena() {
+    }
+
+    /**
+     * 取当前线程的词图并载入词网，用完须调用{@link #release()}
+     *
+     * @param wordNet 词网
+     * @return 当前线程的词图
+     */
+    static LatticeArena acquire(WordNet wordNet) {
+        LatticeArena arena = ARENA.get();
+        arena.load(wordNet);
+        return arena;
+    }
+
+    /**
+     * 释放对顶点的引用，数组过大时丢弃当前线程的词图
+     */
+    void release() {
+        if (vertexCount > MAX_RETAINED_VERTEXES) {
+            ARENA.remove();
+        } else {
+            Arrays.fill(vertexes, 0, vertexCount, null);
+        }
+        vertexCount = 0;
+    }
+
+    /**
+     * 与WordNet.toGraph一致：按行给顶点编号，行i的顶点连到行i+词长的每个顶点，
+     * 同一终点的边按起点的行、行内顺序排列
+     */
+    private void load(WordNet wordNet) {
+        LinkedList<Vertex>[] lines = wordNet.getVertexes();
+        int n = 0;
+        for (LinkedList<Vertex> line : lines) {
+            n += line.size();
+        }
+        ensureVertexes(n, lines.length);
+        int index = 0;
+        for (int i = 0; i < lines.length; i++) {
+            for (Vertex vertex : lines[i]) {
+                vertex.index = index;
+                vertexes[index] = vertex;
+                rows[index] = i;
+                index++;
+            }
+        }
+        vertexCount = n;
+        for (int v = 0; v < n; v++) {
+            if (vertexes[v].index != v) {
+                // 同一个顶点对象在词网中出现了多次，Graph按最后一次的编号连边，这种情况直接复制Graph的边
+                load(wordNet.toGraph());
+                return;
+            }
+        }
+        // 按终点行分组起点，计数排序保持起点的编号顺序
+        Arrays.fill(groupStart, 0, lines.length + 1, 0);
+        int sources = 0;
+        for (int v = 0; v < n && rows[v] < lines.length - 1; v++) {
+            groupStart[rows[v] + vertexes[v].realWord.length() + 1]++;
+            sources++;
+        }
+        for (int r = 0; r < lines.length; r++) {
+            groupStart[r + 1] += groupStart[r];
+        }
+        groupFrom = ensure(groupFrom, sources);
+        for (int v = 0; v < sources; v++) {
+            int to = rows[v] + vertexes[v].realWord.length();
+            groupFrom[groupStart[to]++] = v;
+        }
+        // 填充后groupStart[r]为第r行的结束位置，右移一位恢复起始位置
+        System.arraycopy(groupStart, 0, groupStart, 1, lines.length);
+        groupStart[0] = 0;
+        int edges = 0;
+        for (int v = 0; v < n; v++) {
+            edges += groupStart[rows[v] + 1] - groupStart[rows[v]];
+        }
+        edgeFrom = ensure(edgeFrom, edges);
+        edgeWeight = ensure(edgeWeight, edges);
+        int e = 0;
+        for (int to = 0; to < n; to++) {
+            edgeStart[to] = e;
+            Vertex toVertex = vertexes[to];
+            for (int g = groupStart[rows[to]], end = groupStart[rows[to] + 1]; g < end; g++) {
+                int from = groupFrom[g];
+                edgeFrom[e] = from;
+                edgeWeight[e] = MathUtility.calculateWeight(vertexes[from], toVertex);
+                e++;
+            }
+        }
+        edgeStart[n] = e;
+    }
+
+    private void load(Graph graph) {
+        List<EdgeFrom>[] edgesTo = graph.getEdgesTo();
+        int edges = 0;
+        for (List<EdgeFrom> edgeList : edgesTo) {
+            edges += edgeList.size();
+        }
+        edgeFrom = ensure(edgeFrom, edges);
+        edgeWeight = ensure(edgeWeight, edges);
+        int e = 0;
+        for (int to = 0; to < vertexCount; to++) {
+            edgeStart[to] = e;
+            for (EdgeFrom edge : edgesTo[to]) {
+                edgeFrom[e] = edge.from;
+                edgeWeight[e] = edge.weight;
+                e++;
+            }
+        }
+        edgeStart[vertexCount] = e;
+    }
+
+    /**
+     * @param index 顶点编号
+     * @return 顶点
+     */
+    Vertex vertex(int index) {
+        return vertexes[index];
+    }
+
+    /**
+     * 与Dijkstra.compute一致的最短路：从终点反向松弛，堆的调整与java.util.PriorityQueue相同
+     *
+     * @return 从起点到终点的顶点
+     */
+    List<Vertex> shortestPath() {
+        int n = vertexCount;
+        double[] d = distance = ensure(distance, n);
+        int[] path = this.path = ensure(this.path, n);
+        Arrays.fill(d, 0, n, Double.MAX_VALUE);
+        d[n - 1] = 0;
+        Arrays.fill(path, 0, n, -1);
+        heapSize = 0;
+        offer(0, n - 1);
+        while (heapSize > 0) {
+            double cost = heapCost[0];
+            int v = heapVertex[0];
+            poll();
+            if (d[v] < cost) {
+                continue;
+            }
+            for (int e = edgeStart[v], end = edgeStart[v + 1]; e < end; e++) {
+                int from = edgeFrom[e];
+                if (d[from] > d[v] + edgeWeight[e]) {
+                    d[from] = d[v] + edgeWeight[e];
+                    offer(d[from], from);
+                    path[from] = v;
+                }
+            }
+        }
+        List<Vertex> result = new LinkedList<>();
+        for (int t = 0; t != -1; t = path[t]) {
+            result.add(vertexes[t]);
+        }
+        return result;
+    }
+
+    private void offer(double cost, int vertex) {
+        if (heapSize == heapCost.length) {
+            heapCost = Arrays.copyOf(heapCost, heapSize << 1);
+            heapVertex = Arrays.copyOf(heapVertex, heapSize << 1);
+        }
+        int k = heapSize++;
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (Double.compare(cost, heapCost[parent]) >= 0) {
+                break;
+            }
+            heapCost[k] = heapCost[parent];
+            heapVertex[k] = heapVertex[parent];
+            k = parent;
+        }
+        heapCost[k] = cost;
+        heapVertex[k] = vertex;
+    }
+
+    private void poll() {
+        int size = --heapSize;
+        if (size == 0) {
+            return;
+        }
+        double cost = heapCost[size];
+        int vertex = heapVertex[size];
+        int k = 0;
+        int half = size >>> 1;
+        while (k < half) {
+            int child = (k << 1) + 1;
+            int right = child + 1;
+            if (right < size && Double.compare(heapCost[child], heapCost[right]) > 0) {
+                child = right;
+            }
+            if (Double.compare(cost, heapCost[child]) <= 0) {
+                break;
+            }
+            heapCost[k] = heapCost[child];
+            heapVertex[k] = heapVertex[child];
+            k = child;
+        }
+        heapCost[k] = cost;
+        heapVertex[k] = vertex;
+    }
+
+    /**
+     * 与NShortPath一致的N-最短路：每个顶点保留前nKind种路径权重及其前驱，再按名次回溯出路径。
+     * NShortPath回溯时会枚举每个名次上权重相同的全部路径，这里取够maxPaths条即停止，结果与先全部枚举再截取一致
+     *
+     * @param nKind    每个顶点保留的路径权重种数
+     * @param maxPaths 最多返回的路径数
+     * @return 路径上的顶点编号，从起点到终点
+     */
+    List<int[]> nShortPaths(int nKind, int maxPaths) {
+        calculate(nKind);
+        List<int[]> result = new ArrayList<>();
+        for (int i = 0; i < nKind && result.size() < maxPaths; i++) {
+            paths(nKind, i, maxPaths, result);
+        }
+        return result;
+    }
+
+    private void calculate(int nKind) {
+        int n = vertexCount;
+        int queues = (n - 1) * nKind;
+        pathWeight = ensure(pathWeight, queues);
+        queueHead = ensure(queueHead, queues);
+        queueCursor = ensure(queueCursor, queues);
+        Arrays.fill(queueHead, 0, queues, -1);
+        Arrays.fill(queueCursor, 0, queues, -1);
+        nodeCount = 0;
+        for (int cur = 1; cur < n; cur++) {
+            workHead = -1;
+            workCount = 0;
+            for (int e = edgeStart[cur], end = edgeStart[cur + 1]; e < end; e++) {
+                int from = edgeFrom[e];
+                double weight = edgeWeight[e];
+                for (int i = 0; i < nKind; i++) {
+                    if (from == 0) {
+                        enqueueWork(from, i, weight);
+                        break;
+                    }
+                    double fromWeight = pathWeight[(from - 1) * nKind + i];
+                    if (fromWeight == Double.MAX_VALUE) {
+                        break;
+                    }
+                    enqueueWork(from, i, weight + fromWeight);
+                }
+            }
+            int base = (cur - 1) * nKind;
+            Arrays.fill(pathWeight, base, base + nKind, Double.MAX_VALUE);
+            int work = dequeueWork();
+            if (work == -1) {
+                continue;
+            }
+            for (int i = 0; i < nKind; i++) {
+                double weight = workWeight[work];
+                pathWeight[base + i] = weight;
+                do {
+                    pushNode(base + i, workFrom[work], workIndex[work]);
+                    work = dequeueWork();
+                    if (work == -1) {
+                        i = nKind;
+                        break;
+                    }
+                } while (workWeight[work] == weight);
+            }
+        }
+    }
+
+    /**
+     * 插到第一个权重不小于它的候选之前
+     */
+    private void enqueueWork(int from, int index, double weight) {
+        if (workCount == workFrom.length) {
+            int capacity = workCount << 1;
+            workFrom = Arrays.copyOf(workFrom, capacity);
+            workIndex = Arrays.copyOf(workIndex, capacity);
+            workWeight = Arrays.copyOf(workWeight, capacity);
+            workNext = Arrays.copyOf(workNext, capacity);
+        }
+        int node = workCount++;
+        workFrom[node] = from;
+        workIndex[node] = index;
+        workWeight[node] = weight;
+        int previous = -1;
+        int current = workHead;
+        while (current != -1 && workWeight[current] < weight) {
+            previous = current;
+            current = workNext[current];
+        }
+        workNext[node] = current;
+        if (previous == -1) {
+            workHead = node;
+        } else {
+            workNext[previous] = node;
+        }
+    }
+
+    private int dequeueWork() {
+        int node = workHead;
+        if (node != -1) {
+            workHead = workNext[node];
+        }
+        return node;
+    }
+
+    private void pushNode(int queue, int from, int index) {
+        if (nodeCount == nodeFrom.length) {
+            int capacity = nodeCount << 1;
+            nodeFrom = Arrays.copyOf(nodeFrom, capacity);
+            nodeIndex = Arrays.copyOf(nodeIndex, capacity);
+            nodeNext = Arrays.copyOf(nodeNext, capacity);
+        }
+        int node = nodeCount++;
+        nodeFrom[node] = from;
+        nodeIndex[node] = index;
+        nodeNext[node] = queueHead[queue];
+        queueHead[queue] = node;
+    }
+
+    /**
+     * 与NShortPath.getPaths一致的回溯，每个前驱队列有自己的游标
+     */
+    private void paths(int nKind, int index, int maxPaths, List<int[]> result) {
+        stackSize = 0;
+        int curNode = vertexCount - 1;
+        int curIndex = index;
+        int queue = (curNode - 1) * nKind + curIndex;
+        int node = queueCursor[queue] = queueHead[queue];
+        while (node != -1) {
+            push(curNode, curIndex);
+            push(nodeFrom[node], nodeIndex[node]);
+            curNode = nodeFrom[node];
+            while (curNode != 0) {
+                queue = (nodeFrom[node] - 1) * nKind + nodeIndex[node];
+                node = queueCursor[queue] = queueHead[queue];
+                push(nodeFrom[node], nodeIndex[node]);
+                curNode = nodeFrom[node];
+            }
+            int[] path = new int[stackSize];
+            for (int i = 0; i < stackSize; i++) {
+                path[i] = stackFrom[stackSize - i - 1];
+            }
+            result.add(path);
+            if (result.size() == maxPaths) {
+                return;
+            }
+            do {
+                stackSize--;
+                curNode = stackFrom[stackSize];
+                curIndex = stackIndex[stackSize];
+            } while (curNode < 1 || (stackSize != 0 && nodeNext[queueCursor[(curNode - 1) * nKind + curIndex]] == -1));
+            queue = (curNode - 1) * nKind + curIndex;
+            if (queueCursor[queue] != -1) {
+                queueCursor[queue] = nodeNext[queueCursor[queue]];
+            }
+            node = queueCursor[queue];
+        }
+    }
+
+    private void push(int from, int index) {
+        if (stackSize == stackFrom.length) {
+            stackFrom = Arrays.copyOf(stackFrom, stackSize << 1);
+            stackIndex = Arrays.copyOf(stackIndex, stackSize << 1);
+        }
+        stackFrom[stackSize] = from;
+        stackIndex[stackSize] = index;
+        stackSize++;
+    }
+
+    private void ensureVertexes(int n, int lines) {
+        if (vertexes.length < n) {
+            int capacity = Math.max(n, vertexes.length << 1);
+            vertexes = new Vertex[capacity];
+            rows = new int[capacity];
+            edgeStart = new int[capacity + 1];
+        }
+        groupStart = ensure(groupStart, lines + 1);
+    }
+
+    private static int[] ensure(int[] array, int length) {
+        return array.length >= length ? array : new int[Math.max(length, array.length << 1)];
+    }
+
+    private static double[] ensure(double[] array, int length) {
+        return array.length >= length ? array : new double[Math.max(length, array.length << 1)];
+    }
+}
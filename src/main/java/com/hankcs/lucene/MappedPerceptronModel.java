@@ -0,0 +1,390 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.model.perceptron.model.LinearModel;
+import com.hankcs.hanlp.model.perceptron.tagset.TagSet;
+import com.hankcs.help.ESPluginLoggerFactory;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 只读内存映射的感知机分词模型。文件按大端序依次保存文件头、权重float[特征数 * 标签数]、
+ * 开放寻址的特征散列表int[表长]、按特征id排列的特征串偏移int[特征数 + 1]和特征串char[]，
+ * 加载时只做映射，同一台机器上的多个节点共享页缓存。文件不存在或比HanLP的cws.bin旧时由cws.bin重新转换
+ * @author: Kenn
+ * @create: 2019-06-14 10:00
+ */
+public final class MappedPerceptronModel {
+
+    private static final Logger logger = ESPluginLoggerFactory.getLogger(MappedPerceptronModel.class.getName());
+
+    private static final int MAGIC = 0x48504357;
+
+    private static final int VERSION = 1;
+    /**
+     * 文件头：magic、version、标签数、B、M、E、S、特征数、散列表长、特征串总长
+     */
+    private static final int HEADER_BYTES = 10 * Integer.BYTES;
+    /**
+     * 配置的模型路径，为空时使用HanLP感知机分词模型路径加.mmap后缀
+     */
+    private static volatile String configuredPath = "";
+
+    private static volatile MappedPerceptronModel instance;
+
+    private final Path path;
+
+    private final int tagCount;
+
+    private final int b;
+
+    private final int s;
+
+    private final int featureCount;
+
+    private final int tableMask;
+
+    private final FloatBuffer weights;
+
+    private final IntBuffer table;
+
+    private final IntBuffer keyOffsets;
+
+    private final CharBuffer keys;
+    /**
+     * 转移特征（id 0到标签数，最后一个是BOS）的权重，按[前一个标签 * 标签数 + 当前标签]排列
+     */
+    private final double[] transitions;
+
+    private final long bytes;
+
+    private final long loadNanos;
+
+    private final boolean converted;
+
+    private MappedPerceptronModel(Path path, ByteBuffer buffer, long loadNanos, boolean converted) {
+        this.path = path;
+        this.bytes = buffer.capacity();
+        this.loadNanos = loadNanos;
+        this.converted = converted;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("invalid hanlp perceptron model: " + path);
+        }
+        tagCount = buffer.getInt(8);
+        b = buffer.getInt(12);
+        s = buffer.getInt(24);
+        featureCount = buffer.getInt(28);
+        int tableSize = buffer.getInt(32);
+        int keyLength = buffer.getInt(36);
+        long expected = HEADER_BYTES + 4L * featureCount * tagCount + 4L * tableSize + 4L * (featureCount + 1) + 2L * keyLength;
+        if (tagCount <= 0 || featureCount <= tagCount || Integer.bitCount(tableSize) != 1 || expected != buffer.capacity()) {
+            throw new IllegalStateException("invalid hanlp perceptron model: " + path);
+        }
+        tableMask = tableSize - 1;
+        int position = HEADER_BYTES;
+        weights = slice(buffer, position, featureCount * tagCount * Float.BYTES).asFloatBuffer();
+        position += featureCount * tagCount * Float.BYTES;
+        table = slice(buffer, position, tableSize * Integer.BYTES).asIntBuffer();
+        position += tableSize * Integer.BYTES;
+        keyOffsets = slice(buffer, position, (featureCount + 1) * Integer.BYTES).asIntBuffer();
+        position += (featureCount + 1) * Integer.BYTES;
+        keys = slice(buffer, position, keyLength * Character.BYTES).asCharBuffer();
+        transitions = new double[(tagCount + 1) * tagCount];
+        for (int i = 0; i < transitions.length; i++) {
+            transitions[i] = weights.get(i);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position).limit(position + length);
+        return duplicate.slice();
+    }
+
+    /**
+     * 配置模型路径，须在首次使用前调用
+     *
+     * @param path 映射文件路径，为空时使用HanLP感知机分词模型路径加.mmap后缀
+     */
+    public static void configure(String path) {
+        configuredPath = path == null ? "" : path;
+    }
+
+    /**
+     * 获取节点级共享的模型，首次使用时映射，映射文件不存在时先由HanLP的模型转换
+     *
+     * @return 模型
+     */
+    public static MappedPerceptronModel get() {
+        MappedPerceptronModel current = instance;
+        if (current == null) {
+            synchronized (MappedPerceptronModel.class) {
+                if (instance == null) {
+                    instance = AccessController.doPrivileged((PrivilegedAction<MappedPerceptronModel>)() -> load(path()));
+                }
+                current = instance;
+            }
+        }
+        return current;
+    }
+
+    private static Path path() {
+        String path = configuredPath;
+        return Paths.get(path.isEmpty() ? HanLP.Config.PerceptronCWSModelPath + ".mmap" : path);
+    }
+
+    static MappedPerceptronModel load(Path path) {
+        long begin = System.nanoTime();
+        boolean converted = false;
+        try {
+            if (!isFresh(path)) {
+                logger.info("convert hanlp perceptron model {} to {}", HanLP.Config.PerceptronCWSModelPath, path);
+                write(new LinearModel(HanLP.Config.PerceptronCWSModelPath), path);
+                converted = true;
+            }
+            MappedPerceptronModel model = open(path, begin, converted);
+            logger.info("map hanlp perceptron model {}, features: {}, bytes: {}, took: {}ms", path, model.featureCount,
+                model.bytes, TimeUnit.NANOSECONDS.toMillis(model.loadNanos));
+            return model;
+        } catch (IOException e) {
+            throw new IllegalStateException("can not load hanlp perceptron model: " + path, e);
+        }
+    }
+
+    /**
+     * @return 映射文件是否存在且不比HanLP的感知机分词模型旧，模型不在文件系统中时只要求映射文件存在
+     */
+    private static boolean isFresh(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        Path source = Paths.get(HanLP.Config.PerceptronCWSModelPath);
+        return !Files.exists(source) || Files.getLastModifiedTime(source).compareTo(Files.getLastModifiedTime(path)) <= 0;
+    }
+
+    /**
+     * 只读映射模型文件
+     *
+     * @param path 模型文件
+     * @return 模型
+     * @throws IOException 读取失败
+     */
+    static MappedPerceptronModel open(Path path) throws IOException {
+        return open(path, System.nanoTime(), false);
+    }
+
+    private static MappedPerceptronModel open(Path path, long begin, boolean converted) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedPerceptronModel(path, buffer, System.nanoTime() - begin, converted);
+        }
+    }
+
+    /**
+     * 把HanLP的感知机分词模型转换为映射文件，先写临时文件再替换，多个节点同时转换时互不影响
+     *
+     * @param model  感知机分词模型
+     * @param target 映射文件
+     * @throws IOException 写入失败
+     */
+    static void write(LinearModel model, Path target) throws IOException {
+        TagSet tagSet = model.tagSet();
+        int tagCount = tagSet.size();
+        int[] allTags = tagSet.allTags();
+        for (int i = 0; i < allTags.length; i++) {
+            if (allTags[i] != i) {
+                throw new IllegalArgumentException("unsupported tag set: " + tagSet.tags());
+            }
+        }
+        int featureCount = model.parameter.length / tagCount;
+        String[] keysById = new String[featureCount];
+        int keyLength = 0;
+        int keyCount = 0;
+        for (Map.Entry<String, Integer> entry : model.featureMap.entrySet()) {
+            int id = entry.getValue();
+            if (id >= 0 && id < featureCount && keysById[id] == null) {
+                keysById[id] = entry.getKey();
+                keyLength += entry.getKey().length();
+                keyCount++;
+            }
+        }
+        // 装载因子不超过0.5
+        int tableSize = Integer.highestOneBit(Math.max(keyCount, 1) * 2 - 1) << 1;
+        int[] table = new int[tableSize];
+        int[] keyOffsets = new int[featureCount + 1];
+        for (int id = 0; id < featureCount; id++) {
+            String key = keysById[id];
+            keyOffsets[id + 1] = keyOffsets[id] + (key == null ? 0 : key.length());
+            if (key == null || key.isEmpty()) {
+                continue;
+            }
+            int slot = hash(key) & (tableSize - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            table[slot] = id + 1;
+        }
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(tagCount);
+                out.writeInt(tagSet.idOf("B"));
+                out.writeInt(tagSet.idOf("M"));
+                out.writeInt(tagSet.idOf("E"));
+                out.writeInt(tagSet.idOf("S"));
+                out.writeInt(featureCount);
+                out.writeInt(tableSize);
+                out.writeInt(keyLength);
+                for (int i = 0; i < featureCount * tagCount; i++) {
+                    out.writeFloat(model.parameter[i]);
+                }
+                for (int slot : table) {
+                    out.writeInt(slot);
+                }
+                for (int offset : keyOffsets) {
+                    out.writeInt(offset);
+                }
+                for (String key : keysById) {
+                    if (key != null) {
+                        out.writeChars(key);
+                    }
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static int hash(CharSequence key) {
+        int h = 0;
+        for (int i = 0; i < key.length(); i++) {
+            h = 31 * h + key.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 查找特征id
+     *
+     * @param key    特征串缓冲区
+     * @param length 特征串长度
+     * @return 特征id，不存在时返回-1
+     */
+    int idOf(char[] key, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + key[i];
+        }
+        int slot = (h ^ (h >>> 16)) & tableMask;
+        for (int entry = table.get(slot); entry != 0; entry = table.get(slot)) {
+            int id = entry - 1;
+            int begin = keyOffsets.get(id);
+            if (keyOffsets.get(id + 1) - begin == length && matches(key, length, begin)) {
+                return id;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        return -1;
+    }
+
+    private boolean matches(char[] key, int length, int begin) {
+        for (int i = 0; i < length; i++) {
+            if (keys.get(begin + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 标签数
+     */
+    int tagCount() {
+        return tagCount;
+    }
+
+    /**
+     * @return 词首标签B的id
+     */
+    int b() {
+        return b;
+    }
+
+    /**
+     * @return 单字词标签S的id
+     */
+    int s() {
+        return s;
+    }
+
+    /**
+     * 把特征的各标签权重累加到scores[offset, offset + 标签数)
+     */
+    void addWeights(int feature, double[] scores, int offset) {
+        int base = feature * tagCount;
+        for (int tag = 0; tag < tagCount; tag++) {
+            scores[offset + tag] += weights.get(base + tag);
+        }
+    }
+
+    /**
+     * @param previous 前一个标签，标签数表示BOS
+     * @param tag      当前标签
+     * @return 转移权重
+     */
+    double transition(int previous, int tag) {
+        return transitions[previous * tagCount + tag];
+    }
+
+    /**
+     * @return 加载时是否由HanLP的模型重新转换
+     */
+    boolean isConverted() {
+        return converted;
+    }
+
+    /**
+     * @return 模型统计
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        MappedPerceptronModel current = instance;
+        stats.put("path", current == null ? path().toString() : current.path.toString());
+        stats.put("loaded", current != null);
+        stats.put("features", current == null ? 0 : current.featureCount);
+        stats.put("bytes", current == null ? 0 : current.bytes);
+        stats.put("load_time_in_millis", current == null ? 0 : TimeUnit.NANOSECONDS.toMillis(current.loadNanos));
+        stats.put("converted", current != null && current.converted);
+        return stats;
+    }
+}
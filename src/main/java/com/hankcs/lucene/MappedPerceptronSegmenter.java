@@ -0,0 +1,193 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.dictionary.other.CharTable;
+import com.hankcs.hanlp.tokenizer.lexical.Segmenter;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 基于{@link MappedPerceptronModel}的感知机分词。特征模板、维特比解码和按标签切词与HanLP的
+ * PerceptronSegmenter相同，特征串、发射分数和回溯表都放在可复用的数组里，不再为每个字构建特征列表。
+ * 缓冲区按线程分配，实例可以在线程间共享
+ * @author: Kenn
+ * @create: 2019-06-14 10:30
+ */
+public class MappedPerceptronSegmenter implements Segmenter {
+
+    private static final char BOS = '\u0001';
+
+    private static final char EOS = '\u0002';
+
+    private final MappedPerceptronModel model;
+    /**
+     * 每个线程的缓冲区
+     */
+    private final ThreadLocal<Buffers> buffers;
+
+    public MappedPerceptronSegmenter(MappedPerceptronModel model) {
+        this.model = model;
+        this.buffers = ThreadLocal.withInitial(() -> new Buffers(model.tagCount()));
+    }
+
+    @Override
+    public List<String> segment(String text) {
+        List<String> output = new LinkedList<>();
+        segment(text, CharTable.convert(text), output);
+        return output;
+    }
+
+    @Override
+    public void segment(String text, String normalized, List<String> output) {
+        if (text.isEmpty()) {
+            return;
+        }
+        int length = normalized.length();
+        Buffers buffers = this.buffers.get();
+        buffers.ensureCapacity(length);
+        extractEmission(buffers, normalized, length);
+        decode(buffers, length);
+        int[] tags = buffers.tags;
+        StringBuilder buffer = new StringBuilder();
+        buffer.append(text.charAt(0));
+        for (int i = 1; i < text.length(); i++) {
+            int tag = tags[i];
+            if (tag == model.b() || tag == model.s()) {
+                output.add(buffer.toString());
+                buffer.setLength(0);
+            }
+            buffer.append(text.charAt(i));
+        }
+        if (buffer.length() != 0) {
+            output.add(buffer.toString());
+        }
+    }
+
+    /**
+     * 按CWSInstance的7个特征模板累加每个字在各标签上的发射分数，累加顺序与模板顺序一致
+     */
+    private void extractEmission(Buffers buffers, String sentence, int length) {
+        int tagCount = model.tagCount();
+        double[] emission = buffers.emission;
+        for (int i = 0; i < length; i++) {
+            int offset = i * tagCount;
+            for (int tag = 0; tag < tagCount; tag++) {
+                emission[offset + tag] = 0;
+            }
+            char pre2 = i >= 2 ? sentence.charAt(i - 2) : BOS;
+            char pre1 = i >= 1 ? sentence.charAt(i - 1) : BOS;
+            char cur = sentence.charAt(i);
+            char next1 = i < length - 1 ? sentence.charAt(i + 1) : EOS;
+            char next2 = i < length - 2 ? sentence.charAt(i + 2) : EOS;
+            addUnigram(buffers, pre1, '1', offset);
+            addUnigram(buffers, cur, '2', offset);
+            addUnigram(buffers, next1, '3', offset);
+            addBigram(buffers, pre2, pre1, '4', offset);
+            addBigram(buffers, pre1, cur, '5', offset);
+            addBigram(buffers, cur, next1, '6', offset);
+            addBigram(buffers, next1, next2, '7', offset);
+        }
+    }
+
+    private void addUnigram(Buffers buffers, char c, char template, int offset) {
+        char[] key = buffers.key;
+        key[0] = c;
+        key[1] = template;
+        addFeature(buffers, 2, offset);
+    }
+
+    private void addBigram(Buffers buffers, char first, char second, char template, int offset) {
+        char[] key = buffers.key;
+        key[0] = first;
+        key[1] = '/';
+        key[2] = second;
+        key[3] = template;
+        addFeature(buffers, 4, offset);
+    }
+
+    private void addFeature(Buffers buffers, int length, int offset) {
+        int feature = model.idOf(buffers.key, length);
+        if (feature != -1) {
+            model.addWeights(feature, buffers.emission, offset);
+        }
+    }
+
+    /**
+     * 与LinearModel.viterbiDecode相同的维特比解码，比较方式和初值保持一致，同分时结果也相同
+     */
+    private void decode(Buffers buffers, int length) {
+        int tagCount = model.tagCount();
+        double[] emission = buffers.emission;
+        int[] previous = buffers.previous;
+        double[] score = buffers.score;
+        int[] tags = buffers.tags;
+        for (int tag = 0; tag < tagCount; tag++) {
+            previous[tag] = tag;
+            score[tag] = emission[tag] + model.transition(tagCount, tag);
+        }
+        for (int i = 1; i < length; i++) {
+            int current = (i & 1) * tagCount;
+            int last = tagCount - current;
+            int offset = i * tagCount;
+            for (int tag = 0; tag < tagCount; tag++) {
+                double max = Integer.MIN_VALUE;
+                for (int pre = 0; pre < tagCount; pre++) {
+                    double candidate = emission[offset + tag] + model.transition(pre, tag) + score[last + pre];
+                    if (max < candidate) {
+                        max = candidate;
+                        previous[offset + tag] = pre;
+                        score[current + tag] = max;
+                    }
+                }
+            }
+        }
+        int end = ((length - 1) & 1) * tagCount;
+        int best = 0;
+        double max = score[end];
+        for (int tag = 1; tag < tagCount; tag++) {
+            if (max < score[end + tag]) {
+                max = score[end + tag];
+                best = tag;
+            }
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            tags[i] = best;
+            best = previous[i * tagCount + best];
+        }
+    }
+
+    /**
+     * 一次分词用到的缓冲区，按句子长度扩容后复用
+     */
+    private static final class Buffers {
+        /**
+         * 特征串缓冲区，最长的模板是“字/字+模板号”
+         */
+        private final char[] key = new char[4];
+
+        private final int tagCount;
+
+        private double[] emission = new double[0];
+
+        private int[] previous = new int[0];
+
+        private final double[] score;
+
+        private int[] tags = new int[0];
+
+        Buffers(int tagCount) {
+            this.tagCount = tagCount;
+            this.score = new double[2 * tagCount];
+        }
+
+        void ensureCapacity(int length) {
+            if (tags.length < length) {
+                int capacity = Math.max(length, tags.length * 2);
+                tags = new int[capacity];
+                emission = new double[capacity * tagCount];
+                previous = new int[capacity * tagCount];
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.hankcs.lucene;
+
+import com.hankcs.dic.DictionaryVersion;
+import com.hankcs.hanlp.collection.trie.DoubleArrayTrie;
+import com.hankcs.hanlp.dictionary.CoreDictionary;
+import com.hankcs.hanlp.dictionary.CustomDictionary;
+import com.hankcs.help.ESPluginLoggerFactory;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 核心词典与自定义词典合并后的双数组trie，供极速词典分词一次最长匹配。
+ * 合并在后台线程中进行，首次合并完成前分词使用核心词典并依次匹配自定义词典；自定义词典版本变化后重新合并，
+ * 完成后整体替换，替换前分词仍使用旧的trie。停用词等其他词典的变化不触发合并
+ * @author: Kenn
+ * @create: 2019-06-12 10:30
+ */
+public class MergedDictionary {
+
+    private static final Logger logger = ESPluginLoggerFactory.getLogger(MergedDictionary.class.getName());
+    /**
+     * 当前的合并结果，首次合并完成前为null
+     */
+    private static volatile Snapshot snapshot;
+    /**
+     * 是否有重建任务在执行
+     */
+    private static final AtomicBoolean REBUILDING = new AtomicBoolean();
+    /**
+     * 合并失败的自定义词典版本，自定义词典再次变化前不重试，避免每次分词都提交一次注定失败的合并
+     */
+    private static volatile long failedVersion = -1;
+
+    private static volatile ExecutorService executor;
+
+    private static final LongAdder BUILDS = new LongAdder();
+
+    private static final LongAdder BUILD_NANOS = new LongAdder();
+
+    private static final LongAdder FAILURES = new LongAdder();
+
+    private MergedDictionary() {
+    }
+
+    /**
+     * 获取合并后的trie，尚未合并或自定义词典版本已变化时提交后台合并，不等待合并完成
+     *
+     * @return 合并后的trie，首次合并完成前返回null
+     */
+    public static DoubleArrayTrie<CoreDictionary.Attribute> current() {
+        Snapshot current = snapshot;
+        long version = DictionaryVersion.customDictionary();
+        if ((current == null || current.version != version) && version != failedVersion) {
+            rebuild();
+        }
+        return current == null ? null : current.trie;
+    }
+
+    /**
+     * 提前在后台合并，创建使用合并词典的分词配置时调用，避免首次分词时才开始合并
+     */
+    public static void warmUp() {
+        if (snapshot == null && DictionaryVersion.customDictionary() != failedVersion) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 提交后台合并，已有合并任务在执行时忽略
+     */
+    private static void rebuild() {
+        if (!REBUILDING.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor().execute(() -> {
+                // 先读取版本再合并，合并期间词典发生变化时下次使用会再次合并
+                long version = DictionaryVersion.customDictionary();
+                try {
+                    snapshot = build(version);
+                } catch (RuntimeException e) {
+                    failedVersion = version;
+                    FAILURES.increment();
+                    logger.error("can not build hanlp merged dictionary, custom dictionary version: " + version, e);
+                } finally {
+                    REBUILDING.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 插件关闭时线程池已停止，下次使用时重新创建
+            REBUILDING.set(false);
+        }
+    }
+
+    /**
+     * 插件关闭时停止合并线程，之后再次使用时重新创建
+     */
+    public static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private static ExecutorService executor() {
+        ExecutorService current = executor;
+        if (current == null) {
+            synchronized (MergedDictionary.class) {
+                if (executor == null) {
+                    executor = AccessController.doPrivileged((PrivilegedAction<ExecutorService>)() ->
+                        Executors.newSingleThreadExecutor(runnable -> {
+                            Thread thread = new Thread(runnable, "hanlp-merged-dictionary");
+                            thread.setDaemon(true);
+                            return thread;
+                        }));
+                }
+                current = executor;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 合并核心词典、自定义词典和动态增加的词，同一个词以自定义词典的词性为准
+     *
+     * @param version 合并前读取的自定义词典版本
+     */
+    private static Snapshot build(long version) {
+        long begin = System.nanoTime();
+        DoubleArrayTrie<CoreDictionary.Attribute> trie = AccessController.doPrivileged(
+            (PrivilegedAction<DoubleArrayTrie<CoreDictionary.Attribute>>)() -> {
+                TreeMap<String, CoreDictionary.Attribute> words = new TreeMap<>();
+                collect(CoreDictionary.trie, words);
+                collect(CustomDictionary.dat, words);
+                if (CustomDictionary.trie != null) {
+                    for (Map.Entry<String, CoreDictionary.Attribute> entry : CustomDictionary.trie.entrySet()) {
+                        words.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                return new DoubleArrayTrie<>(words);
+            });
+        long nanos = System.nanoTime() - begin;
+        BUILDS.increment();
+        BUILD_NANOS.add(nanos);
+        logger.info("build hanlp merged dictionary, words: {}, version: {}, took: {}ms", trie.size(), version,
+            TimeUnit.NANOSECONDS.toMillis(nanos));
+        return new Snapshot(trie, version);
+    }
+
+    /**
+     * 遍历双数组trie中的全部词。双数组不保存词本身，这里从save输出的base、check数组还原转移：
+     * 状态b经字符c转移到下标p = b + c + 1，check[p] == b；p == b且base[p] < 0时状态b为词尾
+     *
+     * @param trie  双数组trie
+     * @param words 词及其属性，已存在的词被覆盖
+     */
+    static void collect(DoubleArrayTrie<CoreDictionary.Attribute> trie, Map<String, CoreDictionary.Attribute> words) {
+        if (trie == null || trie.size() == 0) {
+            return;
+        }
+        int[] base;
+        int[] check;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(bytes));
+            if (!trie.save(out)) {
+                throw new IllegalStateException("can not read double array trie");
+            }
+            out.flush();
+            IntBuffer in = ByteBuffer.wrap(bytes.toByteArray()).asIntBuffer();
+            int size = in.get();
+            base = new int[size];
+            check = new int[size];
+            for (int i = 0; i < size; i++) {
+                base[i] = in.get();
+                check[i] = in.get();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("can not read double array trie", e);
+        }
+        // 按check把下标串成以父状态为头的链表
+        int[] head = new int[base.length];
+        int[] next = new int[base.length];
+        Arrays.fill(head, -1);
+        for (int p = base.length - 1; p > 0; p--) {
+            int parent = check[p];
+            if (parent > 0 && parent < base.length) {
+                next[p] = head[parent];
+                head[parent] = p;
+            }
+        }
+        Deque<Object[]> stack = new ArrayDeque<>();
+        stack.push(new Object[]{base[0], ""});
+        while (!stack.isEmpty()) {
+            Object[] top = stack.pop();
+            int state = (Integer)top[0];
+            String prefix = (String)top[1];
+            if (state <= 0 || state >= base.length) {
+                continue;
+            }
+            for (int p = head[state]; p >= 0; p = next[p]) {
+                if (p == state) {
+                    CoreDictionary.Attribute attribute = trie.output(state);
+                    if (attribute != null) {
+                        words.put(prefix, attribute);
+                    }
+                } else {
+                    stack.push(new Object[]{base[p], prefix + (char)(p - state - 1)});
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 合并统计
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        Snapshot current = snapshot;
+        stats.put("words", current == null ? 0 : current.trie.size());
+        stats.put("custom_dictionary_version", current == null ? -1 : current.version);
+        stats.put("builds", BUILDS.sum());
+        stats.put("build_time_in_millis", TimeUnit.NANOSECONDS.toMillis(BUILD_NANOS.sum()));
+        stats.put("failures", FAILURES.sum());
+        stats.put("rebuilding", REBUILDING.get());
+        return stats;
+    }
+
+    private static final class Snapshot {
+
+        private final DoubleArrayTrie<CoreDictionary.Attribute> trie;
+        /**
+         * 合并时的自定义词典版本
+         */
+        private final long version;
+
+        Snapshot(DoubleArrayTrie<CoreDictionary.Attribute> trie, long version) {
+            this.trie = trie;
+            this.version = version;
+        }
+    }
+}
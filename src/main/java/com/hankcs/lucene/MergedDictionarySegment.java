@@ -0,0 +1,40 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.collection.trie.DoubleArrayTrie;
+import com.hankcs.hanlp.dictionary.CoreDictionary;
+import com.hankcs.hanlp.seg.Other.DoubleArrayTrieSegment;
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.seg.common.Term;
+
+import java.util.List;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 极速词典分词，开启自定义词典时在{@link MergedDictionary}合并后的trie上做一次最长匹配，
+ * 代替DoubleArrayTrieSegment依次匹配核心词典、自定义词典和动态词典的三遍扫描。合并完成前仍按三遍扫描分词，
+ * 关闭时与DoubleArrayTrieSegment一致
+ * @author: Kenn
+ * @create: 2019-06-12 11:20
+ */
+public class MergedDictionarySegment extends DoubleArrayTrieSegment {
+    /**
+     * 是否使用合并了自定义词典的trie
+     */
+    private boolean merged;
+
+    @Override
+    public Segment enableCustomDictionary(boolean enable) {
+        merged = enable;
+        // 每次分词时按合并词典是否可用决定父类是否单独匹配自定义词典
+        return super.enableCustomDictionary(false);
+    }
+
+    @Override
+    protected List<Term> segSentence(char[] sentence) {
+        DoubleArrayTrie<CoreDictionary.Attribute> current = merged ? MergedDictionary.current() : null;
+        // 自定义词典已合并进trie时父类不再单独匹配
+        trie = current == null ? CoreDictionary.trie : current;
+        config.useCustomDictionary = merged && current == null;
+        return super.segSentence(sentence);
+    }
+}
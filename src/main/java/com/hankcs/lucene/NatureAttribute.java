@@ -0,0 +1,21 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.corpus.tag.Nature;
+import org.apache.lucene.util.Attribute;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: hanlp分词器输出的词性。TypeAttribute只能携带词性名称，
+ * 这里保留Nature对象，下游过滤器可以直接按序号查表，不需要比较字符串
+ * @author: Kenn
+ * @create: 2019-06-20 09:30
+ */
+public interface NatureAttribute extends Attribute {
+
+    /**
+     * @return 词性，没有词性或不是hanlp分词器输出的词时为null
+     */
+    Nature getNature();
+
+    void setNature(Nature nature);
+}
@@ -0,0 +1,51 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.corpus.tag.Nature;
+import org.apache.lucene.util.AttributeImpl;
+import org.apache.lucene.util.AttributeReflector;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: {@link NatureAttribute}的默认实现
+ * @author: Kenn
+ * @create: 2019-06-20 09:30
+ */
+public class NatureAttributeImpl extends AttributeImpl implements NatureAttribute {
+
+    private Nature nature;
+
+    @Override
+    public Nature getNature() {
+        return nature;
+    }
+
+    @Override
+    public void setNature(Nature nature) {
+        this.nature = nature;
+    }
+
+    @Override
+    public void clear() {
+        nature = null;
+    }
+
+    @Override
+    public void reflectWith(AttributeReflector reflector) {
+        reflector.reflect(NatureAttribute.class, "nature", nature == null ? null : nature.toString());
+    }
+
+    @Override
+    public void copyTo(AttributeImpl target) {
+        ((NatureAttribute)target).setNature(nature);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof NatureAttributeImpl && ((NatureAttributeImpl)other).nature == nature;
+    }
+
+    @Override
+    public int hashCode() {
+        return nature == null ? 0 : nature.ordinal();
+    }
+}
@@ -0,0 +1,88 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.corpus.tag.Nature;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 词性集合，由词性名称和以*结尾的前缀（如w*、u*）构成。构造时按Nature序号预先算好位图，
+ * 判断只需一次查表；构造之后才由自定义词典创建的词性序号超出位图，退回按名称匹配。不可变，可在线程间共享
+ * @author: Kenn
+ * @create: 2019-06-20 10:00
+ */
+public final class NatureSet {
+
+    private final String[] names;
+
+    private final String[] prefixes;
+
+    private final long[] bits;
+
+    private final int size;
+
+    private NatureSet(String[] names, String[] prefixes) {
+        this.names = names;
+        this.prefixes = prefixes;
+        Nature[] natures = Nature.values();
+        this.size = natures.length;
+        this.bits = new long[(size + 63) >>> 6];
+        for (Nature nature : natures) {
+            if (matches(nature.toString())) {
+                bits[nature.ordinal() >>> 6] |= 1L << nature.ordinal();
+            }
+        }
+    }
+
+    /**
+     * @param patterns 词性名称或以*结尾的词性前缀
+     * @return 词性集合
+     */
+    public static NatureSet of(Collection<String> patterns) {
+        List<String> names = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        for (String pattern : patterns) {
+            String trimmed = pattern.trim();
+            if (trimmed.isEmpty()) {
+                throw new IllegalArgumentException("empty nature pattern in " + patterns);
+            }
+            if (trimmed.endsWith("*")) {
+                prefixes.add(trimmed.substring(0, trimmed.length() - 1));
+            } else {
+                names.add(trimmed);
+            }
+        }
+        return new NatureSet(names.toArray(new String[0]), prefixes.toArray(new String[0]));
+    }
+
+    /**
+     * @param nature 词性
+     * @return 是否在集合中，词性为null时返回false
+     */
+    public boolean contains(Nature nature) {
+        if (nature == null) {
+            return false;
+        }
+        int ordinal = nature.ordinal();
+        if (ordinal < size) {
+            return (bits[ordinal >>> 6] & 1L << ordinal) != 0;
+        }
+        return matches(nature.toString());
+    }
+
+    private boolean matches(String name) {
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        for (String candidate : names) {
+            if (name.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
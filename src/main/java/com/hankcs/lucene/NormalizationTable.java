@@ -0,0 +1,159 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.dictionary.other.CharTable;
+import com.hankcs.help.ESPluginLoggerFactory;
+import org.apache.logging.log4j.Logger;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: hanlp_normalization使用的字符映射表。在HanLP的CharTable（繁简、全角半角、大小写）基础上
+ * 再折叠全角ASCII、半角片假名和非ASCII字母的大小写，合成为一张65536项的char表，节点内只构建一次。
+ * 除半角片假名后跟半角浊音符、半浊音符时合成一个字符外，所有映射都是一对一的
+ * @author: Kenn
+ * @create: 2019-06-17 09:30
+ */
+public final class NormalizationTable {
+
+    private static final Logger logger = ESPluginLoggerFactory.getLogger(NormalizationTable.class.getName());
+    /**
+     * 可与浊音符、半浊音符合成的全角片假名范围
+     */
+    private static final char KANA_START = 'ウ';
+
+    private static final char KANA_END = 'ヽ';
+
+    private static final char HALF_VOICED_MARK = 'ﾞ';
+
+    private static final char HALF_SEMI_VOICED_MARK = 'ﾟ';
+
+    private static volatile NormalizationTable instance;
+
+    private final char[] table = new char[Character.MAX_VALUE + 1];
+    /**
+     * 片假名与浊音符、半浊音符合成后的字符，不能合成时为0
+     */
+    private final char[] voiced = new char[KANA_END - KANA_START + 1];
+
+    private final char[] semiVoiced = new char[KANA_END - KANA_START + 1];
+    /**
+     * 映射后发生变化的字符数
+     */
+    private final int mapped;
+
+    private final long loadNanos;
+
+    private NormalizationTable(char[] convert, long begin) {
+        int count = 0;
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            table[c] = fold(convert[c]);
+            if (table[c] != c) {
+                count++;
+            }
+        }
+        for (char c = KANA_START; c <= KANA_END; c++) {
+            voiced[c - KANA_START] = compose(c, '\u3099');
+            semiVoiced[c - KANA_START] = compose(c, '\u309a');
+        }
+        this.mapped = count;
+        this.loadNanos = System.nanoTime() - begin;
+    }
+
+    /**
+     * 折叠CharTable的映射结果：全角ASCII转半角，半角片假名转全角，再转小写
+     */
+    private static char fold(char c) {
+        if (c >= '！' && c <= '～') {
+            c -= 0xFEE0;
+        } else if (c >= '･' && c <= HALF_SEMI_VOICED_MARK) {
+            // 不能合成的浊音符按NFKC转为组合用浊音符，与cjk_width一致
+            c = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFKC).charAt(0);
+        }
+        return Character.toLowerCase(c);
+    }
+
+    private static char compose(char kana, char mark) {
+        String composed = Normalizer.normalize(new String(new char[]{kana, mark}), Normalizer.Form.NFC);
+        return composed.length() == 1 ? composed.charAt(0) : 0;
+    }
+
+    /**
+     * 获取节点级共享的映射表，首次使用时由CharTable构建
+     *
+     * @return 映射表
+     */
+    public static NormalizationTable get() {
+        NormalizationTable current = instance;
+        if (current == null) {
+            synchronized (NormalizationTable.class) {
+                if (instance == null) {
+                    instance = AccessController.doPrivileged((PrivilegedAction<NormalizationTable>)() -> {
+                        long begin = System.nanoTime();
+                        NormalizationTable table = new NormalizationTable(CharTable.CONVERT, begin);
+                        logger.info("build hanlp normalization table, mapped: {}, took: {}ms", table.mapped,
+                            TimeUnit.NANOSECONDS.toMillis(table.loadNanos));
+                        return table;
+                    });
+                }
+                current = instance;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @param c 原字符
+     * @return 规范化后的字符
+     */
+    public char map(char c) {
+        return table[c];
+    }
+
+    /**
+     * @param c 原字符
+     * @return 是否为半角浊音符或半浊音符
+     */
+    public static boolean isMark(char c) {
+        return c == HALF_VOICED_MARK || c == HALF_SEMI_VOICED_MARK;
+    }
+
+    /**
+     * @param c 规范化后的字符
+     * @return 是否可能与后面的浊音符、半浊音符合成
+     */
+    public boolean isCombinable(char c) {
+        return c >= KANA_START && c <= KANA_END && (voiced[c - KANA_START] != 0 || semiVoiced[c - KANA_START] != 0);
+    }
+
+    /**
+     * @param kana 规范化后的片假名
+     * @param mark 原文中的半角浊音符或半浊音符
+     * @return 合成后的字符，不能合成时为0
+     */
+    public char combine(char kana, char mark) {
+        if (kana < KANA_START || kana > KANA_END) {
+            return 0;
+        }
+        return mark == HALF_VOICED_MARK ? voiced[kana - KANA_START] : semiVoiced[kana - KANA_START];
+    }
+
+    /**
+     * @return 映射表统计
+     */
+    public static Map<String, Object> stats() {
+        NormalizationTable current = instance;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("loaded", current != null);
+        if (current != null) {
+            stats.put("mapped_chars", current.mapped);
+            stats.put("load_time_in_millis", TimeUnit.NANOSECONDS.toMillis(current.loadNanos));
+        }
+        return stats;
+    }
+}
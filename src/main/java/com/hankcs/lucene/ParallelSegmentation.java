@@ -0,0 +1,155 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.seg.common.Term;
+import com.hankcs.help.ESPluginLoggerFactory;
+import org.apache.logging.log4j.Logger;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 文档内并行分词，超长文本在句子边界处切开后提交到节点级的fork-join线程池中分词。
+ * 分词器不保证线程安全，每个工作线程从Segment池中取自己的分词器
+ * @author: Kenn
+ * @create: 2019-05-22 14:36
+ */
+public class ParallelSegmentation {
+
+    private static final Logger logger = ESPluginLoggerFactory.getLogger(ParallelSegmentation.class.getName());
+    /**
+     * 节点级线程池，所有tokenizer共享
+     */
+    private static volatile ForkJoinPool pool;
+    /**
+     * 线程池并行度
+     */
+    private static int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    private ParallelSegmentation() {
+    }
+
+    /**
+     * 配置线程池并行度，须在第一次分词前调用
+     *
+     * @param parallelism 并行度
+     */
+    public static synchronized void configure(int parallelism) {
+        ParallelSegmentation.parallelism = parallelism;
+    }
+
+    /**
+     * 对文本并行分词，文本长度不超过threshold时直接在当前线程中分词
+     *
+     * @param segment   当前线程的分词器
+     * @param segments  在工作线程中调用，返回与segment配置相同、由该线程独占的分词器
+     * @param text      文本
+     * @param threshold 单个任务的最大长度，超过时才切分并行
+     * @return 按顺序排列的分词结果，offset相对于整个text
+     */
+    public static List<Term> seg(Segment segment, Supplier<Segment> segments, char[] text, int threshold) {
+        if (text.length <= threshold) {
+            return segment.seg(text);
+        }
+        return pool().invoke(new SegmentTask(segments, text, 0, text.length, threshold));
+    }
+
+    /**
+     * 关闭线程池，插件关闭时调用。之后再有并行分词时重新创建
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            logger.info("shutdown hanlp parallel segmentation pool");
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    private static ForkJoinPool pool() {
+        if (pool == null) {
+            synchronized (ParallelSegmentation.class) {
+                if (pool == null) {
+                    logger.info("create hanlp parallel segmentation pool, parallelism: {}", parallelism);
+                    pool = AccessController.doPrivileged((PrivilegedAction<ForkJoinPool>)() -> new ForkJoinPool(parallelism));
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * 在[from, to)的中点附近寻找句子边界
+     *
+     * @return 边界之后的第一个字符下标，找不到时返回-1
+     */
+    private static int split(char[] text, int from, int to) {
+        int middle = (from + to) >>> 1;
+        for (int distance = 0; middle + distance < to - 1 || middle - distance > from; distance++) {
+            int right = middle + distance;
+            if (right < to - 1 && CharWindowReader.isSentenceDelimiter(text, right, to)) {
+                return right + 1;
+            }
+            int left = middle - distance - 1;
+            if (left > from && CharWindowReader.isSentenceDelimiter(text, left, to)) {
+                return left + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static class SegmentTask extends RecursiveTask<List<Term>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Supplier<Segment> segments;
+
+        private final char[] text;
+
+        private final int from;
+
+        private final int to;
+
+        private final int threshold;
+
+        SegmentTask(Supplier<Segment> segments, char[] text, int from, int to, int threshold) {
+            this.segments = segments;
+            this.text = text;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected List<Term> compute() {
+            int middle = to - from > threshold ? split(text, from, to) : -1;
+            if (middle < 0) {
+                return segDirectly();
+            }
+            SegmentTask left = new SegmentTask(segments, text, from, middle, threshold);
+            SegmentTask right = new SegmentTask(segments, text, middle, to, threshold);
+            left.fork();
+            List<Term> rightTerms = right.compute();
+            List<Term> terms = new ArrayList<>(left.join());
+            terms.addAll(rightTerms);
+            return terms;
+        }
+
+        private List<Term> segDirectly() {
+            char[] piece = from == 0 && to == text.length ? text : Arrays.copyOfRange(text, from, to);
+            List<Term> terms = AccessController.doPrivileged((PrivilegedAction<List<Term>>)() -> segments.get().seg(piece));
+            if (from > 0) {
+                for (Term term : terms) {
+                    term.offset += from;
+                }
+            }
+            return terms;
+        }
+    }
+}
@@ -620,6 +620,28 @@ public class PorterStemmer
         return stem(word, 0, wordLen);
     }
 
+    /**
+     * Stem a word contained in a leading portion of a char[] array, writing the
+     * result back into the same array. Every step only removes or rewrites a
+     * suffix and never makes the word longer, so no copy is needed. Returns true
+     * if the word changed; the new length is getResultLength().
+     */
+    public boolean stemInPlace(char[] word, int wordLen)
+    {
+        char[] own = b;
+        reset();
+        b = word;
+        i = wordLen;
+        try
+        {
+            return stem(0);
+        }
+        finally
+        {
+            b = own;
+        }
+    }
+
     /**
      * Stem the word placed into the Stemmer buffer through calls to add().
      * Returns true if the stemming process resulted in a word different from
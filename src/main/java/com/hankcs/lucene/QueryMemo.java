@@ -0,0 +1,330 @@
+package com.hankcs.lucene;
+
+import com.hankcs.dic.DictionaryVersion;
+import com.hankcs.hanlp.corpus.tag.Nature;
+import org.apache.lucene.util.ArrayUtil;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 查询分析结果备忘，multi_match等跨多个字段、多个分片的查询会对同一个查询串重复分词，
+ * 这里按(分词配置, 词典版本, 文本)短时间保存tokenizer的完整输出并直接回放。
+ * 只用于search_analyzer，条目按个数限制并在超过ttl后过期，词典版本变化后整体失效。
+ * 与分词结果缓存一样分段加锁，每段内按LRU淘汰
+ * @author: Kenn
+ * @create: 2019-05-29 14:10
+ */
+public class QueryMemo {
+    /**
+     * 可备忘的查询文本最大长度
+     */
+    public static final int MAX_TEXT_LENGTH = 1024;
+    /**
+     * 分段数，降低锁竞争
+     */
+    private static final int STRIPES = 16;
+    /**
+     * 最多保存的条目数，为0时不备忘
+     */
+    private static volatile int maxEntries = 10000;
+    /**
+     * 条目存活时间
+     */
+    private static volatile long ttlNanos = TimeUnit.SECONDS.toNanos(60);
+    /**
+     * 备忘内容对应的词典版本
+     */
+    private static volatile long version = DictionaryVersion.current();
+
+    private static final Stripe[] SEGMENTS = new Stripe[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            SEGMENTS[i] = new Stripe();
+        }
+    }
+
+    private static final LongAdder HITS = new LongAdder();
+
+    private static final LongAdder MISSES = new LongAdder();
+
+    private static final LongAdder EVICTIONS = new LongAdder();
+
+    private static final LongAdder EXPIRATIONS = new LongAdder();
+
+    private static final LongAdder INVALIDATIONS = new LongAdder();
+
+    private QueryMemo() {
+    }
+
+    /**
+     * 配置备忘大小
+     *
+     * @param maxEntries 最多保存的条目数，为0时不备忘
+     * @param ttlMillis  条目存活时间
+     */
+    public static void configure(int maxEntries, long ttlMillis) {
+        QueryMemo.maxEntries = maxEntries;
+        QueryMemo.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        clear();
+    }
+
+    /**
+     * @return 是否开启了备忘
+     */
+    public static boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * 文本是否可以备忘
+     *
+     * @param length 文本长度
+     * @return 是否可以备忘
+     */
+    public static boolean accept(int length) {
+        return maxEntries > 0 && length <= MAX_TEXT_LENGTH;
+    }
+
+    /**
+     * 查找备忘的分析结果
+     *
+     * @param profile 分词配置
+     * @param version 分词前读取的词典版本
+     * @param text    查询文本
+     * @return 未命中或已过期时返回null
+     */
+    public static Entry get(SegmentationProfile profile, long version, String text) {
+        checkVersion(version);
+        Key key = new Key(profile, version, text);
+        Entry entry = stripe(key).get(key, ttlNanos);
+        if (entry == null) {
+            MISSES.increment();
+        } else {
+            HITS.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * 保存分析结果
+     *
+     * @param profile 分词配置
+     * @param version 分词前读取的词典版本，分析期间词典发生变化时该结果不会再被命中
+     * @param text    查询文本
+     * @param entry   分析结果
+     */
+    public static void put(SegmentationProfile profile, long version, String text, Entry entry) {
+        int max = maxEntries;
+        if (max > 0) {
+            Key key = new Key(profile, version, text);
+            // 向上取整，保证总条目数较小时每段也能保存
+            stripe(key).put(key, entry, (max + STRIPES - 1) / STRIPES);
+        }
+    }
+
+    private static void clear() {
+        for (Stripe stripe : SEGMENTS) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * 词典版本变化后旧版本的条目不会再被命中，直接清空以释放内存
+     *
+     * @param current 当前词典版本
+     */
+    private static void checkVersion(long current) {
+        if (current > version) {
+            synchronized (QueryMemo.class) {
+                if (current > version) {
+                    version = current;
+                    INVALIDATIONS.increment();
+                    clear();
+                }
+            }
+        }
+    }
+
+    private static Stripe stripe(Key key) {
+        int hash = key.hashCode;
+        return SEGMENTS[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * @return 备忘统计
+     */
+    public static Map<String, Object> stats() {
+        long entries = 0;
+        for (Stripe stripe : SEGMENTS) {
+            entries += stripe.size();
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", HITS.sum());
+        stats.put("misses", MISSES.sum());
+        stats.put("evictions", EVICTIONS.sum());
+        stats.put("expirations", EXPIRATIONS.sum());
+        stats.put("invalidations", INVALIDATIONS.sum());
+        stats.put("entries", entries);
+        stats.put("max_entries", maxEntries);
+        stats.put("ttl_in_millis", TimeUnit.NANOSECONDS.toMillis(ttlNanos));
+        stats.put("dictionary_version", version);
+        return stats;
+    }
+
+    /**
+     * 一次分析输出的全部token，只读
+     */
+    public static final class Entry {
+
+        final String[] terms;
+
+        final int[] startOffsets;
+
+        final int[] endOffsets;
+
+        final int[] positionIncrements;
+
+        final Nature[] natures;
+        /**
+         * 本次分析对总offset的增量
+         */
+        final int offsetIncrement;
+
+        final long created = System.nanoTime();
+
+        private Entry(Builder builder, int offsetIncrement) {
+            int size = builder.size;
+            this.terms = Arrays.copyOf(builder.terms, size);
+            this.startOffsets = Arrays.copyOf(builder.startOffsets, size);
+            this.endOffsets = Arrays.copyOf(builder.endOffsets, size);
+            this.positionIncrements = Arrays.copyOf(builder.positionIncrements, size);
+            this.natures = Arrays.copyOf(builder.natures, size);
+            this.offsetIncrement = offsetIncrement;
+        }
+
+        public int size() {
+            return terms.length;
+        }
+    }
+
+    /**
+     * 在正常分析过程中记录输出的token
+     */
+    public static final class Builder {
+
+        private String[] terms = new String[8];
+
+        private int[] startOffsets = new int[8];
+
+        private int[] endOffsets = new int[8];
+
+        private int[] positionIncrements = new int[8];
+
+        private Nature[] natures = new Nature[8];
+
+        private int size;
+
+        public void add(String term, int startOffset, int endOffset, int positionIncrement, Nature nature) {
+            if (size == terms.length) {
+                int length = ArrayUtil.oversize(size + 1, 4);
+                terms = Arrays.copyOf(terms, length);
+                startOffsets = Arrays.copyOf(startOffsets, length);
+                endOffsets = Arrays.copyOf(endOffsets, length);
+                positionIncrements = Arrays.copyOf(positionIncrements, length);
+                natures = Arrays.copyOf(natures, length);
+            }
+            terms[size] = term;
+            startOffsets[size] = startOffset;
+            endOffsets[size] = endOffset;
+            positionIncrements[size] = positionIncrement;
+            natures[size] = nature;
+            size++;
+        }
+
+        public Entry build(int offsetIncrement) {
+            return new Entry(this, offsetIncrement);
+        }
+    }
+
+    private static final class Key {
+
+        private final SegmentationProfile profile;
+
+        private final long version;
+
+        private final String text;
+
+        private final int hashCode;
+
+        Key(SegmentationProfile profile, long version, String text) {
+            this.profile = profile;
+            this.version = version;
+            this.text = text;
+            this.hashCode = Objects.hash(profile, version, text);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key)o;
+            return version == that.version &&
+                text.equals(that.text) &&
+                profile.equals(that.profile);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * 备忘的一段，所有操作在本段的锁内进行
+     */
+    private static final class Stripe {
+
+        private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        synchronized Entry get(Key key, long ttlNanos) {
+            Entry entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.created > ttlNanos) {
+                entries.remove(key);
+                EXPIRATIONS.increment();
+                return null;
+            }
+            return entry;
+        }
+
+        synchronized void put(Key key, Entry entry, int maxEntries) {
+            entries.put(key, entry);
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                EVICTIONS.increment();
+            }
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.hankcs.lucene;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 分词预算统计，字段值的分词耗时或词数超出max_segment_millis、max_tokens_per_document后，
+ * 剩余文本改用极速词典分词或直接丢弃，这里按原因和处理方式分别计数
+ * @author: Kenn
+ * @create: 2019-05-31 09:40
+ */
+public class SegmentBudget {
+
+    private static final LongAdder TIME_FALLBACKS = new LongAdder();
+
+    private static final LongAdder TIME_DROPS = new LongAdder();
+
+    private static final LongAdder TOKEN_FALLBACKS = new LongAdder();
+
+    private static final LongAdder TOKEN_DROPS = new LongAdder();
+
+    private SegmentBudget() {
+    }
+
+    /**
+     * 记录一次超出预算
+     *
+     * @param time 是否因分词耗时超出，否则为词数超出
+     * @param drop 剩余文本是否被丢弃，否则为降级分词
+     */
+    public static void exceeded(boolean time, boolean drop) {
+        if (time) {
+            (drop ? TIME_DROPS : TIME_FALLBACKS).increment();
+        } else {
+            (drop ? TOKEN_DROPS : TOKEN_FALLBACKS).increment();
+        }
+    }
+
+    /**
+     * @return 预算统计
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("time_fallbacks", TIME_FALLBACKS.sum());
+        stats.put("time_drops", TIME_DROPS.sum());
+        stats.put("token_fallbacks", TOKEN_FALLBACKS.sum());
+        stats.put("token_drops", TOKEN_DROPS.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,87 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.seg.CRF.CRFSegment;
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.tokenizer.lexical.AbstractLexicalAnalyzer;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 分词引擎
+ * @author: Kenn
+ * @create: 2019-05-24 10:05
+ */
+public enum SegmentEngine {
+    /**
+     * HanLP默认分词器（维特比）
+     */
+    VITERBI {
+        @Override
+        Segment create() {
+            return HanLP.newSegment();
+        }
+    },
+    /**
+     * N-最短路分词，在每线程复用的词图上求解
+     */
+    N_SHORT {
+        @Override
+        Segment create() {
+            return new ArenaNShortSegment();
+        }
+    },
+    /**
+     * 最短路分词，在每线程复用的词图上求解
+     */
+    DIJKSTRA {
+        @Override
+        Segment create() {
+            return new ArenaDijkstraSegment();
+        }
+    },
+    /**
+     * CRF分词
+     */
+    @Deprecated
+    CRF {
+        @Override
+        Segment create() {
+            return new CRFSegment();
+        }
+    },
+    /**
+     * 感知机分词，模型只读映射并在节点内共享
+     */
+    PERCEPTRON {
+        @Override
+        Segment create() {
+            return new AbstractLexicalAnalyzer(new MappedPerceptronSegmenter(MappedPerceptronModel.get()));
+        }
+    },
+    /**
+     * 极速词典分词，开启自定义词典时使用合并后的trie
+     */
+    SPEED {
+        @Override
+        Segment create() {
+            return new MergedDictionarySegment();
+        }
+    };
+
+    /**
+     * 创建未配置的分词器，可能需要加载词典或模型，须在特权块中调用
+     *
+     * @return 分词器
+     */
+    abstract Segment create();
+
+    /**
+     * 分词器是否按HanLP的字符类型表把西文切成原子，只在命中词典时合并。
+     * 只有这类分词器的西文输出可以由{@link AsciiFastPath}代替
+     *
+     * @return 是否按原子切分西文
+     */
+    boolean isAtomic() {
+        return this == VITERBI || this == DIJKSTRA;
+    }
+}
@@ -0,0 +1,83 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.seg.Segment;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 节点级Segment池，按有效配置复用已配置好的分词器。
+ * 每个线程持有自己的一组分词器，按LRU淘汰，避免线程间共享带来的竞争
+ * @author: Kenn
+ * @create: 2019-05-24 10:40
+ */
+public class SegmentPool {
+    /**
+     * 每个线程最多缓存的分词器个数
+     */
+    private static volatile int maxSegmentsPerThread = 32;
+
+    private static final ThreadLocal<Map<SegmentSpec, Segment>> SEGMENTS = ThreadLocal.withInitial(() ->
+        new LinkedHashMap<SegmentSpec, Segment>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SegmentSpec, Segment> eldest) {
+                if (size() > maxSegmentsPerThread) {
+                    EVICTIONS.increment();
+                    return true;
+                }
+                return false;
+            }
+        });
+
+    private static final LongAdder HITS = new LongAdder();
+
+    private static final LongAdder MISSES = new LongAdder();
+
+    private static final LongAdder EVICTIONS = new LongAdder();
+
+    private SegmentPool() {
+    }
+
+    /**
+     * 配置每个线程最多缓存的分词器个数
+     *
+     * @param maxSegmentsPerThread 最大个数
+     */
+    public static void configure(int maxSegmentsPerThread) {
+        SegmentPool.maxSegmentsPerThread = maxSegmentsPerThread;
+    }
+
+    /**
+     * 获取当前线程中与spec对应的分词器，不存在时创建
+     *
+     * @param spec 分词器配置
+     * @return 已配置好的分词器
+     */
+    public static Segment acquire(SegmentSpec spec) {
+        Map<SegmentSpec, Segment> segments = SEGMENTS.get();
+        Segment segment = segments.get(spec);
+        if (segment != null) {
+            HITS.increment();
+            return segment;
+        }
+        MISSES.increment();
+        segment = spec.create();
+        segments.put(spec, segment);
+        return segment;
+    }
+
+    /**
+     * @return 池的命中统计
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", HITS.sum());
+        stats.put("misses", MISSES.sum());
+        stats.put("evictions", EVICTIONS.sum());
+        stats.put("max_per_thread", maxSegmentsPerThread);
+        return stats;
+    }
+}
@@ -0,0 +1,203 @@
+package com.hankcs.lucene;
+
+import com.hankcs.cfg.Configuration;
+import com.hankcs.hanlp.seg.Segment;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Objects;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 分词器的有效配置，作为Segment池的键
+ * @author: Kenn
+ * @create: 2019-05-24 10:18
+ */
+public final class SegmentSpec {
+    /**
+     * 分词引擎，为null时表示由调用方提供Segment
+     */
+    private final SegmentEngine engine;
+
+    /**
+     * 索引模式子词的最小长度，为0时不开启索引模式
+     */
+    private final int indexMode;
+
+    private final boolean numberQuantifierRecognize;
+
+    private final boolean customDictionary;
+
+    private final boolean translatedNameRecognize;
+
+    private final boolean japaneseNameRecognize;
+
+    private final boolean organizationRecognize;
+
+    private final boolean placeRecognize;
+
+    private final boolean nameRecognize;
+
+    private final boolean partOfSpeechTagging;
+
+    private final boolean offset;
+
+    private final int hashCode;
+
+    public SegmentSpec(SegmentEngine engine, Configuration configuration) {
+        // 繁体模式下由TraditionalChineseSegment包装，不支持索引模式
+        this(engine, configuration.isEnableIndexMode() && !configuration.isEnableTraditionalChineseMode() ?
+                Math.max(1, configuration.getIndexModeMinLength()) : 0,
+            configuration.isEnableNumberQuantifierRecognize(), configuration.isEnableCustomDictionary(),
+            configuration.isEnableTranslatedNameRecognize(), configuration.isEnableJapaneseNameRecognize(),
+            configuration.isEnableOrganizationRecognize(), configuration.isEnablePlaceRecognize(),
+            configuration.isEnableNameRecognize(), configuration.isEnablePartOfSpeechTagging(),
+            configuration.isEnableOffset());
+    }
+
+    private SegmentSpec(SegmentEngine engine, int indexMode, boolean numberQuantifierRecognize,
+                        boolean customDictionary, boolean translatedNameRecognize, boolean japaneseNameRecognize,
+                        boolean organizationRecognize, boolean placeRecognize, boolean nameRecognize,
+                        boolean partOfSpeechTagging, boolean offset) {
+        this.engine = engine;
+        this.indexMode = indexMode;
+        this.numberQuantifierRecognize = numberQuantifierRecognize;
+        this.customDictionary = customDictionary;
+        this.translatedNameRecognize = translatedNameRecognize;
+        this.japaneseNameRecognize = japaneseNameRecognize;
+        this.organizationRecognize = organizationRecognize;
+        this.placeRecognize = placeRecognize;
+        this.nameRecognize = nameRecognize;
+        this.partOfSpeechTagging = partOfSpeechTagging;
+        this.offset = offset;
+        this.hashCode = Objects.hash(engine, indexMode, numberQuantifierRecognize, customDictionary,
+            translatedNameRecognize, japaneseNameRecognize, organizationRecognize, placeRecognize, nameRecognize,
+            partOfSpeechTagging, offset);
+    }
+
+    public SegmentEngine getEngine() {
+        return engine;
+    }
+
+    public boolean isIndexMode() {
+        return indexMode > 0;
+    }
+
+    public boolean isCustomDictionary() {
+        return customDictionary;
+    }
+
+    /**
+     * @return 是否开启了任一命名实体识别
+     */
+    public boolean isRecognition() {
+        return translatedNameRecognize || japaneseNameRecognize || organizationRecognize || placeRecognize ||
+            nameRecognize;
+    }
+
+    /**
+     * @param engine 分词引擎
+     * @return 其余配置相同、使用指定分词引擎的配置
+     */
+    public SegmentSpec withEngine(SegmentEngine engine) {
+        if (engine == this.engine) {
+            return this;
+        }
+        return new SegmentSpec(engine, indexMode, numberQuantifierRecognize, customDictionary,
+            translatedNameRecognize, japaneseNameRecognize, organizationRecognize, placeRecognize, nameRecognize,
+            partOfSpeechTagging, offset);
+    }
+
+    /**
+     * @return 其余配置相同、开启全部命名实体识别和词性标注的配置，与hanlp_nlp一致
+     */
+    public SegmentSpec withRecognition() {
+        return new SegmentSpec(engine, indexMode, numberQuantifierRecognize, customDictionary,
+            true, true, true, true, true, true, offset);
+    }
+
+    /**
+     * @return 其余配置相同、关闭全部命名实体识别的配置
+     */
+    public SegmentSpec withoutRecognition() {
+        return new SegmentSpec(engine, indexMode, numberQuantifierRecognize, customDictionary,
+            false, false, false, false, false, partOfSpeechTagging, offset);
+    }
+
+    /**
+     * 创建并配置一个新的分词器
+     *
+     * @return 分词器
+     */
+    public Segment create() {
+        return configure(AccessController.doPrivileged((PrivilegedAction<Segment>)engine::create));
+    }
+
+    /**
+     * 按本配置设置segment
+     *
+     * @param segment 原始segment
+     * @return 配置后的segment
+     */
+    public Segment configure(Segment segment) {
+        // enableIndexMode(int)只接受正数，关闭时用布尔形式
+        if (indexMode > 0) {
+            segment.enableIndexMode(indexMode);
+        } else {
+            segment.enableIndexMode(false);
+        }
+        return segment.enableNumberQuantifierRecognize(numberQuantifierRecognize)
+            .enableCustomDictionary(customDictionary)
+            .enableTranslatedNameRecognize(translatedNameRecognize)
+            .enableJapaneseNameRecognize(japaneseNameRecognize)
+            .enableOrganizationRecognize(organizationRecognize)
+            .enablePlaceRecognize(placeRecognize)
+            .enableNameRecognize(nameRecognize)
+            .enablePartOfSpeechTagging(partOfSpeechTagging)
+            .enableOffset(offset);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SegmentSpec that = (SegmentSpec)o;
+        return engine == that.engine &&
+            indexMode == that.indexMode &&
+            numberQuantifierRecognize == that.numberQuantifierRecognize &&
+            customDictionary == that.customDictionary &&
+            translatedNameRecognize == that.translatedNameRecognize &&
+            japaneseNameRecognize == that.japaneseNameRecognize &&
+            organizationRecognize == that.organizationRecognize &&
+            placeRecognize == that.placeRecognize &&
+            nameRecognize == that.nameRecognize &&
+            partOfSpeechTagging == that.partOfSpeechTagging &&
+            offset == that.offset;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentSpec{" +
+            "engine=" + engine +
+            ", indexMode=" + indexMode +
+            ", numberQuantifierRecognize=" + numberQuantifierRecognize +
+            ", customDictionary=" + customDictionary +
+            ", translatedNameRecognize=" + translatedNameRecognize +
+            ", japaneseNameRecognize=" + japaneseNameRecognize +
+            ", organizationRecognize=" + organizationRecognize +
+            ", placeRecognize=" + placeRecognize +
+            ", nameRecognize=" + nameRecognize +
+            ", partOfSpeechTagging=" + partOfSpeechTagging +
+            ", offset=" + offset +
+            '}';
+    }
+}
@@ -10,18 +10,25 @@
  */
 package com.hankcs.lucene;
 
-import com.hankcs.cfg.Configuration;
+import com.hankcs.dic.DictionaryVersion;
+import com.hankcs.hanlp.corpus.tag.Nature;
 import com.hankcs.hanlp.dictionary.other.CharTable;
 import com.hankcs.hanlp.seg.Segment;
 import com.hankcs.hanlp.seg.common.Term;
 import com.hankcs.help.ESPluginLoggerFactory;
 import org.apache.logging.log4j.Logger;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.ArrayUtil;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Reader;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * @author hankcs
@@ -29,31 +36,118 @@ import java.util.Scanner;
  * 根据hankcs的代码稍作了一下修改
  */
 public class SegmentWrapper {
-
-    Scanner scanner;
+    /**
+     * 分词结果缓冲区初始大小
+     */
+    private static final int INITIAL_TERM_CAPACITY = 64;
+    /**
+     * 合并短行时一批文本的最大长度
+     */
+    private static final int MAX_BATCH_LENGTH = 4096;
+    /**
+     * 一次分词合并多行时的行分隔符
+     */
+    private static final char LINE_SEPARATOR = '\n';
+    /**
+     * 输入窗口，跨reset复用
+     */
+    CharWindowReader window = new CharWindowReader();
 
     Segment segment;
     /**
-     * 因为next是单个term出去的，所以在这里做一个记录
+     * 配置的分词器，超出预算后segment被替换为降级分词器，reset时恢复
+     */
+    Segment primary;
+    /**
+     * 当前交给分词器的文本，词的字符直接从这里拷贝
      */
-    Term[] termArray;
+    char[] text;
     /**
-     * termArray下标
+     * 因为next是单个term出去的，所以在这里做一个记录，以下缓冲区跨行、跨文档复用
+     */
+    String[] words = new String[INITIAL_TERM_CAPACITY];
+    /**
+     * 词在text中的偏移量
+     */
+    int[] offsets = new int[INITIAL_TERM_CAPACITY];
+    /**
+     * 词性
+     */
+    Nature[] natures = new Nature[INITIAL_TERM_CAPACITY];
+    /**
+     * 缓冲区中词的个数
+     */
+    int size;
+    /**
+     * 下一个词的下标
      */
     int index;
     /**
      * term的偏移量，由于wrapper是按行读取的，必须对term.offset做一个校正
      */
     int offset;
+    /**
+     * text在整个输入中的偏移量
+     */
+    int textOffset;
 
-    Configuration configuration;
+    /**
+     * 编译后的分词配置
+     */
+    SegmentationProfile profile;
+    /**
+     * 当前字段值已用于分词的时间
+     */
+    long segmentNanos;
+    /**
+     * 当前字段值已切分出的词数
+     */
+    int tokens;
+    /**
+     * 是否已超出预算改用降级分词器
+     */
+    boolean degraded;
+    /**
+     * 是否已超出预算丢弃剩余文本
+     */
+    boolean dropped;
+    /**
+     * 当前文本是否因节点并发限制改用轻量分词器
+     */
+    boolean throttled;
+    /**
+     * 自适应分词时当前文本所在的档位
+     */
+    AdaptiveTier tier;
+    /**
+     * 合并短行时text中每行的起始位置，lineStarts[lines]为text的长度
+     */
+    int[] lineStarts = new int[16];
+    /**
+     * text包含的行数
+     */
+    int lines;
+
+    /**
+     * 对text分词并填充缓冲区，复用同一个实例避免每行创建lambda
+     */
+    private final PrivilegedAction<Void> segAction = this::segText;
+    /**
+     * 并行分词时在工作线程中调用，按当前状态从Segment池中取该线程独占的分词器
+     */
+    private final Supplier<Segment> workerSegments = this::workerSegment;
+    /**
+     * 西文快速通道把需要分词的片段交给它，开启并行分词时片段照常并行
+     */
+    private final Function<char[], List<Term>> spanSegmenter = this::segSpan;
 
     private static final Logger logger = ESPluginLoggerFactory.getLogger(SegmentWrapper.class.getName());
 
-    public SegmentWrapper(Reader reader, Segment segment, Configuration configuration) {
-        scanner = createScanner(reader);
+    public SegmentWrapper(Reader reader, Segment segment, SegmentationProfile profile) {
+        window.reset(reader);
         this.segment = segment;
-        this.configuration = configuration;
+        this.primary = segment;
+        this.profile = profile;
     }
 
     /**
@@ -62,76 +156,449 @@ public class SegmentWrapper {
      * @param reader
      */
     public void reset(Reader reader) {
-        scanner = createScanner(reader);
-        termArray = null;
+        window.reset(reader);
+        text = null;
+        size = 0;
         index = 0;
         offset = 0;
+        textOffset = 0;
+        segment = primary;
+        segmentNanos = 0;
+        tokens = 0;
+        degraded = false;
+        dropped = false;
+        throttled = false;
+        tier = null;
     }
 
-    public Term next() {
-        if (termArray != null && index < termArray.length) {
-            return termArray[index++];
+    /**
+     * 移动到下一个词
+     *
+     * @return 没有更多词时返回false
+     * @throws IOException 读取输入失败
+     */
+    public boolean next() throws IOException {
+        if (index < size) {
+            index++;
+            return true;
         }
-        if (!scanner.hasNext()) {
-            return null;
+        if (dropped) {
+            return false;
         }
-        String line = scanner.next();
-        while (isBlank(line)) {
-            offset += line.length() + 1;
-            if (scanner.hasNext()) {
-                line = scanner.next();
-            } else {
-                return null;
+        int maxLength = profile.getMaxChunkLength();
+        while (window.next(maxLength)) {
+            int length = window.sliceLength();
+            if (window.isBlank()) {
+                offset += window.isLineEnd() ? length + 1 : length;
+                continue;
+            }
+            if (!degraded && exceedsBudget()) {
+                if (profile.isDropOnBudgetExceeded()) {
+                    dropped = true;
+                    return false;
+                }
+                segment = profile.fallbackSegment();
+                degraded = true;
+            }
+            if (profile.isAdaptive() && !degraded) {
+                AdaptiveTier current = profile.tier(length);
+                if (current != tier) {
+                    segment = profile.segment(current);
+                    tier = current;
+                }
+            }
+            int start = window.sliceStart();
+            text = Arrays.copyOfRange(window.buffer(), start, start + length);
+            lines = 1;
+            boolean hardCut = window.isHardCut();
+            if (length <= profile.getCoalesceLineLength() && window.isWholeLine()) {
+                length = coalesce(length);
             }
+            textOffset = offset;
+            ConcurrencyLimiter limiter = degraded ? null : profile.concurrencyLimiter();
+            boolean permitted = limiter != null && acquire(limiter);
+            Segment current = segment;
+            throttled = limiter != null && !permitted;
+            if (throttled) {
+                segment = profile.throttledSegment();
+            }
+            long nanos;
+            try {
+                long begin = System.nanoTime();
+                AccessController.doPrivileged(segAction);
+                nanos = System.nanoTime() - begin;
+            } finally {
+                if (permitted) {
+                    limiter.release();
+                }
+                segment = current;
+            }
+            segmentNanos += nanos;
+            if (tier != null && !degraded && !throttled) {
+                tier.record(length, nanos);
+            }
+            throttled = false;
+            tokens += size;
+            // 没有切分出词的行直接跳过，继续处理后面的行。原先基于Scanner的实现在这里返回null，
+            // 会把该行之后的文本整个丢掉
+            if (size == 0) {
+                offset += length;
+                continue;
+            }
+            if (hardCut) {
+                int consumed = trimTail(length);
+                if (consumed == 0) {
+                    // 整个片段是一个词，截断点落在词中间，放大片段重新读取
+                    tokens -= size;
+                    window.unread();
+                    maxLength <<= 1;
+                    continue;
+                }
+                length = consumed;
+            }
+            offset += length;
+            index = 1;
+            return true;
         }
+        return false;
+    }
 
-        final String lineNeedSeg = line;
-        List<Term> termList = AccessController.doPrivileged((PrivilegedAction<List<Term>>)() -> {
-            char[] text = lineNeedSeg.toCharArray();
-            if (configuration.isEnableNormalization()) {
-                AccessController.doPrivileged((PrivilegedAction) () -> {
-                    CharTable.normalization(text);
-                    return null;
-                });
+    /**
+     * 把当前行之后连续的短行并入text，遇到空行、长行或被切开的行时退回窗口。
+     * 自适应分词时档位按行长选择，与逐行分词以及按行缓存的结果保持一致，档位不同的行也退回窗口
+     *
+     * @param length 当前行长度
+     * @return 合并后text的长度
+     * @throws IOException 读取输入失败
+     */
+    private int coalesce(int length) throws IOException {
+        lineStarts[0] = 0;
+        while (length < MAX_BATCH_LENGTH && window.next(profile.getMaxChunkLength())) {
+            int lineLength = window.sliceLength();
+            if (lineLength > profile.getCoalesceLineLength() || !window.isWholeLine() || window.isBlank() ||
+                length + lineLength > MAX_BATCH_LENGTH || (tier != null && !degraded && profile.tier(lineLength) != tier)) {
+                window.unread();
+                break;
+            }
+            if (length + lineLength > text.length) {
+                text = Arrays.copyOf(text, Math.min(MAX_BATCH_LENGTH, ArrayUtil.oversize(length + lineLength, 2)));
             }
-            return segment.seg(text);
-        });
-        if (termList.size() == 0) {
+            System.arraycopy(window.buffer(), window.sliceStart(), text, length, lineLength);
+            if (lines + 1 >= lineStarts.length) {
+                lineStarts = Arrays.copyOf(lineStarts, lineStarts.length << 1);
+            }
+            lineStarts[lines++] = length;
+            length += lineLength;
+        }
+        lineStarts[lines] = length;
+        if (length < text.length) {
+            text = Arrays.copyOf(text, length);
+        }
+        return length;
+    }
+
+    /**
+     * 获取节点并发限制的许可，等待超时且没有配置轻量分词引擎时失败
+     *
+     * @param limiter 并发限制
+     * @return 是否获取到许可，为false时改用轻量分词器
+     * @throws IOException 等待超时或被中断
+     */
+    private static boolean acquire(ConcurrencyLimiter limiter) throws IOException {
+        boolean acquired;
+        try {
+            acquired = limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for hanlp concurrency limit");
+        }
+        if (!acquired && ConcurrencyLimiter.fallback() == null) {
+            throw new IOException("hanlp concurrency limit exceeded, timed out waiting for a permit");
+        }
+        return acquired;
+    }
+
+    /**
+     * 检查当前字段值是否超出分词时间或词数预算，超出时记录一次降级
+     *
+     * @return 是否超出预算
+     */
+    private boolean exceedsBudget() {
+        boolean time = profile.getMaxSegmentMillis() > 0 && segmentNanos > profile.getMaxSegmentMillis() * 1_000_000L;
+        boolean count = profile.getMaxTokensPerDocument() > 0 && tokens >= profile.getMaxTokensPerDocument();
+        if (!time && !count) {
+            return false;
+        }
+        SegmentBudget.exceeded(time, profile.isDropOnBudgetExceeded());
+        return true;
+    }
+
+    /**
+     * @return 当前词
+     */
+    public String word() {
+        return words[index - 1];
+    }
+
+    /**
+     * @return 当前词的词性
+     */
+    public Nature nature() {
+        return natures[index - 1];
+    }
+
+    /**
+     * @return 当前词在整个输入中的偏移量
+     */
+    public int offset() {
+        return textOffset + offsets[index - 1];
+    }
+
+    /**
+     * @return 当前词的长度
+     */
+    public int length() {
+        return words[index - 1].length();
+    }
+
+    /**
+     * 将当前词拷贝到termAtt中，不产生新对象
+     * 繁体模式下分词结果的偏移量是相对于内部切分出的子句的，此时只能从词本身拷贝
+     *
+     * @param termAtt 词属性
+     */
+    public void copyTo(CharTermAttribute termAtt) {
+        int i = index - 1;
+        String word = words[i];
+        int length = word.length();
+        int start = offsets[i];
+        if (profile.isOffset() && !profile.isTraditionalChineseMode() && start + length <= text.length) {
+            termAtt.copyBuffer(text, start, length);
+        } else {
+            termAtt.setEmpty().append(word);
+        }
+    }
+
+    /**
+     * 强制截断的片段末尾的词可能被截断点切开，丢弃结束于片段末尾的词以及跨越它们起点的词，
+     * 把它们所在的字符退回窗口，与下一个片段一起重新切分
+     *
+     * @param length 片段长度
+     * @return 实际消费的字符数，整个片段只有一个词、找不到可以退回的位置时返回0
+     */
+    private int trimTail(int length) {
+        int tail = length;
+        for (int i = 0; i < size; i++) {
+            int start = offsets[i];
+            if (start > 0 && start < tail && start + words[i].length() == length) {
+                tail = start;
+            }
+        }
+        if (tail == length) {
+            for (int i = 0; i < size; i++) {
+                if (offsets[i] == 0 && words[i].length() == length) {
+                    return 0;
+                }
+            }
+            return length;
+        }
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (offsets[i] + words[i].length() <= tail) {
+                words[kept] = words[i];
+                offsets[kept] = offsets[i];
+                natures[kept] = natures[i];
+                kept++;
+            }
+        }
+        Arrays.fill(words, kept, size, null);
+        size = kept;
+        window.pushBack(length - tail);
+        return tail;
+    }
+
+    private Void segText() {
+        if (profile.isNormalization()) {
+            CharTable.normalization(text);
+        }
+        int previous = size;
+        size = 0;
+        if (lines > 1 && profile.isCoalesceSingleCall() && !degraded && !throttled && segSeparated()) {
+            clearTail(Math.max(previous, pruneSubWords()));
             return null;
         }
-        termArray = termList.toArray(new Term[0]);
+        for (int i = 0; i < lines; i++) {
+            int start = lineStarts[i];
+            segLine(lines == 1 ? text : Arrays.copyOfRange(text, start, lineStarts[i + 1]), start);
+        }
+        clearTail(Math.max(previous, pruneSubWords()));
+        return null;
+    }
+
+    /**
+     * 按配置裁剪索引模式的子词，缓存的是裁剪前的结果
+     *
+     * @return 裁剪前的词数
+     */
+    private int pruneSubWords() {
+        int filled = size;
+        if (profile.isSubWordPruning()) {
+            size = SubWordPruning.prune(words, offsets, natures, size, profile.getIndexModeMaxSubWords(),
+                profile.getIndexModeMaxFrequency());
+        }
+        return filled;
+    }
 
-        for (Term term: termArray) {
-            term.offset = term.offset + offset;
-            if(logger.isDebugEnabled()) {
-                logger.debug("base offset: {}, word: {}, length: {}, offset: {}, nature: {}", offset, term.word, term.length(), term.offset, term.nature);
+    /**
+     * 对一行分词并追加到缓冲区
+     *
+     * @param line 行文本
+     * @param base 行在text中的起始位置
+     */
+    private void segLine(char[] line, int base) {
+        if (profile.isSegmentCache() && !degraded && !throttled && SegmentationCache.accept(line)) {
+            // 先读取版本再分词，分词期间词典发生变化时结果按旧版本缓存，不会再被命中
+            long version = DictionaryVersion.current();
+            SegmentationCache.Entry entry = SegmentationCache.get(profile, version, line);
+            if (entry == null) {
+                entry = SegmentationCache.put(profile, version, line, seg(line));
             }
+            append(entry, base);
+        } else {
+            append(seg(line), base);
         }
-        offset += line.length();
-        index = 0;
-        return termArray[index++];
     }
 
     /**
-     * 判断字符串是否为空（null和空格）
+     * 合并的各行用换行符隔开后一次分词，再把词的偏移量换算回text。
+     * 只用于极速词典分词，词典中没有包含换行符的词，最长匹配不会越过换行符，结果与逐行分词一致
      *
-     * @param cs
-     * @return
+     * @return 有词跨越换行符时返回false，由调用方逐行重新分词
      */
-    private static boolean isBlank(CharSequence cs) {
-        int strLen;
-        if (cs == null || (strLen = cs.length()) == 0) {
-            return true;
+    private boolean segSeparated() {
+        char[] separated = new char[text.length + lines - 1];
+        for (int i = 0; i < lines; i++) {
+            int start = lineStarts[i];
+            int end = lineStarts[i + 1];
+            System.arraycopy(text, start, separated, start + i, end - start);
+            if (i + 1 < lines) {
+                separated[end + i] = LINE_SEPARATOR;
+            }
         }
-        for (int i = 0; i < strLen; i++) {
-            if (!Character.isWhitespace(cs.charAt(i))) {
+        List<Term> termList = seg(separated);
+        ensureCapacity(termList.size());
+        int line = 0;
+        for (Term term : termList) {
+            int start = term.offset;
+            int end = start + term.length();
+            while (line + 1 < lines && start >= lineStarts[line + 1] + line) {
+                line++;
+            }
+            if (start == lineStarts[line + 1] + line && term.length() == 1 && term.word.charAt(0) == LINE_SEPARATOR) {
+                continue;
+            }
+            if (start < lineStarts[line] + line || end > lineStarts[line + 1] + line) {
+                size = 0;
                 return false;
             }
+            words[size] = term.word;
+            offsets[size] = start - line;
+            natures[size] = term.nature;
+            size++;
         }
         return true;
     }
 
-    private static Scanner createScanner(Reader reader) {
-        return new Scanner(reader).useDelimiter("\n");
+    private List<Term> seg(char[] text) {
+        if (profile.isAsciiFastPath() && !degraded && !throttled && tier != AdaptiveTier.SPEED) {
+            return AsciiFastPath.seg(spanSegmenter, text, profile.getSpec().isCustomDictionary());
+        }
+        return segSpan(text);
+    }
+
+    private List<Term> segSpan(char[] text) {
+        if (profile.isParallelSegmentation()) {
+            return ParallelSegmentation.seg(segment, workerSegments, text, profile.getParallelSegmentationThreshold());
+        }
+        return segment.seg(text);
+    }
+
+    /**
+     * 与当前的segment按相同的规则选择，只是从调用线程的Segment池中获取
+     *
+     * @return 分词器
+     */
+    private Segment workerSegment() {
+        if (throttled) {
+            return profile.throttledSegment();
+        }
+        if (degraded) {
+            return profile.fallbackSegment();
+        }
+        return tier != null ? profile.segment(tier) : profile.segment();
+    }
+
+    /**
+     * 将分词结果追加到缓冲区中
+     *
+     * @param termList 分词结果
+     * @param base     偏移量的基准
+     */
+    private void append(List<Term> termList, int base) {
+        ensureCapacity(size + termList.size());
+        for (Term term : termList) {
+            words[size] = term.word;
+            offsets[size] = base + term.offset;
+            natures[size] = term.nature;
+            size++;
+            if (logger.isDebugEnabled()) {
+                logger.debug("base offset: {}, word: {}, length: {}, offset: {}, nature: {}", textOffset, term.word, term.length(), base + term.offset + textOffset, term.nature);
+            }
+        }
+    }
+
+    /**
+     * 将缓存的分词结果追加到缓冲区中
+     *
+     * @param entry 缓存项
+     * @param base  偏移量的基准
+     */
+    private void append(SegmentationCache.Entry entry, int base) {
+        int count = entry.size();
+        ensureCapacity(size + count);
+        System.arraycopy(entry.words, 0, words, size, count);
+        System.arraycopy(entry.offsets, 0, offsets, size, count);
+        System.arraycopy(entry.natures, 0, natures, size, count);
+        if (base != 0) {
+            for (int i = size; i < size + count; i++) {
+                offsets[i] += base;
+            }
+        }
+        size += count;
+    }
+
+    /**
+     * 确保缓冲区能容纳capacity个词，扩容时保留已有的词
+     *
+     * @param capacity 词数
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > words.length) {
+            int length = ArrayUtil.oversize(capacity, 4);
+            words = Arrays.copyOf(words, length);
+            offsets = Arrays.copyOf(offsets, length);
+            natures = Arrays.copyOf(natures, length);
+        }
+    }
+
+    /**
+     * 释放上一批结果中多出来的词
+     *
+     * @param previous 上一批结果的词数
+     */
+    private void clearTail(int previous) {
+        if (previous > size && previous <= words.length) {
+            Arrays.fill(words, size, previous, null);
+        }
     }
 }
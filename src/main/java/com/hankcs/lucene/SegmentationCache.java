@@ -0,0 +1,293 @@
+package com.hankcs.lucene;
+
+import com.hankcs.dic.DictionaryVersion;
+import com.hankcs.hanlp.corpus.tag.Nature;
+import com.hankcs.hanlp.seg.common.Term;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 节点级分词结果缓存，按(分词配置, 词典版本, 文本)缓存短文本的分词结果，
+ * 用于类目名、商品标题等大量重复出现的字段值。缓存按字节数限制大小，分段加锁，每段内按LRU淘汰，
+ * 词典版本变化后整体失效
+ * @author: Kenn
+ * @create: 2019-05-28 10:20
+ */
+public class SegmentationCache {
+    /**
+     * 分段数，降低锁竞争
+     */
+    private static final int STRIPES = 16;
+    /**
+     * 缓存总字节数上限，为0时不缓存
+     */
+    private static volatile long maxBytes = 32 * 1024 * 1024;
+    /**
+     * 可缓存文本的最大长度
+     */
+    private static volatile int maxTextLength = 64;
+    /**
+     * 缓存内容对应的词典版本
+     */
+    private static volatile long version = DictionaryVersion.current();
+
+    private static final Stripe[] SEGMENTS = new Stripe[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            SEGMENTS[i] = new Stripe();
+        }
+    }
+
+    private static final LongAdder HITS = new LongAdder();
+
+    private static final LongAdder MISSES = new LongAdder();
+
+    private static final LongAdder EVICTIONS = new LongAdder();
+
+    private static final LongAdder INVALIDATIONS = new LongAdder();
+
+    private SegmentationCache() {
+    }
+
+    /**
+     * 配置缓存大小
+     *
+     * @param maxBytes      缓存总字节数上限，为0时不缓存
+     * @param maxTextLength 可缓存文本的最大长度
+     */
+    public static void configure(long maxBytes, int maxTextLength) {
+        SegmentationCache.maxBytes = maxBytes;
+        SegmentationCache.maxTextLength = maxTextLength;
+        clear();
+    }
+
+    /**
+     * 文本是否可以缓存
+     *
+     * @param text 文本
+     * @return 是否可以缓存
+     */
+    public static boolean accept(char[] text) {
+        return maxBytes > 0 && text.length <= maxTextLength;
+    }
+
+    /**
+     * 查找缓存的分词结果
+     *
+     * @param profile 分词配置
+     * @param version 分词前读取的词典版本
+     * @param text    文本，调用方之后不得修改
+     * @return 未命中时返回null
+     */
+    public static Entry get(SegmentationProfile profile, long version, char[] text) {
+        checkVersion(version);
+        Key key = new Key(profile, version, text);
+        Entry entry = stripe(key).get(key);
+        if (entry == null) {
+            MISSES.increment();
+        } else {
+            HITS.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * 缓存分词结果
+     *
+     * @param profile  分词配置
+     * @param version  分词前读取的词典版本，分词期间词典发生变化时该结果不会再被命中
+     * @param text     文本，调用方之后不得修改
+     * @param termList 分词结果
+     * @return 缓存项
+     */
+    public static Entry put(SegmentationProfile profile, long version, char[] text, List<Term> termList) {
+        Key key = new Key(profile, version, text);
+        Entry entry = new Entry(termList, text.length);
+        stripe(key).put(key, entry, maxBytes / STRIPES);
+        return entry;
+    }
+
+    /**
+     * 清空缓存
+     */
+    public static void invalidate() {
+        INVALIDATIONS.increment();
+        clear();
+    }
+
+    private static void clear() {
+        for (Stripe stripe : SEGMENTS) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * @return 缓存统计
+     */
+    public static Map<String, Object> stats() {
+        long entries = 0;
+        long bytes = 0;
+        for (Stripe stripe : SEGMENTS) {
+            entries += stripe.size();
+            bytes += stripe.bytes();
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", HITS.sum());
+        stats.put("misses", MISSES.sum());
+        stats.put("evictions", EVICTIONS.sum());
+        stats.put("invalidations", INVALIDATIONS.sum());
+        stats.put("entries", entries);
+        stats.put("size_in_bytes", bytes);
+        stats.put("max_size_in_bytes", maxBytes);
+        stats.put("max_text_length", maxTextLength);
+        stats.put("dictionary_version", version);
+        return stats;
+    }
+
+    /**
+     * 词典版本变化后旧版本的缓存项不会再被命中，直接清空以释放内存
+     *
+     * @param current 当前词典版本
+     */
+    private static void checkVersion(long current) {
+        if (current > version) {
+            synchronized (SegmentationCache.class) {
+                if (current > version) {
+                    version = current;
+                    invalidate();
+                }
+            }
+        }
+    }
+
+    private static Stripe stripe(Key key) {
+        int hash = key.hashCode;
+        return SEGMENTS[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * 缓存的分词结果，只读
+     */
+    public static final class Entry {
+
+        final String[] words;
+
+        final int[] offsets;
+
+        final Nature[] natures;
+
+        final long bytes;
+
+        Entry(List<Term> termList, int textLength) {
+            int size = termList.size();
+            this.words = new String[size];
+            this.offsets = new int[size];
+            this.natures = new Nature[size];
+            // 键：文本数组、键对象、链表节点；值：三个数组及词的字符串
+            long bytes = 16 + 2L * textLength + 40 + 56 + 3 * 16 + 12L * size;
+            int i = 0;
+            for (Term term : termList) {
+                words[i] = term.word;
+                offsets[i] = term.offset;
+                natures[i] = term.nature;
+                bytes += 40 + 2L * term.word.length();
+                i++;
+            }
+            this.bytes = bytes;
+        }
+
+        public int size() {
+            return words.length;
+        }
+    }
+
+    private static final class Key {
+
+        private final SegmentationProfile profile;
+
+        private final long version;
+
+        private final char[] text;
+
+        private final int hashCode;
+
+        Key(SegmentationProfile profile, long version, char[] text) {
+            this.profile = profile;
+            this.version = version;
+            this.text = text;
+            this.hashCode = 31 * (31 * profile.hashCode() + Long.hashCode(version)) + Arrays.hashCode(text);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key)o;
+            return hashCode == that.hashCode &&
+                version == that.version &&
+                Arrays.equals(text, that.text) &&
+                profile.equals(that.profile);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * 缓存的一段，所有操作在本段的锁内进行
+     */
+    private static final class Stripe {
+
+        private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        private long bytes;
+
+        synchronized Entry get(Key key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(Key key, Entry entry, long maxBytes) {
+            if (entry.bytes > maxBytes) {
+                return;
+            }
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                bytes -= previous.bytes;
+            }
+            bytes += entry.bytes;
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (bytes > maxBytes && iterator.hasNext()) {
+                bytes -= iterator.next().bytes;
+                iterator.remove();
+                EVICTIONS.increment();
+            }
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+}
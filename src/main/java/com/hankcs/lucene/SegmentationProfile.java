@@ -0,0 +1,367 @@
+package com.hankcs.lucene;
+
+import com.hankcs.cfg.Configuration;
+import com.hankcs.hanlp.seg.Segment;
+
+import java.util.Objects;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 编译后的不可变分词配置，在tokenizer factory或analyzer构造时生成一次，
+ * 之后每个tokenizer直接使用，不再读取或修改Configuration
+ * @author: Kenn
+ * @create: 2019-05-27 09:30
+ */
+public final class SegmentationProfile {
+    /**
+     * 分词器配置
+     */
+    private final SegmentSpec spec;
+
+    private final boolean traditionalChineseMode;
+
+    private final boolean stopDictionary;
+
+    private final boolean normalization;
+
+    private final boolean porterStemming;
+
+    private final boolean offset;
+
+    private final int maxChunkLength;
+
+    private final boolean parallelSegmentation;
+
+    private final int parallelSegmentationThreshold;
+
+    private final boolean segmentCache;
+
+    private final boolean queryMemo;
+
+    private final boolean asciiFastPath;
+
+    private final long maxSegmentMillis;
+
+    private final int maxTokensPerDocument;
+
+    private final boolean dropOnBudgetExceeded;
+    /**
+     * 是否按文本长度自适应选择分词器，此时spec为标准分词档位的配置
+     */
+    private final boolean adaptive;
+
+    private final int adaptiveNlpMaxLength;
+
+    private final int adaptiveStandardMaxLength;
+
+    private final SegmentSpec nlpSpec;
+
+    private final SegmentSpec speedSpec;
+    /**
+     * 是否先关闭命名实体识别分词，只对可疑片段做识别
+     */
+    private final boolean hybridRecognition;
+    /**
+     * 不超过该长度的连续短行合并为一批分词，为0时不合并
+     */
+    private final int coalesceLineLength;
+    /**
+     * 索引模式下每个词最多保留的子词数，为0时不限制
+     */
+    private final int indexModeMaxSubWords;
+    /**
+     * 索引模式下子词在核心词典中的最大词频，超过的子词被丢弃，为0时不过滤
+     */
+    private final int indexModeMaxFrequency;
+    /**
+     * 节点级并发限制的类别，由spec决定，不需要限制时为null
+     */
+    private final ConcurrencyLimiter.Group concurrencyGroup;
+
+    private final int hashCode;
+
+    /**
+     * @param engine        分词引擎，为null时表示由调用方提供Segment
+     * @param configuration 配置信息，只在构造时读取
+     */
+    public SegmentationProfile(SegmentEngine engine, Configuration configuration) {
+        this(engine, configuration, false);
+    }
+
+    /**
+     * @param engine        分词引擎，为null时表示由调用方提供Segment
+     * @param configuration 配置信息，只在构造时读取
+     * @param adaptive      是否按文本长度自适应选择分词器，engine为标准分词档位使用的引擎
+     */
+    public SegmentationProfile(SegmentEngine engine, Configuration configuration, boolean adaptive) {
+        this.spec = new SegmentSpec(engine, configuration);
+        this.traditionalChineseMode = configuration.isEnableTraditionalChineseMode();
+        this.stopDictionary = configuration.isEnableStopDictionary();
+        this.normalization = configuration.isEnableNormalization();
+        this.porterStemming = configuration.isEnablePorterStemming();
+        this.offset = configuration.isEnableOffset();
+        this.maxChunkLength = configuration.getMaxChunkLength();
+        // 并行分词时每个工作线程从池中取自己的分词器，调用方提供的分词器只有一个实例，不能并行
+        this.parallelSegmentation = configuration.isEnableParallelSegmentation() && engine != null;
+        this.parallelSegmentationThreshold = configuration.getParallelSegmentationThreshold();
+        this.segmentCache = configuration.isEnableSegmentCache();
+        this.queryMemo = configuration.isEnableQueryMemo();
+        // 只有按原子切分西文的分词器才能走快速通道，繁体模式和关闭offset时分词器的输出不能与快速通道的结果拼接
+        this.asciiFastPath = configuration.isEnableAsciiFastPath() && engine != null && engine.isAtomic() &&
+            !traditionalChineseMode && offset;
+        this.maxSegmentMillis = configuration.getMaxSegmentMillis();
+        this.maxTokensPerDocument = configuration.getMaxTokensPerDocument();
+        this.dropOnBudgetExceeded = configuration.isDropOnBudgetExceeded();
+        this.adaptive = adaptive && engine != null;
+        this.adaptiveNlpMaxLength = configuration.getAdaptiveNlpMaxLength();
+        this.adaptiveStandardMaxLength = configuration.getAdaptiveStandardMaxLength();
+        this.nlpSpec = this.adaptive ? spec.withRecognition() : null;
+        this.speedSpec = this.adaptive ? spec.withEngine(SegmentEngine.SPEED) : null;
+        // 两级分词按offset拼接结果，繁体模式的包装不能嵌套
+        this.hybridRecognition = configuration.isEnableHybridRecognition() && !traditionalChineseMode && offset;
+        // 合并后按offset把词分回各行，繁体模式和关闭offset时分词结果的偏移量不可用
+        this.coalesceLineLength = traditionalChineseMode || !offset ? 0 : configuration.getCoalesceLineLength();
+        // 子词按offset归属到所在的词，关闭offset时无法区分子词
+        boolean pruning = spec.isIndexMode() && offset;
+        this.indexModeMaxSubWords = pruning ? Math.max(0, configuration.getIndexModeMaxSubWords()) : 0;
+        this.indexModeMaxFrequency = pruning ? Math.max(0, configuration.getIndexModeMaxFrequency()) : 0;
+        // 调用方提供的分词器无法判断开销，不做限制
+        this.concurrencyGroup = engine == null ? null : ConcurrencyLimiter.Group.of(spec);
+        // 极速词典分词、自适应分词的极速档位和降级、限流后的分词器都可能用到合并词典，提前在后台合并
+        if (engine != null && spec.isCustomDictionary() && (engine == SegmentEngine.SPEED || this.adaptive ||
+            maxSegmentMillis > 0 || maxTokensPerDocument > 0 || concurrencyGroup != null)) {
+            MergedDictionary.warmUp();
+        }
+        this.hashCode = Objects.hash(spec, traditionalChineseMode, stopDictionary, normalization, porterStemming, offset,
+            maxChunkLength, parallelSegmentation, parallelSegmentationThreshold, segmentCache, queryMemo, asciiFastPath,
+            maxSegmentMillis, maxTokensPerDocument, dropOnBudgetExceeded, this.adaptive, adaptiveNlpMaxLength,
+            adaptiveStandardMaxLength, hybridRecognition, coalesceLineLength, indexModeMaxSubWords, indexModeMaxFrequency);
+    }
+
+    /**
+     * 从Segment池中获取本配置对应的分词器
+     *
+     * @return 分词器
+     */
+    public Segment segment() {
+        return wrap(acquire(spec));
+    }
+
+    /**
+     * 按本配置设置调用方提供的segment
+     *
+     * @param segment 原始segment
+     * @return 分词器
+     */
+    public Segment segment(Segment segment) {
+        return wrap(spec.configure(segment));
+    }
+
+    /**
+     * 自适应分词时按文本长度选择档位
+     *
+     * @param length 交给分词器的文本长度
+     * @return 档位
+     */
+    public AdaptiveTier tier(int length) {
+        if (length <= adaptiveNlpMaxLength) {
+            return AdaptiveTier.NLP;
+        }
+        return length <= adaptiveStandardMaxLength ? AdaptiveTier.STANDARD : AdaptiveTier.SPEED;
+    }
+
+    /**
+     * 从Segment池中获取档位对应的分词器
+     *
+     * @param tier 档位
+     * @return 分词器
+     */
+    public Segment segment(AdaptiveTier tier) {
+        switch (tier) {
+            case NLP:
+                return wrap(acquire(nlpSpec));
+            case SPEED:
+                return wrap(acquire(speedSpec));
+            case STANDARD:
+            default:
+                return wrap(acquire(spec));
+        }
+    }
+
+    /**
+     * 超出分词预算后使用的降级分词器，即其余配置相同的极速词典分词。
+     * 降级分词器不做繁体模式的包装，直接切分原文
+     *
+     * @return 分词器
+     */
+    public Segment fallbackSegment() {
+        return SegmentPool.acquire(spec.withEngine(SegmentEngine.SPEED));
+    }
+
+    /**
+     * 并发数超出节点限制且等待超时后使用的分词器，即其余配置相同的轻量分词引擎，
+     * 标准分词时同时关闭命名实体识别。与降级分词器一样不做繁体模式的包装
+     *
+     * @return 分词器
+     */
+    public Segment throttledSegment() {
+        SegmentEngine engine = ConcurrencyLimiter.fallback();
+        SegmentSpec throttled = spec.withEngine(engine);
+        return SegmentPool.acquire(engine == SegmentEngine.VITERBI ? throttled.withoutRecognition() : throttled);
+    }
+
+    /**
+     * 从Segment池中获取分词器，开启两级分词且该配置为带命名实体识别的维特比分词时包装为{@link HybridSegment}
+     */
+    private Segment acquire(SegmentSpec spec) {
+        if (hybridRecognition && spec.getEngine() == SegmentEngine.VITERBI && spec.isRecognition()) {
+            return new HybridSegment(SegmentPool.acquire(spec.withoutRecognition()), SegmentPool.acquire(spec));
+        }
+        return SegmentPool.acquire(spec);
+    }
+
+    private Segment wrap(Segment segment) {
+        if (traditionalChineseMode) {
+            return new TraditionalChineseSegment(segment);
+        }
+        return segment;
+    }
+
+    public SegmentSpec getSpec() {
+        return spec;
+    }
+
+    public boolean isTraditionalChineseMode() {
+        return traditionalChineseMode;
+    }
+
+    public boolean isStopDictionary() {
+        return stopDictionary;
+    }
+
+    public boolean isNormalization() {
+        return normalization;
+    }
+
+    public boolean isPorterStemming() {
+        return porterStemming;
+    }
+
+    public boolean isOffset() {
+        return offset;
+    }
+
+    public int getMaxChunkLength() {
+        return maxChunkLength;
+    }
+
+    public boolean isParallelSegmentation() {
+        return parallelSegmentation;
+    }
+
+    public int getParallelSegmentationThreshold() {
+        return parallelSegmentationThreshold;
+    }
+
+    public boolean isSegmentCache() {
+        return segmentCache;
+    }
+
+    public boolean isQueryMemo() {
+        return queryMemo;
+    }
+
+    public boolean isAsciiFastPath() {
+        return asciiFastPath;
+    }
+
+    public long getMaxSegmentMillis() {
+        return maxSegmentMillis;
+    }
+
+    public int getMaxTokensPerDocument() {
+        return maxTokensPerDocument;
+    }
+
+    public boolean isDropOnBudgetExceeded() {
+        return dropOnBudgetExceeded;
+    }
+
+    public int getCoalesceLineLength() {
+        return coalesceLineLength;
+    }
+
+    public int getIndexModeMaxSubWords() {
+        return indexModeMaxSubWords;
+    }
+
+    public int getIndexModeMaxFrequency() {
+        return indexModeMaxFrequency;
+    }
+
+    /**
+     * @return 是否需要裁剪索引模式的子词
+     */
+    public boolean isSubWordPruning() {
+        return indexModeMaxSubWords > 0 || indexModeMaxFrequency > 0;
+    }
+
+    /**
+     * 合并的短行是否用换行符隔开后一次分词。只有极速词典分词的结果与逐行分词一致，
+     * 其他分词器的词图和命名实体识别会受到相邻行的影响，仍逐行分词，只合并读取、特权调用和缓冲区填充
+     *
+     * @return 是否一次分词
+     */
+    public boolean isCoalesceSingleCall() {
+        return spec.getEngine() == SegmentEngine.SPEED && !segmentCache;
+    }
+
+    /**
+     * @return 本配置所属分词类别当前的并发限制，未限制时返回null
+     */
+    public ConcurrencyLimiter concurrencyLimiter() {
+        return ConcurrencyLimiter.get(concurrencyGroup);
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SegmentationProfile that = (SegmentationProfile)o;
+        return traditionalChineseMode == that.traditionalChineseMode &&
+            stopDictionary == that.stopDictionary &&
+            normalization == that.normalization &&
+            porterStemming == that.porterStemming &&
+            offset == that.offset &&
+            maxChunkLength == that.maxChunkLength &&
+            parallelSegmentation == that.parallelSegmentation &&
+            parallelSegmentationThreshold == that.parallelSegmentationThreshold &&
+            segmentCache == that.segmentCache &&
+            queryMemo == that.queryMemo &&
+            asciiFastPath == that.asciiFastPath &&
+            maxSegmentMillis == that.maxSegmentMillis &&
+            maxTokensPerDocument == that.maxTokensPerDocument &&
+            dropOnBudgetExceeded == that.dropOnBudgetExceeded &&
+            adaptive == that.adaptive &&
+            adaptiveNlpMaxLength == that.adaptiveNlpMaxLength &&
+            adaptiveStandardMaxLength == that.adaptiveStandardMaxLength &&
+            hybridRecognition == that.hybridRecognition &&
+            coalesceLineLength == that.coalesceLineLength &&
+            indexModeMaxSubWords == that.indexModeMaxSubWords &&
+            indexModeMaxFrequency == that.indexModeMaxFrequency &&
+            spec.equals(that.spec);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
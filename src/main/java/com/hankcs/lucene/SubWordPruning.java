@@ -0,0 +1,126 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.corpus.tag.Nature;
+import com.hankcs.hanlp.dictionary.CoreDictionary;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 索引模式子词裁剪。索引模式的子词紧跟在所属的词之后且不超出该词，
+ * 先丢弃核心词典词频超过index_mode_max_frequency的子词，再按长度优先、同长度按出现顺序
+ * 每个词最多保留index_mode_max_sub_words个子词。所属的词总是保留，输出顺序不变
+ * @author: Kenn
+ * @create: 2019-06-16 09:30
+ */
+public class SubWordPruning {
+
+    private static final LongAdder SUB_WORDS = new LongAdder();
+
+    private static final LongAdder FREQUENCY_PRUNED = new LongAdder();
+
+    private static final LongAdder COUNT_PRUNED = new LongAdder();
+
+    private SubWordPruning() {
+    }
+
+    /**
+     * 原地裁剪分词结果中的子词
+     *
+     * @param words        词
+     * @param offsets      词的偏移量
+     * @param natures      词性
+     * @param size         词数
+     * @param maxSubWords  每个词最多保留的子词数，为0时不限制
+     * @param maxFrequency 子词在核心词典中的最大词频，为0时不过滤
+     * @return 裁剪后的词数，多出的位置由调用方清理
+     */
+    public static int prune(String[] words, int[] offsets, Nature[] natures, int size, int maxSubWords,
+                            int maxFrequency) {
+        int kept = 0;
+        int subWords = 0;
+        int frequencyPruned = 0;
+        int countPruned = 0;
+        int i = 0;
+        while (i < size) {
+            int end = offsets[i] + words[i].length();
+            move(words, offsets, natures, i, kept++);
+            int first = kept;
+            for (i++; i < size && offsets[i] < end; i++) {
+                subWords++;
+                if (maxFrequency > 0 && CoreDictionary.getTermFrequency(words[i]) > maxFrequency) {
+                    frequencyPruned++;
+                    continue;
+                }
+                move(words, offsets, natures, i, kept++);
+            }
+            if (maxSubWords > 0 && kept - first > maxSubWords) {
+                int last = kept;
+                kept = select(words, offsets, natures, first, last, maxSubWords);
+                countPruned += last - kept;
+            }
+        }
+        if (subWords > 0) {
+            SUB_WORDS.add(subWords);
+            FREQUENCY_PRUNED.add(frequencyPruned);
+            COUNT_PRUNED.add(countPruned);
+        }
+        return kept;
+    }
+
+    /**
+     * 保留[first, last)中最长的limit个子词，同长度时保留先出现的
+     *
+     * @return 保留的子词之后的下标
+     */
+    private static int select(String[] words, int[] offsets, Nature[] natures, int first, int last, int limit) {
+        int longest = 0;
+        for (int i = first; i < last; i++) {
+            longest = Math.max(longest, words[i].length());
+        }
+        // 从长到短找到恰好凑满limit个子词的长度，比它长的全部保留，等于它的保留前quota个
+        int threshold = longest;
+        int quota = limit;
+        for (; threshold > 0; threshold--) {
+            int count = 0;
+            for (int i = first; i < last; i++) {
+                if (words[i].length() == threshold) {
+                    count++;
+                }
+            }
+            if (count >= quota) {
+                break;
+            }
+            quota -= count;
+        }
+        int kept = first;
+        for (int i = first; i < last; i++) {
+            int length = words[i].length();
+            if (length > threshold || (length == threshold && quota-- > 0)) {
+                move(words, offsets, natures, i, kept++);
+            }
+        }
+        return kept;
+    }
+
+    private static void move(String[] words, int[] offsets, Nature[] natures, int from, int to) {
+        if (from != to) {
+            words[to] = words[from];
+            offsets[to] = offsets[from];
+            natures[to] = natures[from];
+        }
+    }
+
+    /**
+     * @return 子词裁剪统计
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("sub_words", SUB_WORDS.sum());
+        stats.put("frequency_pruned", FREQUENCY_PRUNED.sum());
+        stats.put("count_pruned", COUNT_PRUNED.sum());
+        return stats;
+    }
+}
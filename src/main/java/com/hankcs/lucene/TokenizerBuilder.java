@@ -2,13 +2,10 @@ package com.hankcs.lucene;
 
 import com.hankcs.cfg.Configuration;
 import com.hankcs.hanlp.seg.Segment;
-import com.hankcs.hanlp.seg.common.Term;
-import com.hankcs.hanlp.tokenizer.TraditionalChineseTokenizer;
 import org.apache.lucene.analysis.Tokenizer;
 
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.util.List;
 
 /**
  * @project: elasticsearch-analysis-hanlp
@@ -19,45 +16,37 @@ import java.util.List;
 public class TokenizerBuilder {
 
     /**
-     * 构建Tokenizer
+     * 构建Tokenizer，分词器从Segment池中获取
      *
-     * @param segment       原始segment
-     * @param configuration 配置信息
+     * @param profile 编译后的分词配置
      * @return 返回tokenizer
      */
-    public static Tokenizer tokenizer(Segment segment, Configuration configuration) {
-        Segment seg = segment(segment, configuration);
-        return AccessController.doPrivileged((PrivilegedAction<HanLPTokenizer>)() -> new HanLPTokenizer(seg, configuration));
+    public static Tokenizer tokenizer(SegmentationProfile profile) {
+        Segment seg = profile.segment();
+        return AccessController.doPrivileged((PrivilegedAction<HanLPTokenizer>)() -> new HanLPTokenizer(seg, profile));
     }
 
     /**
-     * 根据配置信息配置segment
+     * 构建输出粗细两种粒度token图的Tokenizer，分词器从Segment池中获取
+     *
+     * @param profile 编译后的分词配置，须开启索引模式和offset
+     * @return 返回tokenizer
+     */
+    public static Tokenizer graphTokenizer(SegmentationProfile profile) {
+        Segment seg = profile.segment();
+        return AccessController.doPrivileged((PrivilegedAction<HanLPGraphTokenizer>)() -> new HanLPGraphTokenizer(seg, profile));
+    }
+
+    /**
+     * 构建Tokenizer
      *
      * @param segment       原始segment
      * @param configuration 配置信息
-     * @return 新segment
+     * @return 返回tokenizer
      */
-    private static Segment segment(Segment segment, Configuration configuration) {
-        segment.enableIndexMode(configuration.isEnableIndexMode())
-            .enableNumberQuantifierRecognize(configuration.isEnableNumberQuantifierRecognize())
-            .enableCustomDictionary(configuration.isEnableCustomDictionary())
-            .enableTranslatedNameRecognize(configuration.isEnableTranslatedNameRecognize())
-            .enableJapaneseNameRecognize(configuration.isEnableJapaneseNameRecognize())
-            .enableOrganizationRecognize(configuration.isEnableOrganizationRecognize())
-            .enablePlaceRecognize(configuration.isEnablePlaceRecognize())
-            .enableNameRecognize(configuration.isEnableNameRecognize())
-            .enablePartOfSpeechTagging(configuration.isEnablePartOfSpeechTagging())
-            .enableOffset(configuration.isEnableOffset());
-        if (configuration.isEnableTraditionalChineseMode()) {
-            segment.enableIndexMode(false);
-            TraditionalChineseTokenizer.SEGMENT = segment;
-            return new Segment() {
-                @Override
-                protected List<Term> segSentence(char[] sentence) {
-                    return TraditionalChineseTokenizer.segment(new String(sentence));
-                }
-            };
-        }
-        return segment;
+    public static Tokenizer tokenizer(Segment segment, Configuration configuration) {
+        SegmentationProfile profile = new SegmentationProfile(null, configuration);
+        Segment seg = profile.segment(segment);
+        return AccessController.doPrivileged((PrivilegedAction<HanLPTokenizer>)() -> new HanLPTokenizer(seg, profile));
     }
 }
@@ -0,0 +1,45 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.dictionary.other.CharTable;
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.seg.common.Term;
+import com.hankcs.hanlp.utility.SentencesUtil;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 繁体模式的分词器，切分方式与TraditionalChineseTokenizer.segment相同：按句切分，
+ * 逐字转为简体后分词，再把词替换回原文。TraditionalChineseTokenizer使用全局的SEGMENT，
+ * 不同索引的繁体模式会互相覆盖分词配置，这里每个tokenizer持有自己的分词器
+ * @author: Kenn
+ * @create: 2019-06-18 11:00
+ */
+public class TraditionalChineseSegment extends Segment {
+    /**
+     * 对简体文本分词的分词器
+     */
+    private final Segment segment;
+
+    public TraditionalChineseSegment(Segment segment) {
+        this.segment = segment;
+    }
+
+    @Override
+    protected List<Term> segSentence(char[] sentence) {
+        List<Term> terms = new LinkedList<>();
+        for (String text : SentencesUtil.toSentenceList(new String(sentence))) {
+            // CharTable逐字映射，简体文本与原文等长，词的位置可以直接对应回原文
+            List<Term> simplified = segment.seg(CharTable.convert(text));
+            int offset = 0;
+            for (Term term : simplified) {
+                term.offset = offset;
+                term.word = text.substring(offset, offset + term.length());
+                offset += term.length();
+            }
+            terms.addAll(simplified);
+        }
+        return terms;
+    }
+}
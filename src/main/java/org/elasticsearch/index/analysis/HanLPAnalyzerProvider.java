@@ -19,35 +19,42 @@ public class HanLPAnalyzerProvider extends AbstractIndexAnalyzerProvider<Analyze
 
     public HanLPAnalyzerProvider(IndexSettings indexSettings, Environment env, String name, Settings settings, HanLPType hanLPType) {
         super(indexSettings, name, settings);
-        Configuration configuration = new Configuration(env, settings);
+        analyzer = SharedAnalysisRegistry.analyzer(hanLPType, settings, () -> create(hanLPType, new Configuration(env, settings)));
+    }
+
+    /**
+     * 按分词类型创建analyzer
+     *
+     * @param hanLPType     分词类型
+     * @param configuration 配置信息
+     * @return analyzer
+     */
+    private static Analyzer create(HanLPType hanLPType, Configuration configuration) {
         switch (hanLPType) {
             case HANLP:
-                analyzer = new HanLPAnalyzer(configuration);
-                break;
+                return new HanLPAnalyzer(configuration);
             case STANDARD:
-                analyzer = new HanLPStandardAnalyzer(configuration);
-                break;
+                return new HanLPStandardAnalyzer(configuration);
             case INDEX:
-                analyzer = new HanLPIndexAnalyzer(configuration);
-                break;
+                return new HanLPIndexAnalyzer(configuration);
             case NLP:
-                analyzer = new HanLPNLPAnalyzer(configuration);
-                break;
+                return new HanLPNLPAnalyzer(configuration);
             case N_SHORT:
-                analyzer = new HanLPNShortAnalyzer(configuration);
-                break;
+                return new HanLPNShortAnalyzer(configuration);
             case DIJKSTRA:
-                analyzer = new HanLPDijkstraAnalyzer(configuration);
-                break;
+                return new HanLPDijkstraAnalyzer(configuration);
             case CRF:
-                analyzer = new HanLPCRFAnalyzer(configuration);
-                break;
+                return new HanLPCRFAnalyzer(configuration);
             case SPEED:
-                analyzer = new HanLPSpeedAnalyzer(configuration);
-                break;
+                return new HanLPSpeedAnalyzer(configuration);
+            case ADAPTIVE:
+                return new HanLPAdaptiveAnalyzer(configuration);
+            case PERCEPTRON:
+                return new HanLPPerceptronAnalyzer(configuration);
+            case GRAPH:
+                return new HanLPGraphAnalyzer(configuration);
             default:
-                analyzer = null;
-                break;
+                return null;
         }
     }
 
@@ -84,6 +91,18 @@ public class HanLPAnalyzerProvider extends AbstractIndexAnalyzerProvider<Analyze
         return new HanLPAnalyzerProvider(indexSettings, env, name, settings, HanLPType.SPEED);
     }
 
+    public static HanLPAnalyzerProvider getHanLPAdaptiveAnalyzerProvider(IndexSettings indexSettings, Environment env, String name, Settings settings) {
+        return new HanLPAnalyzerProvider(indexSettings, env, name, settings, HanLPType.ADAPTIVE);
+    }
+
+    public static HanLPAnalyzerProvider getHanLPPerceptronAnalyzerProvider(IndexSettings indexSettings, Environment env, String name, Settings settings) {
+        return new HanLPAnalyzerProvider(indexSettings, env, name, settings, HanLPType.PERCEPTRON);
+    }
+
+    public static HanLPAnalyzerProvider getHanLPGraphAnalyzerProvider(IndexSettings indexSettings, Environment env, String name, Settings settings) {
+        return new HanLPAnalyzerProvider(indexSettings, env, name, settings, HanLPType.GRAPH);
+    }
+
     @Override
     public Analyzer get() {
         return this.analyzer;
@@ -0,0 +1,45 @@
+package org.elasticsearch.index.analysis;
+
+import com.hankcs.lucene.ChineseConversion;
+import com.hankcs.lucene.HanLPConversionCharFilter;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+
+import java.io.Reader;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: hanlp_t2s、hanlp_s2t char filter factory，region可选hk、tw，可同时用于normalizer
+ * @author: Kenn
+ * @create: 2019-06-18 11:30
+ */
+public class HanLPConversionCharFilterFactory extends AbstractCharFilterFactory implements MultiTermAwareComponent {
+
+    private final ChineseConversion conversion;
+
+    private HanLPConversionCharFilterFactory(IndexSettings indexSettings, String name, Settings settings, boolean toTraditional) {
+        super(indexSettings, name);
+        this.conversion = ChineseConversion.of(toTraditional, settings.get("region", ""));
+        // 创建索引时就加载自动机，不把加载耗时留给第一篇文档
+        conversion.automaton();
+    }
+
+    public static HanLPConversionCharFilterFactory getT2SCharFilterFactory(IndexSettings indexSettings, Environment env, String name, Settings settings) {
+        return new HanLPConversionCharFilterFactory(indexSettings, name, settings, false);
+    }
+
+    public static HanLPConversionCharFilterFactory getS2TCharFilterFactory(IndexSettings indexSettings, Environment env, String name, Settings settings) {
+        return new HanLPConversionCharFilterFactory(indexSettings, name, settings, true);
+    }
+
+    @Override
+    public Reader create(Reader reader) {
+        return new HanLPConversionCharFilter(reader, conversion);
+    }
+
+    @Override
+    public Object getMultiTermComponent() {
+        return this;
+    }
+}
@@ -0,0 +1,34 @@
+package org.elasticsearch.index.analysis;
+
+import com.hankcs.lucene.HanLPNormalizationCharFilter;
+import com.hankcs.lucene.NormalizationTable;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+
+import java.io.Reader;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: hanlp_normalization char filter factory，可同时用于normalizer
+ * @author: Kenn
+ * @create: 2019-06-17 10:30
+ */
+public class HanLPNormalizationCharFilterFactory extends AbstractCharFilterFactory implements MultiTermAwareComponent {
+
+    public HanLPNormalizationCharFilterFactory(IndexSettings indexSettings, Environment env, String name, Settings settings) {
+        super(indexSettings, name);
+        // 创建索引时就构建映射表，不把构建耗时留给第一篇文档
+        NormalizationTable.get();
+    }
+
+    @Override
+    public Reader create(Reader reader) {
+        return new HanLPNormalizationCharFilter(reader);
+    }
+
+    @Override
+    public Object getMultiTermComponent() {
+        return this;
+    }
+}
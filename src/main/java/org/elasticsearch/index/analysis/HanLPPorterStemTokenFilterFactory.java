@@ -0,0 +1,29 @@
+package org.elasticsearch.index.analysis;
+
+import com.hankcs.lucene.CachingPorterStemmer;
+import com.hankcs.lucene.HanLPPorterStemFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: hanlp_porter_stem token filter factory
+ * @author: Kenn
+ * @create: 2019-06-19 10:30
+ */
+public class HanLPPorterStemTokenFilterFactory extends AbstractTokenFilterFactory {
+
+    private final int cacheSize;
+
+    public HanLPPorterStemTokenFilterFactory(IndexSettings indexSettings, Environment env, String name, Settings settings) {
+        super(indexSettings, name, settings);
+        this.cacheSize = settings.getAsInt("cache_size", CachingPorterStemmer.DEFAULT_CACHE_SIZE);
+    }
+
+    @Override
+    public TokenStream create(TokenStream tokenStream) {
+        return new HanLPPorterStemFilter(tokenStream, cacheSize);
+    }
+}
@@ -0,0 +1,43 @@
+package org.elasticsearch.index.analysis;
+
+import com.hankcs.lucene.HanLPPosFilter;
+import com.hankcs.lucene.NatureSet;
+import org.apache.lucene.analysis.TokenStream;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+
+import java.util.List;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: hanlp_pos_filter token filter factory，natures为词性名称或以*结尾的词性前缀，
+ * mode为drop（默认）时去掉这些词性，为keep时只保留这些词性
+ * @author: Kenn
+ * @create: 2019-06-20 11:00
+ */
+public class HanLPPosTokenFilterFactory extends AbstractTokenFilterFactory {
+
+    private final NatureSet natures;
+
+    private final boolean keep;
+
+    public HanLPPosTokenFilterFactory(IndexSettings indexSettings, Environment env, String name, Settings settings) {
+        super(indexSettings, name, settings);
+        List<String> patterns = settings.getAsList("natures");
+        if (patterns.isEmpty()) {
+            throw new IllegalArgumentException("[natures] must be set for hanlp_pos_filter [" + name + "]");
+        }
+        this.natures = NatureSet.of(patterns);
+        String mode = settings.get("mode", "drop");
+        if (!mode.equals("drop") && !mode.equals("keep")) {
+            throw new IllegalArgumentException("unknown hanlp_pos_filter mode [" + mode + "], expected drop or keep");
+        }
+        this.keep = mode.equals("keep");
+    }
+
+    @Override
+    public TokenStream create(TokenStream tokenStream) {
+        return new HanLPPosFilter(tokenStream, natures, keep);
+    }
+}
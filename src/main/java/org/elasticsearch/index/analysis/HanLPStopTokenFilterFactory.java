@@ -0,0 +1,45 @@
+package org.elasticsearch.index.analysis;
+
+import com.hankcs.dic.CoreStopWordDictionary;
+import com.hankcs.dic.StopWordSet;
+import com.hankcs.lucene.HanLPStopFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.List;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: hanlp_stop token filter factory，stopwords或stopwords_path为索引自己的停用词，
+ * use_global为true（默认）时叠加全局停用词词典
+ * @author: Kenn
+ * @create: 2019-06-21 11:30
+ */
+public class HanLPStopTokenFilterFactory extends AbstractTokenFilterFactory {
+
+    private final StopWordSet stopWords;
+
+    private final boolean useGlobal;
+
+    public HanLPStopTokenFilterFactory(IndexSettings indexSettings, Environment env, String name, Settings settings) {
+        super(indexSettings, name, settings);
+        List<String> words = Analysis.getWordList(env, settings, "stopwords");
+        this.stopWords = words == null ? StopWordSet.EMPTY : StopWordSet.of(words);
+        this.useGlobal = settings.get("use_global", "true").equals("true");
+        if (useGlobal) {
+            AccessController.doPrivileged((PrivilegedAction<Void>)() -> {
+                CoreStopWordDictionary.initial();
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public TokenStream create(TokenStream tokenStream) {
+        return new HanLPStopFilter(tokenStream, stopWords, useGlobal);
+    }
+}
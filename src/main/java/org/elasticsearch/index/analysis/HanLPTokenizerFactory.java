@@ -1,21 +1,14 @@
 package org.elasticsearch.index.analysis;
 
 import com.hankcs.cfg.Configuration;
-import com.hankcs.hanlp.HanLP;
-import com.hankcs.hanlp.seg.CRF.CRFSegment;
-import com.hankcs.hanlp.seg.Dijkstra.DijkstraSegment;
-import com.hankcs.hanlp.seg.NShort.NShortSegment;
-import com.hankcs.hanlp.seg.Other.DoubleArrayTrieSegment;
-import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.lucene.SegmentEngine;
+import com.hankcs.lucene.SegmentationProfile;
 import com.hankcs.lucene.TokenizerBuilder;
 import org.apache.lucene.analysis.Tokenizer;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.IndexSettings;
 
-import java.security.AccessController;
-import java.security.PrivilegedAction;
-
 /**
  * @project: elasticsearch-analysis-hanlp
  * @description: Hanlp tokenizer factory
@@ -26,16 +19,60 @@ public class HanLPTokenizerFactory extends AbstractTokenizerFactory {
     /**
      * 分词类型
      */
-    private HanLPType hanLPType;
+    private final HanLPType hanLPType;
     /**
-     * 分词配置
+     * 编译后的分词配置，create时不再修改配置
      */
-    private Configuration configuration;
+    private final SegmentationProfile profile;
 
     public HanLPTokenizerFactory(IndexSettings indexSettings, Environment env, String name, Settings settings, HanLPType hanLPType) {
         super(indexSettings, name, settings);
         this.hanLPType = hanLPType;
-        this.configuration = new Configuration(env, settings);
+        this.profile = SharedAnalysisRegistry.profile(hanLPType, settings, () -> compile(hanLPType, new Configuration(env, settings)));
+    }
+
+    /**
+     * 按分词类型覆盖配置，并编译为不可变的分词配置
+     *
+     * @param hanLPType     分词类型
+     * @param configuration 配置信息
+     * @return 编译后的分词配置
+     */
+    @SuppressWarnings("deprecation") // hanlp_crf已废弃，但仍需编译其配置
+    static SegmentationProfile compile(HanLPType hanLPType, Configuration configuration) {
+        switch (hanLPType) {
+            case INDEX:
+                configuration.enableIndexMode(true);
+                return new SegmentationProfile(SegmentEngine.VITERBI, configuration);
+            case NLP:
+                configuration.enableNameRecognize(true).enableTranslatedNameRecognize(true).enableJapaneseNameRecognize(true).enablePlaceRecognize(true).enableOrganizationRecognize(true).enablePartOfSpeechTagging(true);
+                return new SegmentationProfile(SegmentEngine.VITERBI, configuration);
+            case N_SHORT:
+                configuration.enableCustomDictionary(false).enablePlaceRecognize(true).enableOrganizationRecognize(true);
+                return new SegmentationProfile(SegmentEngine.N_SHORT, configuration);
+            case DIJKSTRA:
+                configuration.enableCustomDictionary(false).enablePlaceRecognize(true).enableOrganizationRecognize(true);
+                return new SegmentationProfile(SegmentEngine.DIJKSTRA, configuration);
+            case CRF:
+                configuration.enablePartOfSpeechTagging(true);
+                return new SegmentationProfile(SegmentEngine.CRF, configuration);
+            case SPEED:
+                // 极速词典分词默认不使用自定义词典，显式开启时使用合并后的trie
+                configuration.enableCustomDictionary(configuration.getSettings().get("enable_custom_dictionary", "false").equals("true"));
+                return new SegmentationProfile(SegmentEngine.SPEED, configuration);
+            case ADAPTIVE:
+                return new SegmentationProfile(SegmentEngine.VITERBI, configuration, true);
+            case PERCEPTRON:
+                return new SegmentationProfile(SegmentEngine.PERCEPTRON, configuration);
+            case GRAPH:
+                // 子词按offset归入所属的词
+                configuration.enableIndexMode(true).enableOffset(true);
+                return new SegmentationProfile(SegmentEngine.VITERBI, configuration);
+            case HANLP:
+            case STANDARD:
+            default:
+                return new SegmentationProfile(SegmentEngine.VITERBI, configuration);
+        }
     }
 
     public static HanLPTokenizerFactory getHanLPTokenizerFactory(IndexSettings indexSettings, Environment env, String name, Settings settings) {
@@ -71,33 +108,23 @@ public class HanLPTokenizerFactory extends AbstractTokenizerFactory {
         return new HanLPTokenizerFactory(indexSettings, env, name, settings, HanLPType.SPEED);
     }
 
+    public static HanLPTokenizerFactory getHanLPAdaptiveTokenizerFactory(IndexSettings indexSettings, Environment env, String name, Settings settings) {
+        return new HanLPTokenizerFactory(indexSettings, env, name, settings, HanLPType.ADAPTIVE);
+    }
+
+    public static HanLPTokenizerFactory getHanLPPerceptronTokenizerFactory(IndexSettings indexSettings, Environment env, String name, Settings settings) {
+        return new HanLPTokenizerFactory(indexSettings, env, name, settings, HanLPType.PERCEPTRON);
+    }
+
+    public static HanLPTokenizerFactory getHanLPGraphTokenizerFactory(IndexSettings indexSettings, Environment env, String name, Settings settings) {
+        return new HanLPTokenizerFactory(indexSettings, env, name, settings, HanLPType.GRAPH);
+    }
+
     @Override
     public Tokenizer create() {
-        switch (this.hanLPType) {
-            case HANLP:
-                return TokenizerBuilder.tokenizer(AccessController.doPrivileged((PrivilegedAction<Segment>)HanLP::newSegment), configuration);
-            case STANDARD:
-                return TokenizerBuilder.tokenizer(AccessController.doPrivileged((PrivilegedAction<Segment>)HanLP::newSegment), configuration);
-            case INDEX:
-                configuration.enableIndexMode(true);
-                return TokenizerBuilder.tokenizer(AccessController.doPrivileged((PrivilegedAction<Segment>)HanLP::newSegment), configuration);
-            case NLP:
-                configuration.enableNameRecognize(true).enableTranslatedNameRecognize(true).enableJapaneseNameRecognize(true).enablePlaceRecognize(true).enableOrganizationRecognize(true).enablePartOfSpeechTagging(true);
-                return TokenizerBuilder.tokenizer(AccessController.doPrivileged((PrivilegedAction<Segment>)HanLP::newSegment), configuration);
-            case N_SHORT:
-                configuration.enableCustomDictionary(false).enablePlaceRecognize(true).enableOrganizationRecognize(true);
-                return TokenizerBuilder.tokenizer(AccessController.doPrivileged((PrivilegedAction<Segment>)NShortSegment::new), configuration);
-            case DIJKSTRA:
-                configuration.enableCustomDictionary(false).enablePlaceRecognize(true).enableOrganizationRecognize(true);
-                return TokenizerBuilder.tokenizer(AccessController.doPrivileged((PrivilegedAction<Segment>)DijkstraSegment::new), configuration);
-            case CRF:
-                configuration.enablePartOfSpeechTagging(true);
-                return TokenizerBuilder.tokenizer(AccessController.doPrivileged((PrivilegedAction<Segment>)CRFSegment::new), configuration);
-            case SPEED:
-                configuration.enableCustomDictionary(false);
-                return TokenizerBuilder.tokenizer(AccessController.doPrivileged((PrivilegedAction<Segment>)DoubleArrayTrieSegment::new), configuration);
-            default:
-                return TokenizerBuilder.tokenizer(AccessController.doPrivileged((PrivilegedAction<Segment>)HanLP::newSegment), configuration);
+        if (hanLPType == HanLPType.GRAPH) {
+            return TokenizerBuilder.graphTokenizer(profile);
         }
+        return TokenizerBuilder.tokenizer(profile);
     }
 }
@@ -39,5 +39,17 @@ public enum HanLPType {
     /**
      * 极速词典分词
      */
-    SPEED
+    SPEED,
+    /**
+     * 按文本长度自适应分词
+     */
+    ADAPTIVE,
+    /**
+     * 内存映射模型的感知机分词
+     */
+    PERCEPTRON,
+    /**
+     * 粗细两种粒度的token图
+     */
+    GRAPH
 }
@@ -0,0 +1,250 @@
+package org.elasticsearch.index.analysis;
+
+import com.hankcs.lucene.SegmentationProfile;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.DelegatingAnalyzerWrapper;
+import org.elasticsearch.common.settings.Settings;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 节点级的analyzer和分词配置注册表，按天建索引时节点上会有大量配置完全相同的Hanlp analyzer，
+ * 每个都持有自己的每线程TokenStreamComponents。这里按(分词类型, 规范化后的分析配置)共享同一个实例，
+ * 各索引拿到的是只转发的包装。共享的analyzer按引用计数，最后一个使用它的索引关闭时关闭并移除；
+ * tokenizer factory没有关闭的时机，共享的分词配置用弱引用保存，不再被引用后自动移除
+ * @author: Kenn
+ * @create: 2019-06-10 15:40
+ */
+public class SharedAnalysisRegistry {
+
+    private static volatile boolean enabled = true;
+
+    private static final Map<Key, Shared> ANALYZERS = new HashMap<>();
+
+    private static final Map<Key, ProfileReference> PROFILES = new HashMap<>();
+    /**
+     * 已被回收的分词配置
+     */
+    private static final ReferenceQueue<SegmentationProfile> COLLECTED = new ReferenceQueue<>();
+
+    private static final LongAdder HITS = new LongAdder();
+
+    private static final LongAdder MISSES = new LongAdder();
+
+    private static final LongAdder RELEASES = new LongAdder();
+
+    private SharedAnalysisRegistry() {
+    }
+
+    /**
+     * 配置是否共享，须在创建索引前调用
+     *
+     * @param enabled 是否共享
+     */
+    public static synchronized void configure(boolean enabled) {
+        SharedAnalysisRegistry.enabled = enabled;
+    }
+
+    /**
+     * 获取共享的analyzer，只在创建索引时调用，直接在注册表的锁内创建
+     *
+     * @param hanLPType 分词类型
+     * @param settings  analyzer的配置
+     * @param builder   未命中时创建analyzer
+     * @return 转发到共享analyzer的包装，每个索引各自关闭
+     */
+    static Analyzer analyzer(HanLPType hanLPType, Settings settings, Supplier<Analyzer> builder) {
+        if (!enabled) {
+            return builder.get();
+        }
+        Key key = new Key(hanLPType, settings);
+        synchronized (SharedAnalysisRegistry.class) {
+            Shared shared = ANALYZERS.get(key);
+            if (shared == null) {
+                MISSES.increment();
+                shared = new Shared(builder.get());
+                ANALYZERS.put(key, shared);
+            } else {
+                HITS.increment();
+            }
+            shared.references++;
+            return new SharedAnalyzer(key, shared);
+        }
+    }
+
+    /**
+     * 释放一个索引对共享analyzer的引用，最后一个引用释放时关闭并移除
+     */
+    private static void release(Key key, Shared shared) {
+        boolean last;
+        synchronized (SharedAnalysisRegistry.class) {
+            last = --shared.references == 0;
+            if (last) {
+                ANALYZERS.remove(key, shared);
+            }
+        }
+        if (last) {
+            RELEASES.increment();
+            shared.analyzer.close();
+        }
+    }
+
+    /**
+     * 获取共享的分词配置，tokenizer本身有状态不能共享，同配置的tokenizer factory共用一个编译后的配置
+     *
+     * @param hanLPType 分词类型
+     * @param settings  tokenizer的配置
+     * @param builder   未命中时编译配置
+     * @return 分词配置
+     */
+    static SegmentationProfile profile(HanLPType hanLPType, Settings settings, Supplier<SegmentationProfile> builder) {
+        if (!enabled) {
+            return builder.get();
+        }
+        Key key = new Key(hanLPType, settings);
+        synchronized (SharedAnalysisRegistry.class) {
+            purge();
+            ProfileReference reference = PROFILES.get(key);
+            SegmentationProfile shared = reference == null ? null : reference.get();
+            if (shared == null) {
+                MISSES.increment();
+                shared = builder.get();
+                PROFILES.put(key, new ProfileReference(key, shared));
+            } else {
+                HITS.increment();
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * 移除已被回收的分词配置，须持有注册表的锁
+     */
+    private static void purge() {
+        ProfileReference reference;
+        while ((reference = (ProfileReference)COLLECTED.poll()) != null) {
+            PROFILES.remove(reference.key, reference);
+        }
+    }
+
+    /**
+     * 去掉不影响分词的配置项：type以及索引级的index.*（如index.version.created）
+     */
+    private static Settings normalize(Settings settings) {
+        return settings.filter(key -> !key.equals("type") && !key.startsWith("index."));
+    }
+
+    /**
+     * @return 共享统计
+     */
+    public static synchronized Map<String, Object> stats() {
+        purge();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("analyzers", ANALYZERS.size());
+        stats.put("profiles", PROFILES.size());
+        stats.put("hits", HITS.sum());
+        stats.put("misses", MISSES.sum());
+        stats.put("releases", RELEASES.sum());
+        return stats;
+    }
+
+    /**
+     * 共享的analyzer及使用它的索引数，引用数在注册表的锁内修改
+     */
+    private static final class Shared {
+
+        private final Analyzer analyzer;
+
+        private int references;
+
+        Shared(Analyzer analyzer) {
+            this.analyzer = analyzer;
+        }
+    }
+
+    /**
+     * 转发到共享analyzer，TokenStreamComponents保存在共享analyzer中。关闭时释放对共享analyzer的引用
+     */
+    private static final class SharedAnalyzer extends DelegatingAnalyzerWrapper {
+
+        private final Key key;
+
+        private final Shared shared;
+
+        private boolean closed;
+
+        SharedAnalyzer(Key key, Shared shared) {
+            super(GLOBAL_REUSE_STRATEGY);
+            this.key = key;
+            this.shared = shared;
+        }
+
+        @Override
+        protected Analyzer getWrappedAnalyzer(String fieldName) {
+            return shared.analyzer;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            release(key, shared);
+        }
+    }
+
+    private static final class ProfileReference extends WeakReference<SegmentationProfile> {
+
+        private final Key key;
+
+        ProfileReference(Key key, SegmentationProfile profile) {
+            super(profile, COLLECTED);
+            this.key = key;
+        }
+    }
+
+    private static final class Key {
+
+        private final HanLPType hanLPType;
+
+        private final Settings settings;
+
+        private final int hashCode;
+
+        Key(HanLPType hanLPType, Settings settings) {
+            this.hanLPType = hanLPType;
+            this.settings = normalize(settings);
+            this.hashCode = Objects.hash(hanLPType, this.settings);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key)o;
+            return hanLPType == that.hanLPType &&
+                settings.equals(that.settings);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -1,16 +1,50 @@
 package org.elasticsearch.plugin.analysis.hanlp;
 
+import com.hankcs.lucene.ConcurrencyLimiter;
+import com.hankcs.lucene.MappedPerceptronModel;
+import com.hankcs.lucene.MergedDictionary;
+import com.hankcs.lucene.ParallelSegmentation;
+import com.hankcs.lucene.QueryMemo;
+import com.hankcs.lucene.SegmentPool;
+import com.hankcs.lucene.SegmentationCache;
 import org.apache.lucene.analysis.Analyzer;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.IndexScopedSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.analysis.AnalyzerProvider;
+import org.elasticsearch.index.analysis.CharFilterFactory;
 import org.elasticsearch.index.analysis.HanLPAnalyzerProvider;
+import org.elasticsearch.index.analysis.HanLPConversionCharFilterFactory;
+import org.elasticsearch.index.analysis.HanLPNormalizationCharFilterFactory;
+import org.elasticsearch.index.analysis.HanLPPorterStemTokenFilterFactory;
+import org.elasticsearch.index.analysis.HanLPPosTokenFilterFactory;
+import org.elasticsearch.index.analysis.HanLPStopTokenFilterFactory;
 import org.elasticsearch.index.analysis.HanLPTokenizerFactory;
+import org.elasticsearch.index.analysis.SharedAnalysisRegistry;
+import org.elasticsearch.index.analysis.TokenFilterFactory;
 import org.elasticsearch.index.analysis.TokenizerFactory;
 import org.elasticsearch.indices.analysis.AnalysisModule;
+import org.elasticsearch.plugins.ActionPlugin;
 import org.elasticsearch.plugins.AnalysisPlugin;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestHandler;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * @project: elasticsearch-analysis-hanlp
@@ -18,10 +52,124 @@ import java.util.Map;
  * @author: Kenn
  * @create: 2018-12-14 15:10
  */
-public class AnalysisHanLPPlugin extends Plugin implements AnalysisPlugin {
+public class AnalysisHanLPPlugin extends Plugin implements AnalysisPlugin, ActionPlugin {
 
     public static String PLUGIN_NAME = "analysis-hanlp";
 
+    /**
+     * 文档内并行分词线程池的并行度
+     */
+    public static final Setting<Integer> PARALLEL_SEGMENTATION_POOL_SIZE = Setting.intSetting(
+        "hanlp.parallel_segmentation.pool_size", Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 1,
+        Setting.Property.NodeScope);
+
+    /**
+     * 每个线程最多缓存的已配置分词器个数
+     */
+    public static final Setting<Integer> SEGMENT_POOL_MAX_PER_THREAD = Setting.intSetting(
+        "hanlp.segment_pool.max_per_thread", 32, 1, Setting.Property.NodeScope);
+
+    /**
+     * 分词结果缓存的总大小，为0时不缓存
+     */
+    public static final Setting<ByteSizeValue> SEGMENT_CACHE_SIZE = Setting.byteSizeSetting(
+        "hanlp.segment_cache.size", new ByteSizeValue(32, ByteSizeUnit.MB), Setting.Property.NodeScope);
+
+    /**
+     * 可缓存分词结果的文本最大长度
+     */
+    public static final Setting<Integer> SEGMENT_CACHE_MAX_TEXT_LENGTH = Setting.intSetting(
+        "hanlp.segment_cache.max_text_length", 64, 1, Setting.Property.NodeScope);
+
+    /**
+     * 查询分析备忘最多保存的条目数，为0时不备忘
+     */
+    public static final Setting<Integer> QUERY_MEMO_SIZE = Setting.intSetting(
+        "hanlp.query_memo.size", 10000, 0, Setting.Property.NodeScope);
+
+    /**
+     * 查询分析备忘的存活时间
+     */
+    public static final Setting<TimeValue> QUERY_MEMO_TTL = Setting.timeSetting(
+        "hanlp.query_memo.ttl", TimeValue.timeValueSeconds(60), TimeValue.timeValueMillis(1), Setting.Property.NodeScope);
+
+    /**
+     * 各类重量级分词的节点级最大并发数，为0时不限制
+     */
+    public static final Setting<Integer> CONCURRENCY_LIMIT_NLP = concurrencyLimitSetting(ConcurrencyLimiter.Group.NLP);
+
+    public static final Setting<Integer> CONCURRENCY_LIMIT_N_SHORT = concurrencyLimitSetting(ConcurrencyLimiter.Group.N_SHORT);
+
+    public static final Setting<Integer> CONCURRENCY_LIMIT_DIJKSTRA = concurrencyLimitSetting(ConcurrencyLimiter.Group.DIJKSTRA);
+
+    public static final Setting<Integer> CONCURRENCY_LIMIT_CRF = concurrencyLimitSetting(ConcurrencyLimiter.Group.CRF);
+
+    /**
+     * 超出并发数时的最长等待时间
+     */
+    public static final Setting<TimeValue> CONCURRENCY_LIMIT_TIMEOUT = Setting.timeSetting(
+        "hanlp.concurrency_limit.timeout", TimeValue.timeValueSeconds(1), TimeValue.timeValueMillis(0), Setting.Property.NodeScope);
+
+    /**
+     * 等待超时后的处理方式：speed、standard或none
+     */
+    public static final Setting<String> CONCURRENCY_LIMIT_FALLBACK = Setting.simpleString(
+        "hanlp.concurrency_limit.fallback", "speed", Setting.Property.NodeScope);
+
+    /**
+     * 是否在索引间共享配置相同的analyzer和分词配置
+     */
+    public static final Setting<Boolean> SHARED_ANALYSIS_ENABLED = Setting.boolSetting(
+        "hanlp.shared_analysis.enabled", true, Setting.Property.NodeScope);
+
+    /**
+     * hanlp_perceptron使用的映射模型文件，为空时使用HanLP感知机分词模型路径加.mmap后缀
+     */
+    public static final Setting<String> PERCEPTRON_MODEL_PATH = Setting.simpleString(
+        "hanlp.perceptron.model_path", "", Setting.Property.NodeScope);
+
+    private static Setting<Integer> concurrencyLimitSetting(ConcurrencyLimiter.Group group) {
+        return Setting.intSetting("hanlp.concurrency_limit." + group.key(), 0, 0, Setting.Property.NodeScope);
+    }
+
+    public AnalysisHanLPPlugin(Settings settings) {
+        ParallelSegmentation.configure(PARALLEL_SEGMENTATION_POOL_SIZE.get(settings));
+        SegmentPool.configure(SEGMENT_POOL_MAX_PER_THREAD.get(settings));
+        SegmentationCache.configure(SEGMENT_CACHE_SIZE.get(settings).getBytes(), SEGMENT_CACHE_MAX_TEXT_LENGTH.get(settings));
+        QueryMemo.configure(QUERY_MEMO_SIZE.get(settings), QUERY_MEMO_TTL.get(settings).millis());
+        Map<ConcurrencyLimiter.Group, Integer> concurrencyLimits = new EnumMap<>(ConcurrencyLimiter.Group.class);
+        concurrencyLimits.put(ConcurrencyLimiter.Group.NLP, CONCURRENCY_LIMIT_NLP.get(settings));
+        concurrencyLimits.put(ConcurrencyLimiter.Group.N_SHORT, CONCURRENCY_LIMIT_N_SHORT.get(settings));
+        concurrencyLimits.put(ConcurrencyLimiter.Group.DIJKSTRA, CONCURRENCY_LIMIT_DIJKSTRA.get(settings));
+        concurrencyLimits.put(ConcurrencyLimiter.Group.CRF, CONCURRENCY_LIMIT_CRF.get(settings));
+        ConcurrencyLimiter.configure(concurrencyLimits, CONCURRENCY_LIMIT_TIMEOUT.get(settings).millis(),
+            CONCURRENCY_LIMIT_FALLBACK.get(settings));
+        SharedAnalysisRegistry.configure(SHARED_ANALYSIS_ENABLED.get(settings));
+        MappedPerceptronModel.configure(PERCEPTRON_MODEL_PATH.get(settings));
+    }
+
+    @Override
+    public void close() throws IOException {
+        ParallelSegmentation.shutdown();
+        MergedDictionary.shutdown();
+    }
+
+    @Override
+    public List<Setting<?>> getSettings() {
+        return Arrays.asList(PARALLEL_SEGMENTATION_POOL_SIZE, SEGMENT_POOL_MAX_PER_THREAD, SEGMENT_CACHE_SIZE,
+            SEGMENT_CACHE_MAX_TEXT_LENGTH, QUERY_MEMO_SIZE, QUERY_MEMO_TTL, CONCURRENCY_LIMIT_NLP, CONCURRENCY_LIMIT_N_SHORT,
+            CONCURRENCY_LIMIT_DIJKSTRA, CONCURRENCY_LIMIT_CRF, CONCURRENCY_LIMIT_TIMEOUT, CONCURRENCY_LIMIT_FALLBACK,
+            SHARED_ANALYSIS_ENABLED, PERCEPTRON_MODEL_PATH);
+    }
+
+    @Override
+    public List<RestHandler> getRestHandlers(Settings settings, RestController restController, ClusterSettings clusterSettings,
+                                             IndexScopedSettings indexScopedSettings, SettingsFilter settingsFilter,
+                                             IndexNameExpressionResolver indexNameExpressionResolver,
+                                             Supplier<DiscoveryNodes> nodesInCluster) {
+        return Collections.singletonList(new RestHanLPStatsAction(settings, restController));
+    }
+
     @Override
     public Map<String, AnalysisModule.AnalysisProvider<TokenizerFactory>> getTokenizers() {
         Map<String, AnalysisModule.AnalysisProvider<TokenizerFactory>> extra = new HashMap<>();
@@ -34,6 +182,9 @@ public class AnalysisHanLPPlugin extends Plugin implements AnalysisPlugin {
         extra.put("hanlp_dijkstra", HanLPTokenizerFactory::getHanLPDijkstraTokenizerFactory);
         extra.put("hanlp_crf", HanLPTokenizerFactory::getHanLPCRFTokenizerFactory);
         extra.put("hanlp_speed", HanLPTokenizerFactory::getHanLPSpeedTokenizerFactory);
+        extra.put("hanlp_adaptive", HanLPTokenizerFactory::getHanLPAdaptiveTokenizerFactory);
+        extra.put("hanlp_perceptron", HanLPTokenizerFactory::getHanLPPerceptronTokenizerFactory);
+        extra.put("hanlp_graph", HanLPTokenizerFactory::getHanLPGraphTokenizerFactory);
 
         return extra;
     }
@@ -50,8 +201,32 @@ public class AnalysisHanLPPlugin extends Plugin implements AnalysisPlugin {
         extra.put("hanlp_dijkstra", HanLPAnalyzerProvider::getHanLPDijkstraAnalyzerProvider);
         extra.put("hanlp_crf", HanLPAnalyzerProvider::getHanLPCRFAnalyzerProvider);
         extra.put("hanlp_speed", HanLPAnalyzerProvider::getHanLPSpeedAnalyzerProvider);
+        extra.put("hanlp_adaptive", HanLPAnalyzerProvider::getHanLPAdaptiveAnalyzerProvider);
+        extra.put("hanlp_perceptron", HanLPAnalyzerProvider::getHanLPPerceptronAnalyzerProvider);
+        extra.put("hanlp_graph", HanLPAnalyzerProvider::getHanLPGraphAnalyzerProvider);
 
         return extra;
     }
 
+    @Override
+    public Map<String, AnalysisModule.AnalysisProvider<CharFilterFactory>> getCharFilters() {
+        Map<String, AnalysisModule.AnalysisProvider<CharFilterFactory>> extra = new HashMap<>();
+
+        extra.put("hanlp_normalization", HanLPNormalizationCharFilterFactory::new);
+        extra.put("hanlp_t2s", HanLPConversionCharFilterFactory::getT2SCharFilterFactory);
+        extra.put("hanlp_s2t", HanLPConversionCharFilterFactory::getS2TCharFilterFactory);
+
+        return extra;
+    }
+
+    @Override
+    public Map<String, AnalysisModule.AnalysisProvider<TokenFilterFactory>> getTokenFilters() {
+        Map<String, AnalysisModule.AnalysisProvider<TokenFilterFactory>> extra = new HashMap<>();
+
+        extra.put("hanlp_porter_stem", HanLPPorterStemTokenFilterFactory::new);
+        extra.put("hanlp_pos_filter", HanLPPosTokenFilterFactory::new);
+        extra.put("hanlp_stop", HanLPStopTokenFilterFactory::new);
+
+        return extra;
+    }
 }
@@ -0,0 +1,72 @@
+package org.elasticsearch.plugin.analysis.hanlp;
+
+import com.hankcs.dic.CoreStopWordDictionary;
+import com.hankcs.lucene.AdaptiveTier;
+import com.hankcs.lucene.CachingPorterStemmer;
+import com.hankcs.lucene.ChineseConversion;
+import com.hankcs.lucene.ConcurrencyLimiter;
+import com.hankcs.lucene.HybridSegment;
+import com.hankcs.lucene.MappedPerceptronModel;
+import com.hankcs.lucene.MergedDictionary;
+import com.hankcs.lucene.NormalizationTable;
+import com.hankcs.lucene.QueryMemo;
+import com.hankcs.lucene.SegmentBudget;
+import com.hankcs.lucene.SegmentPool;
+import com.hankcs.lucene.SegmentationCache;
+import com.hankcs.lucene.SubWordPruning;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.analysis.SharedAnalysisRegistry;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestStatus;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 输出当前节点上Hanlp分词插件的运行统计
+ * @author: Kenn
+ * @create: 2019-05-24 11:20
+ */
+public class RestHanLPStatsAction extends BaseRestHandler {
+
+    public RestHanLPStatsAction(Settings settings, RestController controller) {
+        super(settings);
+        controller.registerHandler(RestRequest.Method.GET, "/_hanlp/stats", this);
+    }
+
+    @Override
+    public String getName() {
+        return "hanlp_stats_action";
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+        return channel -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("segment_pool", SegmentPool.stats());
+            stats.put("segment_cache", SegmentationCache.stats());
+            stats.put("query_memo", QueryMemo.stats());
+            stats.put("segment_budget", SegmentBudget.stats());
+            stats.put("adaptive", AdaptiveTier.stats());
+            stats.put("hybrid_recognition", HybridSegment.stats());
+            stats.put("concurrency_limit", ConcurrencyLimiter.stats());
+            stats.put("merged_dictionary", MergedDictionary.stats());
+            stats.put("shared_analysis", SharedAnalysisRegistry.stats());
+            stats.put("perceptron_model", MappedPerceptronModel.stats());
+            stats.put("sub_word_pruning", SubWordPruning.stats());
+            stats.put("normalization_table", NormalizationTable.stats());
+            stats.put("chinese_conversion", ChineseConversion.stats());
+            stats.put("porter_stem", CachingPorterStemmer.stats());
+            stats.put("stop_words", CoreStopWordDictionary.stats());
+            XContentBuilder builder = channel.newBuilder();
+            builder.map(stats);
+            channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
+        };
+    }
+}
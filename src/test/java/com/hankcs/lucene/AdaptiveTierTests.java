@@ -0,0 +1,45 @@
+package com.hankcs.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 按长度自适应选择分词方式
+ * @author: Kenn
+ * @create: 2019-06-24 10:04
+ */
+public class AdaptiveTierTests extends HanLPTestCase {
+
+    @Test
+    public void testAdaptiveSegmentation() throws Exception {
+        String[] settings = {"enable_custom_dictionary", "false", "adaptive_nlp_max_length", "8",
+            "adaptive_standard_max_length", "20"};
+        Analyzer adaptive = new HanLPAdaptiveAnalyzer(configuration(settings));
+        String nlp = "攻城狮逆袭单身狗";
+        String standard = "迎娶白富美，走上人生巅峰";
+        long nlpTexts = texts(AdaptiveTier.NLP);
+        long standardTexts = texts(AdaptiveTier.STANDARD);
+        long speedTexts = texts(AdaptiveTier.SPEED);
+        assertEquals(tokens(new HanLPNLPAnalyzer(configuration(settings)), nlp), tokens(adaptive, nlp));
+        assertEquals(tokens(new HanLPStandardAnalyzer(configuration(settings)), standard), tokens(adaptive, standard));
+        assertEquals(tokens(new HanLPSpeedAnalyzer(configuration(settings)), TEXT), tokens(adaptive, TEXT));
+        assertEquals(nlpTexts + 1, texts(AdaptiveTier.NLP));
+        assertEquals(standardTexts + 1, texts(AdaptiveTier.STANDARD));
+        assertEquals(speedTexts + 1, texts(AdaptiveTier.SPEED));
+        // 每行单独选择档位
+        List<String> tokens = tokens(adaptive, nlp + "\n" + TEXT);
+        assertEquals(tokens(adaptive, nlp), tokens.subList(0, tokens(adaptive, nlp).size()));
+        assertEquals(speedTexts + 2, texts(AdaptiveTier.SPEED));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long texts(AdaptiveTier tier) {
+        return (Long)((Map<String, Object>)AdaptiveTier.stats().get(tier.name().toLowerCase())).get("texts");
+    }
+}
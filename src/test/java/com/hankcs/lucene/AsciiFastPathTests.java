@@ -0,0 +1,58 @@
+package com.hankcs.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 英文和数字的快速切分
+ * @author: Kenn
+ * @create: 2019-06-24 10:19
+ */
+public class AsciiFastPathTests extends HanLPTestCase {
+
+    @Test
+    public void testAsciiFastPath() throws Exception {
+        String[] texts = {
+            "Hello World, running quickly! version 1.2.3 costs $5 (3.14%)",
+            "攻城狮逆袭单身狗 and 迎娶白富美 2019-05-30 12:30",
+            "SKU-12345_X/Y x=1;y=2  I'm don't",
+            "北京大学生 iPhone CEO\t走上人生巅峰",
+        };
+        for (String type : new String[]{"hanlp", "index", "dijkstra"}) {
+            for (String text : texts) {
+                assertEquals(type + ": " + text, tokens(analyzer(type, configuration()), text),
+                    tokens(analyzer(type, configuration("enable_ascii_fast_path", "true")), text));
+            }
+        }
+        List<String> tokens = tokens(analyzer("hanlp", configuration("enable_ascii_fast_path", "true")),
+            "mail foo.bar@example.com or see (http://example.com/a?b=1).");
+        assertTrue(tokens.toString(), tokens.contains("foo.bar@example.com/5-24/nx"));
+        assertTrue(tokens.toString(), tokens.contains("http://example.com/a?b=1/33-57/nx"));
+    }
+
+    @Ignore
+    @Test
+    public void benchmarkAsciiFastPath() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            text.append("Running the tests quickly, version ").append(i).append(".0 of SKU-").append(i * 37).append(" is ready! ");
+        }
+        for (String setting : new String[]{"false", "true"}) {
+            Analyzer analyzer = analyzer("hanlp", configuration("enable_ascii_fast_path", setting));
+            for (int round = 0; round < 8; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < 2000; i++) {
+                    tokens(analyzer, text.toString());
+                }
+                System.out.println("enable_ascii_fast_path=" + setting + ": " + (System.nanoTime() - start) / 2000 / 1000 + " us/doc");
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.hankcs.lucene;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 字符窗口读取器，按行读取的结果必须与原Scanner(reader).useDelimiter("\n")一致
+ * @author: Kenn
+ * @create: 2019-06-24 10:25
+ */
+public class CharWindowReaderTests {
+
+    @Test
+    public void testScannerParity() throws Exception {
+        List<String> texts = new ArrayList<>(Arrays.asList(
+            "",
+            "\n",
+            "\n\n",
+            "\n\n\n",
+            "单身狗",
+            "\n单身狗",
+            "\n\n单身狗",
+            "单身狗\n",
+            "单身狗\n\n",
+            "单身狗\n\n\n",
+            "攻城狮\n单身狗",
+            "攻城狮\n\n单身狗",
+            "攻城狮\n\n\n单身狗\n",
+            "攻城狮\n \n\t\n单身狗",
+            "  \n攻城狮\n  ",
+            "攻城狮\r\n单身狗\r\n",
+            "\r\n\r\n攻城狮\r\n\r\n",
+            "\r\r\n\r"
+        ));
+        // 超过初始缓冲区的行，读取时需要扩容或压缩窗口
+        String longLine = repeat("白富美", 1500);
+        texts.add(longLine);
+        texts.add(longLine + "\n" + longLine);
+        texts.add("攻城狮\n" + longLine + "\n\n" + repeat("x", 1023) + "\n" + repeat("y", 1024) + "\n" + repeat("z", 1025));
+        texts.add(repeat("短行\n", 600));
+        texts.add(repeat("\n", 1500) + "单身狗" + repeat("\n", 1500));
+
+        CharWindowReader window = new CharWindowReader();
+        for (String text : texts) {
+            List<String> expected = scan(new StringReader(text));
+            assertEquals(text, expected, lines(window, new StringReader(text)));
+            assertEquals(text, expected, lines(window, new OneCharReader(text)));
+        }
+    }
+
+    @Test
+    public void testSliceFlags() throws Exception {
+        CharWindowReader window = new CharWindowReader();
+        window.reset(new StringReader("攻城狮\n \n单身狗"));
+        window.nextLine();
+        assertEquals(true, window.isLineEnd());
+        assertEquals(true, window.isWholeLine());
+        assertEquals(false, window.isBlank());
+        window.nextLine();
+        assertEquals(true, window.isBlank());
+        window.nextLine();
+        assertEquals(false, window.isLineEnd());
+        assertEquals(true, window.isWholeLine());
+        assertEquals(false, window.isHardCut());
+        assertEquals(false, window.nextLine());
+    }
+
+    private static List<String> scan(Reader reader) {
+        List<String> lines = new ArrayList<>();
+        Scanner scanner = new Scanner(reader).useDelimiter("\n");
+        while (scanner.hasNext()) {
+            lines.add(scanner.next());
+        }
+        return lines;
+    }
+
+    private static List<String> lines(CharWindowReader window, Reader reader) throws IOException {
+        List<String> lines = new ArrayList<>();
+        window.reset(reader);
+        while (window.nextLine()) {
+            lines.add(new String(window.buffer(), window.sliceStart(), window.sliceLength()));
+        }
+        return lines;
+    }
+
+    static String repeat(String s, int count) {
+        StringBuilder builder = new StringBuilder(s.length() * count);
+        for (int i = 0; i < count; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 每次只返回一个字符的reader，覆盖窗口中只有部分行的情况
+     */
+    static class OneCharReader extends Reader {
+        private final String text;
+        private int position;
+
+        OneCharReader(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == text.length()) {
+                return -1;
+            }
+            if (length == 0) {
+                return 0;
+            }
+            buffer[offset] = text.charAt(position++);
+            return 1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
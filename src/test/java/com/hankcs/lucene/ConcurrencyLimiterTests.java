@@ -0,0 +1,58 @@
+package com.hankcs.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 昂贵分词方式的并发限制
+ * @author: Kenn
+ * @create: 2019-06-24 10:06
+ */
+public class ConcurrencyLimiterTests extends HanLPTestCase {
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        Analyzer nShort = new HanLPNShortAnalyzer(configuration());
+        List<String> full = tokens(nShort, TEXT);
+        List<String> speed = tokens(new HanLPSpeedAnalyzer(configuration()), TEXT);
+        try {
+            ConcurrencyLimiter.configure(Collections.singletonMap(ConcurrencyLimiter.Group.N_SHORT, 1), 0, "speed");
+            ConcurrencyLimiter limiter = ConcurrencyLimiter.get(ConcurrencyLimiter.Group.N_SHORT);
+            assertTrue(limiter.acquire());
+            // 唯一的许可被占用，等待超时后改用极速词典分词
+            assertEquals(speed, tokens(nShort, TEXT));
+            assertEquals(1L, concurrencyStat(ConcurrencyLimiter.Group.N_SHORT, "fallbacks"));
+            limiter.release();
+            assertEquals(full, tokens(nShort, TEXT));
+            assertEquals(2L, concurrencyStat(ConcurrencyLimiter.Group.N_SHORT, "acquisitions"));
+
+            ConcurrencyLimiter.configure(Collections.singletonMap(ConcurrencyLimiter.Group.N_SHORT, 1), 0, "none");
+            limiter = ConcurrencyLimiter.get(ConcurrencyLimiter.Group.N_SHORT);
+            assertTrue(limiter.acquire());
+            try {
+                tokens(nShort, TEXT);
+                fail();
+            } catch (IOException e) {
+                assertEquals(1L, concurrencyStat(ConcurrencyLimiter.Group.N_SHORT, "rejections"));
+            }
+            limiter.release();
+        } finally {
+            ConcurrencyLimiter.configure(Collections.emptyMap(), 1000, "speed");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long concurrencyStat(ConcurrencyLimiter.Group group, String name) {
+        return (Long)((Map<String, Object>)ConcurrencyLimiter.stats().get(group.key())).get(name);
+    }
+}
@@ -0,0 +1,114 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.HanLP;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 简繁转换字符过滤器和繁体模式
+ * @author: Kenn
+ * @create: 2019-06-24 10:15
+ */
+public class HanLPConversionCharFilterTests extends HanLPTestCase {
+
+    @Test
+    public void testConversionCharFilter() throws Exception {
+        String simplified = "他在计算机上用鼠标点击了SQL注入的链接，打印机也出了问题。以太网和互联网的区别在哪里？头发和发财";
+        String traditional = "他在電腦上用滑鼠點擊了SQL注入的連結，印表機也出了問題。乙太網路和網際網路的區別在哪裡？頭髮和發財";
+        Map<ChineseConversion, String[]> cases = new EnumMap<>(ChineseConversion.class);
+        cases.put(ChineseConversion.S2T, new String[]{simplified, HanLP.convertToTraditionalChinese(simplified)});
+        cases.put(ChineseConversion.S2HK, new String[]{simplified, HanLP.s2hk(simplified)});
+        cases.put(ChineseConversion.S2TW, new String[]{simplified, HanLP.s2tw(simplified)});
+        cases.put(ChineseConversion.T2S, new String[]{traditional, HanLP.convertToSimplifiedChinese(traditional)});
+        cases.put(ChineseConversion.HK2S, new String[]{traditional, HanLP.hk2s(traditional)});
+        cases.put(ChineseConversion.TW2S, new String[]{traditional, HanLP.tw2s(traditional)});
+        // 不同的读取粒度下与HanLP的转换接口结果相同
+        for (Map.Entry<ChineseConversion, String[]> entry : cases.entrySet()) {
+            for (int size : new int[]{1, 2, 3, 5, 8, 64}) {
+                assertEquals(entry.getKey() + " size " + size, entry.getValue()[1],
+                    convert(new HanLPConversionCharFilter(new StringReader(entry.getValue()[0]), entry.getKey()), size));
+            }
+        }
+        // 词条变长、变短时偏移量都校正到原文中的词
+        String text = "用中间件测试";
+        HanLPConversionCharFilter filter = new HanLPConversionCharFilter(new StringReader(text), ChineseConversion.S2TW);
+        String converted = convert(filter, 4);
+        assertEquals("用中介軟體測試", converted);
+        assertEquals(1, filter.correctOffset(converted.indexOf("中")));
+        assertEquals(text.indexOf("测"), filter.correctOffset(converted.indexOf("測")));
+        assertEquals(text.length(), filter.correctOffset(converted.length()));
+        text = "乙太網路很快";
+        filter = new HanLPConversionCharFilter(new StringReader(text), ChineseConversion.T2S);
+        converted = convert(filter, 3);
+        assertEquals("以太网很快", converted);
+        assertEquals(text.indexOf("很"), filter.correctOffset(converted.indexOf("很")));
+        assertEquals(text.length(), filter.correctOffset(converted.length()));
+        // 保存再读取的预编译文件与原自动机一致
+        ConversionAutomaton automaton = ChineseConversion.S2TW.automaton();
+        Path path = Files.createTempDirectory("hanlp").resolve("s2tw.automaton");
+        automaton.write(path);
+        ConversionAutomaton compiled = ConversionAutomaton.read(path);
+        assertNotNull(compiled);
+        assertEquals(automaton.size(), compiled.size());
+        assertEquals(automaton.getMaxLength(), compiled.getMaxLength());
+        char[] chars = simplified.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            int index = automaton.longest(chars, i, chars.length);
+            assertEquals(index, compiled.longest(chars, i, chars.length));
+            if (index >= 0) {
+                assertEquals(automaton.value(index), compiled.value(index));
+            }
+        }
+    }
+
+    @Test
+    public void testTraditionalChineseModeIsolation() throws Exception {
+        String text = "攻城獅逆襲單身狗，迎娶白富美，走上人生巔峰";
+        Analyzer plain = analyzer("hanlp", configuration("enable_traditional_chinese_mode", "true",
+            "enable_name_recognize", "false"));
+        Analyzer recognizer = analyzer("hanlp", configuration("enable_traditional_chinese_mode", "true"));
+        List<String> expected = tokens(plain, text);
+        assertTrue(!expected.equals(tokens(recognizer, text)));
+        // 其他索引的繁体模式在中途创建tokenizer，不再覆盖正在使用的分词器
+        List<String> actual = new ArrayList<>();
+        try (TokenStream stream = plain.tokenStream("f", text)) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offsetAtt = stream.addAttribute(OffsetAttribute.class);
+            TypeAttribute typeAtt = stream.addAttribute(TypeAttribute.class);
+            stream.reset();
+            tokens(recognizer, text);
+            while (stream.incrementToken()) {
+                actual.add(termAtt + "/" + offsetAtt.startOffset() + "-" + offsetAtt.endOffset() + "/" + typeAtt.type());
+            }
+            stream.end();
+        }
+        assertEquals(expected, actual);
+    }
+
+    private static String convert(HanLPConversionCharFilter filter, int size) throws IOException {
+        StringBuilder converted = new StringBuilder();
+        char[] buffer = new char[size];
+        for (int read; (read = filter.read(buffer, 0, size)) != -1; ) {
+            converted.append(buffer, 0, read);
+        }
+        return converted.toString();
+    }
+}
@@ -0,0 +1,68 @@
+package com.hankcs.lucene;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 输出词图的hanlp_graph分词器
+ * @author: Kenn
+ * @create: 2019-06-24 10:12
+ */
+public class HanLPGraphTokenizerTests extends HanLPTestCase {
+
+    @Test
+    public void testGraphTokenizer() throws Exception {
+        String text = "中华人民共和国成立了，北京大学生前来应聘，" + TEXT;
+        List<String> coarse = new ArrayList<>();
+        Set<String> terms = new HashSet<>();
+        try (TokenStream stream = new HanLPGraphAnalyzer(configuration()).tokenStream("f", text)) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offsetAtt = stream.addAttribute(OffsetAttribute.class);
+            PositionIncrementAttribute positionAtt = stream.addAttribute(PositionIncrementAttribute.class);
+            PositionLengthAttribute positionLengthAtt = stream.addAttribute(PositionLengthAttribute.class);
+            TypeAttribute typeAtt = stream.addAttribute(TypeAttribute.class);
+            stream.reset();
+            int position = -1;
+            int next = 0;
+            int lastStart = 0;
+            while (stream.incrementToken()) {
+                position += positionAtt.getPositionIncrement();
+                assertTrue(offsetAtt.startOffset() >= lastStart);
+                lastStart = offsetAtt.startOffset();
+                String term = termAtt + "/" + offsetAtt.startOffset() + "-" + offsetAtt.endOffset();
+                // 每个粗粒度词是其起始节点上的第一个token，子词都落在它的区间内
+                if (position == next) {
+                    coarse.add(term + "/" + typeAtt.type());
+                    next = position + positionLengthAtt.getPositionLength();
+                } else {
+                    assertTrue(term, position < next && position + positionLengthAtt.getPositionLength() <= next);
+                }
+                terms.add(term + "/" + positionLengthAtt.getPositionLength());
+            }
+            stream.end();
+        }
+        assertEquals(tokens(analyzer("hanlp", configuration()), text), coarse);
+        assertTrue(terms.toString(), terms.contains("中华人民共和国/0-7/3"));
+        assertTrue(terms.toString(), terms.contains("中华/0-2/1"));
+        assertTrue(terms.toString(), terms.contains("人民/2-4/1"));
+        assertTrue(terms.toString(), terms.contains("共和国/4-7/1"));
+        for (String token : tokens(analyzer("index", configuration()), text)) {
+            String term = token.substring(0, token.lastIndexOf('/'));
+            assertTrue(term, terms.stream().anyMatch(t -> t.startsWith(term + "/")));
+        }
+    }
+}
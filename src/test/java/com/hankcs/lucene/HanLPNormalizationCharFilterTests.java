@@ -0,0 +1,79 @@
+package com.hankcs.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: hanlp_normalization字符过滤器
+ * @author: Kenn
+ * @create: 2019-06-24 10:14
+ */
+public class HanLPNormalizationCharFilterTests extends HanLPTestCase {
+
+    @Test
+    public void testNormalizationCharFilter() throws Exception {
+        String text = "ＨａｎＬＰ　Ｅｌａｓｔｉｃ髮型ÉCOLE ｶﾞｷﾞﾊﾟﾝ ﾎﾟｹｯﾄ ﾞ";
+        String expected = "hanlp elastic发型école ガギパン ポケット \u3099";
+        // 不同的读取粒度下浊音符都能与跨缓冲区的假名合成，偏移量校正到原文
+        for (int size = 1; size <= 8; size++) {
+            HanLPNormalizationCharFilter filter = new HanLPNormalizationCharFilter(new StringReader(text));
+            StringBuilder normalized = new StringBuilder();
+            char[] buffer = new char[size];
+            for (int read; (read = filter.read(buffer, 0, size)) != -1; ) {
+                normalized.append(buffer, 0, read);
+            }
+            assertEquals("size " + size, expected, normalized.toString());
+            assertEquals(text.indexOf('ｶ'), filter.correctOffset(expected.indexOf('ガ')));
+            assertEquals(text.indexOf('ﾝ'), filter.correctOffset(expected.indexOf('ン')));
+            assertEquals(text.length(), filter.correctOffset(expected.length()));
+        }
+        Analyzer analyzer = new HanLPAnalyzer(configuration()) {
+            @Override
+            protected Reader initReader(String fieldName, Reader reader) {
+                return new HanLPNormalizationCharFilter(reader);
+            }
+        };
+        String sentence = "ＨａｎＬＰ是面向生產環境的自然語言處理工具包，ｶﾞｲﾄﾞ";
+        for (String token : tokens(analyzer, sentence)) {
+            String[] parts = token.split("/");
+            String[] span = parts[1].split("-");
+            HanLPNormalizationCharFilter filter = new HanLPNormalizationCharFilter(
+                new StringReader(sentence.substring(Integer.parseInt(span[0]), Integer.parseInt(span[1]))));
+            char[] buffer = new char[16];
+            assertEquals(token, parts[0], new String(buffer, 0, filter.read(buffer, 0, buffer.length)));
+        }
+    }
+
+    @Ignore
+    @Test
+    public void benchmarkNormalizationCharFilter() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            text.append("ＨａｎＬＰ是面向生產環境的自然語言處理工具包，").append(TEXT).append('\n');
+        }
+        Analyzer filtered = new HanLPAnalyzer(configuration()) {
+            @Override
+            protected Reader initReader(String fieldName, Reader reader) {
+                return new HanLPNormalizationCharFilter(reader);
+            }
+        };
+        Analyzer[] analyzers = {analyzer("hanlp", configuration("enable_normalization", "true")), filtered};
+        String[] names = {"enable_normalization", "hanlp_normalization"};
+        for (int round = 0; round < 8; round++) {
+            for (int a = 0; a < analyzers.length; a++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < 500; i++) {
+                    tokens(analyzers[a], text.toString());
+                }
+                System.out.println(names[a] + ": " + (System.nanoTime() - start) / 500 / 1000 + " us/doc");
+            }
+        }
+    }
+}
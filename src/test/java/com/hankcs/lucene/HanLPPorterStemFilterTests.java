@@ -0,0 +1,98 @@
+package com.hankcs.lucene;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.en.PorterStemFilter;
+import org.apache.lucene.analysis.miscellaneous.SetKeywordMarkerFilter;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: hanlp_porter_stem词元过滤器
+ * @author: Kenn
+ * @create: 2019-06-24 10:16
+ */
+public class HanLPPorterStemFilterTests extends HanLPTestCase {
+
+    @Test
+    public void testPorterStemFilter() throws Exception {
+        String text = "caresses ponies running runs ran conflated hopping happy relational generalizations " +
+            "running caresses hopeful electricity adjustable irritant ab is the elasticsearch searching";
+        for (int cacheSize : new int[]{0, 1, 4, CachingPorterStemmer.DEFAULT_CACHE_SIZE}) {
+            // 同一个filter重复处理，缓存命中后结果与Lucene的PorterStemFilter相同
+            WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+            TokenStream filter = new HanLPPorterStemFilter(tokenizer, cacheSize);
+            for (int round = 0; round < 3; round++) {
+                WhitespaceTokenizer expected = new WhitespaceTokenizer();
+                assertEquals("cache " + cacheSize, terms(new PorterStemFilter(expected), expected, text),
+                    terms(filter, tokenizer, text));
+            }
+        }
+        WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+        CharArraySet keywords = new CharArraySet(Collections.singleton("running"), false);
+        TokenStream filter = new HanLPPorterStemFilter(new SetKeywordMarkerFilter(tokenizer, keywords), 16);
+        assertEquals(Arrays.asList("running", "run", "poni"), terms(filter, tokenizer, "running runs ponies"));
+        List<String> tokens = tokens(analyzer("hanlp", configuration("enable_porter_stemming", "true")), "攻城狮逆袭 Running tests");
+        assertEquals(Arrays.asList("Run/6-9/nx", "test/14-18/nx"), tokens.subList(tokens.size() - 2, tokens.size()));
+    }
+
+    /**
+     * 对比英文词干提取的三种方式：原先按String调用PorterStemmer、Lucene的PorterStemFilter，
+     * 以及hanlp_porter_stem关闭和开启缓存。词按近似Zipf分布从词表中抽取
+     */
+    @Ignore
+    @Test
+    public void benchmarkPorterStemming() throws Exception {
+        String[] vocabulary = ("the of and to in is was for that with as on by running generalizations " +
+            "searching indexed analyzers tokenizers relational conditional hopping happiness elasticsearch " +
+            "clusters shards replicas queries documents fields mappings settings nodes requests responses " +
+            "highlighting aggregations buckets metrics pipelines ingestion processors templates aliases " +
+            "snapshots restoring monitoring alerting reindexing scrolling sorting filtering boosting scoring " +
+            "stemming normalization lowercasing tokenization segmentation dictionaries frequencies " +
+            "recognitions translations organizations locations persons controllable adjustable irritant " +
+            "electricity hopeful caresses ponies conflated troubled sized falling failing filing").split(" ");
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        String[] words = new String[20000];
+        for (int i = 0; i < words.length; i++) {
+            double r = random.nextDouble();
+            words[i] = vocabulary[(int)(vocabulary.length * r * r * r)];
+            text.append(words[i]).append(' ');
+        }
+        String corpus = text.toString();
+        PorterStemmer stemmer = new PorterStemmer();
+        // 后三种包含WhitespaceTokenizer的开销，与只切分不提取词干的耗时相减后才是词干提取的耗时
+        String[] names = {"PorterStemmer.stem(String)", "WhitespaceTokenizer", "PorterStemFilter",
+            "hanlp_porter_stem cache_size=0", "hanlp_porter_stem cache_size=1024"};
+        for (int round = 0; round < 8; round++) {
+            for (int n = 0; n < names.length; n++) {
+                long start = System.nanoTime();
+                int count = 0;
+                for (int i = 0; i < 20; i++) {
+                    if (n == 0) {
+                        for (String word : words) {
+                            count += stemmer.stem(word).length();
+                        }
+                        continue;
+                    }
+                    WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+                    TokenStream stream = n == 1 ? tokenizer : n == 2 ? new PorterStemFilter(tokenizer) :
+                        new HanLPPorterStemFilter(tokenizer, n == 3 ? 0 : CachingPorterStemmer.DEFAULT_CACHE_SIZE);
+                    for (String term : terms(stream, tokenizer, corpus)) {
+                        count += term.length();
+                    }
+                }
+                System.out.println(names[n] + ": " + (System.nanoTime() - start) / 20 / words.length + " ns/word (" + count + ")");
+            }
+        }
+    }
+}
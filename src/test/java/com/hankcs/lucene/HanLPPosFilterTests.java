@@ -0,0 +1,90 @@
+package com.hankcs.lucene;
+
+import com.hankcs.cfg.Configuration;
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.corpus.tag.Nature;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: hanlp_pos_filter词元过滤器
+ * @author: Kenn
+ * @create: 2019-06-24 10:17
+ */
+public class HanLPPosFilterTests extends HanLPTestCase {
+
+    @Test
+    public void testPosFilter() throws Exception {
+        String text = "我在北京大学的图书馆里看书，看了三个小时！Running tests";
+        NatureSet drop = NatureSet.of(Arrays.asList("w*", "u*", "p*"));
+        assertTrue(drop.contains(Nature.w));
+        assertTrue(drop.contains(Nature.uj));
+        assertFalse(drop.contains(Nature.n));
+        assertFalse(drop.contains(null));
+        // 构造之后才创建的词性按名称匹配
+        assertTrue(drop.contains(Nature.create("pos_filter_test")));
+        assertFalse(NatureSet.of(Collections.singletonList("n")).contains(Nature.nr));
+        List<String> all = new ArrayList<>();
+        List<String> dropped = new ArrayList<>();
+        List<String> kept = new ArrayList<>();
+        for (String token : typedTokens(TokenizerBuilder.tokenizer(HanLP.newSegment(), configuration()), text, null, false)) {
+            all.add(token);
+            char first = token.charAt(token.lastIndexOf('/') + 1);
+            (first == 'w' || first == 'u' || first == 'p' ? kept : dropped).add(token);
+        }
+        assertFalse(kept.isEmpty());
+        assertEquals(dropped, typedTokens(TokenizerBuilder.tokenizer(HanLP.newSegment(), configuration()), text, drop, false));
+        assertEquals(kept, typedTokens(TokenizerBuilder.tokenizer(HanLP.newSegment(), configuration()), text, drop, true));
+        // 被去掉的token的位置增量累加到下一个token上
+        Tokenizer tokenizer = TokenizerBuilder.tokenizer(HanLP.newSegment(), configuration());
+        TokenStream stream = new HanLPPosFilter(tokenizer, drop, false);
+        PositionIncrementAttribute posIncAtt = stream.addAttribute(PositionIncrementAttribute.class);
+        tokenizer.setReader(new StringReader(text));
+        stream.reset();
+        int position = 0;
+        while (stream.incrementToken()) {
+            position += posIncAtt.getPositionIncrement();
+        }
+        stream.end();
+        stream.close();
+        assertEquals(all.size(), position);
+        // 查询缓存重放的token同样带有词性
+        Configuration memo = configuration("enable_query_memo", "true");
+        List<String> first = typedTokens(TokenizerBuilder.tokenizer(HanLP.newSegment(), memo), text, drop, false);
+        assertEquals(dropped, first);
+        assertEquals(first, typedTokens(TokenizerBuilder.tokenizer(HanLP.newSegment(), memo), text, drop, false));
+    }
+
+    private static List<String> typedTokens(Tokenizer tokenizer, String text, NatureSet natures, boolean keep) throws IOException {
+        TokenStream stream = natures == null ? tokenizer : new HanLPPosFilter(tokenizer, natures, keep);
+        CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+        TypeAttribute typeAtt = stream.addAttribute(TypeAttribute.class);
+        NatureAttribute natureAtt = stream.addAttribute(NatureAttribute.class);
+        List<String> tokens = new ArrayList<>();
+        tokenizer.setReader(new StringReader(text));
+        stream.reset();
+        while (stream.incrementToken()) {
+            assertEquals(typeAtt.type(), String.valueOf(natureAtt.getNature()));
+            tokens.add(termAtt + "/" + typeAtt.type());
+        }
+        stream.end();
+        stream.close();
+        return tokens;
+    }
+}
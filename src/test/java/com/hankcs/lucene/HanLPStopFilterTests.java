@@ -0,0 +1,104 @@
+package com.hankcs.lucene;
+
+import com.hankcs.dic.CoreStopWordDictionary;
+import com.hankcs.dic.DictionaryVersion;
+import com.hankcs.dic.StopWordSet;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: hanlp_stop词元过滤器和全局停用词
+ * @author: Kenn
+ * @create: 2019-06-24 10:18
+ */
+public class HanLPStopFilterTests extends HanLPTestCase {
+
+    @Test
+    public void testStopFilter() throws Exception {
+        StopWordSet set = StopWordSet.of(Arrays.asList("的", "了", "", "the", "的"));
+        assertEquals(3, set.size());
+        assertTrue(set.contains("the"));
+        assertTrue(set.contains("xthe".toCharArray(), 1, 3));
+        assertFalse(set.contains("th"));
+        assertFalse(StopWordSet.EMPTY.contains(""));
+        assertSame(set, set.update(Collections.singletonList("the"), Collections.singletonList("a")));
+        StopWordSet updated = set.update(Arrays.asList("a", "了"), Arrays.asList("了", "the"));
+        assertEquals(Arrays.asList("的", "a"), updated.words());
+        assertTrue(set.contains("the"));
+        Random random = new Random(42);
+        Set<String> expected = new HashSet<>();
+        while (expected.size() < 5000) {
+            char[] word = new char[1 + random.nextInt(4)];
+            for (int i = 0; i < word.length; i++) {
+                word[i] = (char)(0x4e00 + random.nextInt(2000));
+            }
+            expected.add(new String(word));
+        }
+        StopWordSet large = StopWordSet.of(expected);
+        for (int i = 0; i < 20000; i++) {
+            String word = i < 5000 ? new ArrayList<>(expected).get(i) : new String(new char[]{(char)(0x4e00 + random.nextInt(2000)), (char)(0x4e00 + random.nextInt(2000))});
+            assertEquals(word, expected.contains(word), large.contains(word));
+        }
+        // 全局停用词与HanLP自带的停用词词典内容相同
+        StopWordSet global = CoreStopWordDictionary.words();
+        assertTrue(global.size() > 0);
+        for (String word : global.words()) {
+            assertTrue(word, com.hankcs.hanlp.dictionary.stopword.CoreStopWordDictionary.contains(word));
+        }
+        WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+        StopWordSet local = StopWordSet.of(Collections.singletonList("攻城狮"));
+        assertEquals(Arrays.asList("逆袭", "白富美"), terms(new HanLPStopFilter(tokenizer, local, true), tokenizer, "攻城狮 的 逆袭 了 白富美"));
+        tokenizer = new WhitespaceTokenizer();
+        assertEquals(Arrays.asList("的", "逆袭", "了", "白富美"), terms(new HanLPStopFilter(tokenizer, local, false), tokenizer, "攻城狮 的 逆袭 了 白富美"));
+        // 增删词整体替换，已经reset的token流继续使用原来的集合
+        String text = "攻城狮逆袭单身狗";
+        long version = DictionaryVersion.current();
+        List<String> before = tokens(analyzer("hanlp", configuration("enable_stop_dictionary", "true")), text);
+        tokenizer = new WhitespaceTokenizer();
+        TokenStream filter = new HanLPStopFilter(tokenizer, StopWordSet.EMPTY, true);
+        CharTermAttribute termAtt = filter.addAttribute(CharTermAttribute.class);
+        tokenizer.setReader(new StringReader("逆袭 单身狗"));
+        filter.reset();
+        assertTrue(CoreStopWordDictionary.update(Arrays.asList("逆袭", "单身狗"), Collections.emptyList()));
+        try {
+            assertFalse(CoreStopWordDictionary.add("逆袭"));
+            assertTrue(DictionaryVersion.current() > version);
+            assertTrue(filter.incrementToken());
+            assertEquals("逆袭", termAtt.toString());
+            filter.end();
+            filter.close();
+            tokenizer = new WhitespaceTokenizer();
+            assertEquals(Collections.emptyList(), terms(new HanLPStopFilter(tokenizer, StopWordSet.EMPTY, true), tokenizer, "逆袭 单身狗"));
+            List<String> after = tokens(analyzer("hanlp", configuration("enable_stop_dictionary", "true")), text);
+            List<String> remaining = new ArrayList<>();
+            for (String token : before) {
+                if (!token.startsWith("逆袭/") && !token.startsWith("单身狗/")) {
+                    remaining.add(token);
+                }
+            }
+            assertTrue(remaining.size() < before.size());
+            assertEquals(remaining, after);
+        } finally {
+            assertTrue(CoreStopWordDictionary.update(Collections.emptyList(), Arrays.asList("逆袭", "单身狗")));
+        }
+        assertEquals(before, tokens(analyzer("hanlp", configuration("enable_stop_dictionary", "true")), text));
+        assertEquals(global.size(), CoreStopWordDictionary.words().size());
+    }
+}
@@ -0,0 +1,109 @@
+package com.hankcs.lucene;
+
+import com.hankcs.cfg.Configuration;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.junit.BeforeClass;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 分词相关测试的公共部分：临时的ES环境、配置构造和token输出
+ * @author: Kenn
+ * @create: 2019-06-24 10:00
+ */
+public abstract class HanLPTestCase {
+
+    protected static final String TEXT = "攻城狮逆袭单身狗，迎娶白富美，走上人生巅峰。Running the tests quickly！";
+
+    protected static Environment environment;
+
+    @BeforeClass
+    public static void setUpEnvironment() throws Exception {
+        Path home = Files.createTempDirectory("hanlp");
+        environment = new Environment(Settings.builder().put("path.home", home.toString()).build(), null);
+    }
+
+    protected static Configuration configuration(String... settings) {
+        Settings.Builder builder = Settings.builder().put("enable_remote_dict", "false");
+        for (int i = 0; i < settings.length; i += 2) {
+            builder.put(settings[i], settings[i + 1]);
+        }
+        return new Configuration(environment, builder.build());
+    }
+
+    protected static Analyzer analyzer(String type, Configuration configuration) {
+        switch (type) {
+            case "index":
+                return new HanLPIndexAnalyzer(configuration);
+            case "dijkstra":
+                return new HanLPDijkstraAnalyzer(configuration);
+            default:
+                return new HanLPAnalyzer(configuration);
+        }
+    }
+
+    /**
+     * @return 每个token为“词/起始偏移-结束偏移/词性”
+     */
+    protected static List<String> tokens(Analyzer analyzer, String text) throws Exception {
+        List<String> tokens = new ArrayList<>();
+        try (TokenStream stream = analyzer.tokenStream("f", text)) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offsetAtt = stream.addAttribute(OffsetAttribute.class);
+            TypeAttribute typeAtt = stream.addAttribute(TypeAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                tokens.add(termAtt + "/" + offsetAtt.startOffset() + "-" + offsetAtt.endOffset() + "/" + typeAtt.type());
+            }
+            stream.end();
+        }
+        return tokens;
+    }
+
+    /**
+     * @return 每个token为“词/起始偏移-结束偏移”，最后一项为end()之后的偏移
+     */
+    protected static List<String> tokens(Tokenizer tokenizer, String text) throws Exception {
+        CharTermAttribute termAtt = tokenizer.getAttribute(CharTermAttribute.class);
+        OffsetAttribute offsetAtt = tokenizer.getAttribute(OffsetAttribute.class);
+        List<String> tokens = new ArrayList<>();
+        tokenizer.setReader(new StringReader(text));
+        tokenizer.reset();
+        while (tokenizer.incrementToken()) {
+            tokens.add(termAtt + "/" + offsetAtt.startOffset() + "-" + offsetAtt.endOffset());
+        }
+        tokenizer.end();
+        tokens.add("end/" + offsetAtt.endOffset());
+        tokenizer.close();
+        return tokens;
+    }
+
+    /**
+     * @return stream输出的词，tokenizer为stream最底层的tokenizer
+     */
+    protected static List<String> terms(TokenStream stream, Tokenizer tokenizer, String text) throws IOException {
+        List<String> terms = new ArrayList<>();
+        CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+        tokenizer.setReader(new StringReader(text));
+        stream.reset();
+        while (stream.incrementToken()) {
+            terms.add(termAtt.toString());
+        }
+        stream.end();
+        stream.close();
+        return terms;
+    }
+}
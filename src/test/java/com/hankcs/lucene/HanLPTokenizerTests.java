@@ -0,0 +1,157 @@
+package com.hankcs.lucene;
+
+import com.hankcs.cfg.Configuration;
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.corpus.tag.Nature;
+import com.hankcs.hanlp.seg.Other.DoubleArrayTrieSegment;
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.seg.common.Term;
+import org.apache.lucene.analysis.Tokenizer;
+import org.junit.Test;
+
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: HanLP分词器的token输出路径
+ * @author: Kenn
+ * @create: 2019-06-24 10:01
+ */
+public class HanLPTokenizerTests extends HanLPTestCase {
+
+    /**
+     * 分词器本身一定会分配Term，这里用固定结果的segment只衡量token输出路径
+     */
+    @Test
+    public void testEmissionPathAllocation() throws Exception {
+        StringBuilder text = new StringBuilder();
+        List<Term> terms = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Term term = new Term(i % 2 == 0 ? "北京" : "ab", i % 2 == 0 ? Nature.ns : Nature.nx);
+            term.offset = text.length();
+            text.append(term.word);
+            terms.add(term);
+        }
+        Segment segment = new Segment() {
+            @Override
+            protected List<Term> segSentence(char[] sentence) {
+                return terms;
+            }
+        };
+        Tokenizer tokenizer = TokenizerBuilder.tokenizer(segment, configuration());
+        double bytesPerToken = bytesPerToken(tokenizer, text.toString());
+        assertTrue("bytes/token: " + bytesPerToken, bytesPerToken < 8);
+    }
+
+    /**
+     * 真实分词器的Term列表和词的字符串由HanLP分配，从总分配量中减去同一个segment单独分词的分配量，
+     * 剩下的是插件的读取和输出路径在每个token上的开销
+     */
+    @Test
+    public void testEmissionOverheadPerToken() throws Exception {
+        String text = TEXT + "\n中华人民共和国成立了，北京大学生前来应聘，价格是12.5元。\n" + TEXT;
+        Object[][] engines = {{"hanlp", HanLP.newSegment(), configuration()},
+            {"hanlp_index", HanLP.newSegment(), configuration("enable_index_mode", "true")},
+            {"hanlp_speed", new DoubleArrayTrieSegment(), configuration("enable_custom_dictionary", "false")}};
+        for (Object[] engine : engines) {
+            SegmentationProfile profile = new SegmentationProfile(null, (Configuration)engine[2]);
+            Segment segment = profile.segment((Segment)engine[1]);
+            Tokenizer tokenizer = new HanLPTokenizer(segment, profile);
+            // 分配量受JIT逃逸分析影响，交替测量几轮后各取最小值
+            double total = Double.MAX_VALUE;
+            double segmenter = Double.MAX_VALUE;
+            for (int round = 0; round < 5; round++) {
+                total = Math.min(total, bytesPerToken(tokenizer, text));
+                segmenter = Math.min(segmenter, segmenterBytesPerToken(segment, text, tokenizer));
+            }
+            assertTrue(engine[0] + ": " + total + " bytes/token, segmenter " + segmenter, total - segmenter < 32);
+        }
+    }
+
+    private static double bytesPerToken(Tokenizer tokenizer, String text) throws Exception {
+        run(tokenizer, text, 2000);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(threadId);
+        long tokens = run(tokenizer, text, 2000);
+        long after = bean.getThreadAllocatedBytes(threadId);
+        return (double)(after - before) / tokens;
+    }
+
+    /**
+     * @return 与bytesPerToken相同的轮数下只调用segment分词的分配量，按tokenizer输出的token数平均
+     */
+    private static double segmenterBytesPerToken(Segment segment, String text, Tokenizer tokenizer) throws Exception {
+        String[] lines = text.split("\n");
+        char[][] sentences = new char[lines.length][];
+        for (int i = 0; i < lines.length; i++) {
+            sentences[i] = lines[i].toCharArray();
+        }
+        long tokens = run(tokenizer, text, 1);
+        for (int i = 0; i < 2000; i++) {
+            for (char[] sentence : sentences) {
+                segment.seg(sentence);
+            }
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 2000; i++) {
+            for (char[] sentence : sentences) {
+                segment.seg(sentence);
+            }
+        }
+        long after = bean.getThreadAllocatedBytes(threadId);
+        return (double)(after - before) / (tokens * 2000);
+    }
+
+    private static long run(Tokenizer tokenizer, String text, int iterations) throws Exception {
+        long tokens = 0;
+        ReusableReader reader = new ReusableReader(text);
+        for (int i = 0; i < iterations; i++) {
+            reader.position = 0;
+            tokenizer.setReader(reader);
+            tokenizer.reset();
+            while (tokenizer.incrementToken()) {
+                tokens++;
+            }
+            tokenizer.end();
+            tokenizer.close();
+        }
+        return tokens;
+    }
+
+    /**
+     * close时不释放内容的reader，避免测量时每个文档都分配reader
+     */
+    private static class ReusableReader extends Reader {
+
+        private final String text;
+
+        private int position;
+
+        ReusableReader(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position >= text.length()) {
+                return -1;
+            }
+            int count = Math.min(length, text.length() - position);
+            text.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
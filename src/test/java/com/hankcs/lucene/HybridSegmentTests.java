@@ -0,0 +1,35 @@
+package com.hankcs.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 感知机分词中的混合实体识别
+ * @author: Kenn
+ * @create: 2019-06-24 10:05
+ */
+public class HybridSegmentTests extends HanLPTestCase {
+
+    @Test
+    public void testHybridRecognition() throws Exception {
+        Analyzer nlp = new HanLPNLPAnalyzer(configuration());
+        Analyzer hybrid = new HanLPNLPAnalyzer(configuration("enable_hybrid_recognition", "true"));
+        String names = "签约仪式前，秦光荣、李纪恒等一同会见了参加签约的企业家。";
+        List<String> tokens = tokens(hybrid, names);
+        assertTrue(tokens.toString(), tokens.contains("秦光荣/6-9/nr"));
+        assertTrue(tokens.toString(), tokens.contains("李纪恒/10-13/nr"));
+        assertEquals(tokens(nlp, names), tokens);
+        long chars = (Long)HybridSegment.stats().get("chars");
+        long recognized = (Long)HybridSegment.stats().get("recognized_chars");
+        String plain = "随着经济的发展，人们的生活水平不断提高，消费结构也在发生变化。";
+        assertEquals(tokens(nlp, plain), tokens(hybrid, plain));
+        assertEquals(chars + plain.length(), HybridSegment.stats().get("chars"));
+        assertEquals(recognized, HybridSegment.stats().get("recognized_chars"));
+    }
+}
@@ -0,0 +1,59 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.seg.Dijkstra.DijkstraSegment;
+import com.hankcs.hanlp.seg.NShort.NShortSegment;
+import com.hankcs.hanlp.seg.Segment;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 复用词网内存的最短路和N最短路分词
+ * @author: Kenn
+ * @create: 2019-06-24 10:10
+ */
+public class LatticeArenaTests extends HanLPTestCase {
+
+    @Test
+    public void testArenaLatticeSegment() throws Exception {
+        String[] texts = {
+            "商品和服务", "结婚的和尚未结婚的", "他说的确实在理", "美国阿拉斯加州发生8.0级地震",
+            "张三李四王五去了北京大学和中国科学院计算技术研究所", "江西鄱阳湖干枯，中国最大淡水湖变成大草原", TEXT,
+        };
+        Segment[][] pairs = {{new DijkstraSegment(), new ArenaDijkstraSegment()}, {new NShortSegment(), new ArenaNShortSegment()}};
+        for (Segment[] pair : pairs) {
+            for (Segment segment : pair) {
+                segment.enableCustomDictionary(false).enablePlaceRecognize(true).enableOrganizationRecognize(true)
+                    .enableNameRecognize(true).enableOffset(true);
+            }
+            for (String text : texts) {
+                assertEquals(text, pair[0].seg(text).toString(), pair[1].seg(text).toString());
+            }
+        }
+    }
+
+    @Ignore
+    @Test
+    public void benchmarkArenaLatticeSegment() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            text.append("张三李四去了北京大学和中国科学院计算技术研究所，江西鄱阳湖干枯，中国最大淡水湖变成大草原。");
+        }
+        Segment[] segments = {new DijkstraSegment(), new ArenaDijkstraSegment(), new NShortSegment(), new ArenaNShortSegment()};
+        for (Segment segment : segments) {
+            segment.enableCustomDictionary(false).enablePlaceRecognize(true).enableOrganizationRecognize(true);
+        }
+        char[] sentence = text.toString().toCharArray();
+        for (int round = 0; round < 8; round++) {
+            for (Segment segment : segments) {
+                long start = System.nanoTime();
+                for (int i = 0; i < 200; i++) {
+                    segment.seg(sentence);
+                }
+                System.out.println(segment.getClass().getSimpleName() + ": " + (System.nanoTime() - start) / 200 / 1000 + " us/doc");
+            }
+        }
+    }
+}
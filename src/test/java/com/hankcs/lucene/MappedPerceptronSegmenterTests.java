@@ -0,0 +1,152 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.model.perceptron.CWSTrainer;
+import com.hankcs.hanlp.model.perceptron.PerceptronSegmenter;
+import com.hankcs.hanlp.model.perceptron.model.LinearModel;
+import com.hankcs.hanlp.seg.common.Term;
+import com.hankcs.hanlp.tokenizer.lexical.AbstractLexicalAnalyzer;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 内存映射的感知机分词
+ * @author: Kenn
+ * @create: 2019-06-24 10:11
+ */
+public class MappedPerceptronSegmenterTests extends HanLPTestCase {
+
+    private static final String[] TEXTS = {
+        "商品和服务", "结婚的和尚未结婚的", "他说的确实在理", "美国阿拉斯加州发生8.0级地震",
+        "张三李四王五去了北京大学和中国科学院计算技术研究所", "江西鄱阳湖干枯，中国最大淡水湖变成大草原", TEXT, "a", "",
+    };
+
+    private static LinearModel model;
+
+    private static MappedPerceptronModel mapped;
+
+    private static Path modelFile;
+
+    private static Path mappedFile;
+
+    @BeforeClass
+    public static void train() throws Exception {
+        // 沙箱中没有HanLP的感知机模型，用标准分词的结果训练一个小模型
+        Path directory = Files.createTempDirectory("perceptron");
+        StringBuilder corpus = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            for (String text : TEXTS) {
+                for (Term term : HanLP.segment(text)) {
+                    if (!term.word.trim().isEmpty()) {
+                        corpus.append(term.word).append(' ');
+                    }
+                }
+                corpus.append('\n');
+            }
+        }
+        Path corpusFile = directory.resolve("corpus.txt");
+        Files.write(corpusFile, corpus.toString().getBytes("UTF-8"));
+        modelFile = directory.resolve("cws.bin");
+        new CWSTrainer().train(corpusFile.toString(), modelFile.toString());
+        model = new LinearModel(modelFile.toString());
+        mappedFile = directory.resolve("cws.bin.mmap");
+        MappedPerceptronModel.write(model, mappedFile);
+        mapped = MappedPerceptronModel.open(mappedFile);
+    }
+
+    @Test
+    public void testMappedPerceptronSegmenter() throws Exception {
+        PerceptronSegmenter expected = new PerceptronSegmenter(model);
+        MappedPerceptronSegmenter actual = new MappedPerceptronSegmenter(mapped);
+        AbstractLexicalAnalyzer expectedAnalyzer = new AbstractLexicalAnalyzer(expected);
+        AbstractLexicalAnalyzer actualAnalyzer = new AbstractLexicalAnalyzer(actual);
+        for (String text : TEXTS) {
+            assertEquals(text, expected.segment(text), actual.segment(text));
+            assertEquals(text, expectedAnalyzer.seg(text).toString(), actualAnalyzer.seg(text).toString());
+        }
+        // 长短交替，检查复用的缓冲区
+        assertEquals(expected.segment(TEXT + TEXT + TEXT), actual.segment(TEXT + TEXT + TEXT));
+        assertEquals(expected.segment("商品和服务"), actual.segment("商品和服务"));
+    }
+
+    @Test
+    public void testReconvertWhenSourceIsNewer() throws Exception {
+        String modelPath = HanLP.Config.PerceptronCWSModelPath;
+        HanLP.Config.PerceptronCWSModelPath = modelFile.toString();
+        try {
+            FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+            FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+            // 映射文件比模型新时直接映射
+            Files.setLastModifiedTime(modelFile, old);
+            Files.setLastModifiedTime(mappedFile, now);
+            assertFalse(MappedPerceptronModel.load(mappedFile).isConverted());
+            assertEquals(now, Files.getLastModifiedTime(mappedFile));
+
+            // 模型被替换后重新转换
+            Files.setLastModifiedTime(mappedFile, old);
+            Files.setLastModifiedTime(modelFile, now);
+            MappedPerceptronModel reloaded = MappedPerceptronModel.load(mappedFile);
+            assertTrue(Files.getLastModifiedTime(mappedFile).compareTo(now) >= 0);
+            assertTrue(reloaded.isConverted());
+            PerceptronSegmenter expected = new PerceptronSegmenter(model);
+            assertEquals(expected.segment(TEXT), new MappedPerceptronSegmenter(reloaded).segment(TEXT));
+        } finally {
+            HanLP.Config.PerceptronCWSModelPath = modelPath;
+        }
+    }
+
+    @Test
+    public void testConcurrentSegmentation() throws Exception {
+        PerceptronSegmenter expected = new PerceptronSegmenter(model);
+        // 多个线程共享同一个分词器，长短句交替使各线程的缓冲区反复扩容
+        AbstractLexicalAnalyzer shared = new AbstractLexicalAnalyzer(new MappedPerceptronSegmenter(mapped));
+        String[] texts = Arrays.copyOf(TEXTS, TEXTS.length + 1);
+        texts[TEXTS.length] = TEXT + TEXT + TEXT;
+        List<String> segmented = new ArrayList<>();
+        for (String text : texts) {
+            segmented.add(expected.segment(text).toString());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                int first = i;
+                futures.add(executor.submit(() -> {
+                    List<String> mismatches = new ArrayList<>();
+                    for (int round = 0; round < 200; round++) {
+                        int index = (first + round) % texts.length;
+                        List<String> words = new ArrayList<>();
+                        for (Term term : shared.seg(texts[index])) {
+                            words.add(term.word);
+                        }
+                        if (!segmented.get(index).equals(words.toString())) {
+                            mismatches.add(texts[index] + ": " + words);
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+            for (Future<List<String>> future : futures) {
+                assertEquals(Collections.emptyList(), future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.hankcs.lucene;
+
+import com.hankcs.dic.DictionaryVersion;
+import com.hankcs.hanlp.collection.trie.DoubleArrayTrie;
+import com.hankcs.hanlp.dictionary.CoreDictionary;
+import com.hankcs.hanlp.dictionary.CustomDictionary;
+import com.hankcs.hanlp.seg.Other.DoubleArrayTrieSegment;
+import com.hankcs.hanlp.seg.Segment;
+import org.apache.lucene.analysis.Analyzer;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 极速词典分词的合并词典
+ * @author: Kenn
+ * @create: 2019-06-24 10:08
+ */
+public class MergedDictionaryTests extends HanLPTestCase {
+
+    @Test
+    public void testSpeedCustomDictionary() throws Exception {
+        String text = "研究量子纠缠态的性质";
+        Analyzer core = new HanLPSpeedAnalyzer(configuration());
+        Analyzer merged = new HanLPSpeedAnalyzer(configuration("enable_custom_dictionary", "true"));
+        List<String> before = tokens(merged, text);
+        try {
+            CustomDictionary.add("量子纠缠态", "nz 1");
+            DictionaryVersion.incrementCustomDictionary();
+            // 新词在后台重新合并后生效，合并完成前仍使用旧的trie
+            List<String> after = tokens(merged, text);
+            for (int i = 0; i < 300 && after.equals(before); i++) {
+                Thread.sleep(100);
+                after = tokens(merged, text);
+            }
+            assertTrue(after.get(1).startsWith("量子纠缠态/2-7"));
+            assertEquals(tokens(core, text), before);
+        } finally {
+            CustomDictionary.remove("量子纠缠态");
+            DictionaryVersion.incrementCustomDictionary();
+        }
+    }
+
+    @Test
+    public void testRebuildOnlyOnCustomDictionaryChange() throws Exception {
+        String text = "研究量子纠缠态的性质";
+        Analyzer merged = new HanLPSpeedAnalyzer(configuration("enable_custom_dictionary", "true"));
+        List<String> expected = tokens(merged, text);
+        awaitBuilt();
+        long builds = (long)MergedDictionary.stats().get("builds");
+        // 停用词等其他词典的变化不重新合并
+        DictionaryVersion.increment();
+        assertEquals(expected, tokens(merged, text));
+        Thread.sleep(200);
+        assertEquals(builds, (long)MergedDictionary.stats().get("builds"));
+
+        // 插件关闭后合并线程被释放，再次使用时重新创建
+        MergedDictionary.shutdown();
+        DictionaryVersion.incrementCustomDictionary();
+        assertEquals(expected, tokens(merged, text));
+        awaitBuilt();
+        assertEquals(builds + 1, (long)MergedDictionary.stats().get("builds"));
+        assertEquals(expected, tokens(merged, text));
+    }
+
+    @Test
+    public void testFailedBuildIsNotRetried() throws Exception {
+        String text = "研究量子纠缠态的性质";
+        Analyzer merged = new HanLPSpeedAnalyzer(configuration("enable_custom_dictionary", "true"));
+        List<String> expected = tokens(merged, text);
+        awaitBuilt();
+        long builds = (long)MergedDictionary.stats().get("builds");
+        long failures = (long)MergedDictionary.stats().get("failures");
+        DoubleArrayTrie<CoreDictionary.Attribute> dat = CustomDictionary.dat;
+        // 无法读取的自定义词典使合并失败
+        CustomDictionary.dat = new DoubleArrayTrie<CoreDictionary.Attribute>() {
+            @Override
+            public int size() {
+                return 1;
+            }
+
+            @Override
+            public boolean save(DataOutputStream out) {
+                return false;
+            }
+        };
+        try {
+            DictionaryVersion.incrementCustomDictionary();
+            MergedDictionary.current();
+            awaitFailures(failures + 1);
+            // 同一版本不再重试，分词继续使用旧的trie
+            for (int i = 0; i < 20; i++) {
+                assertEquals(expected, tokens(merged, text));
+            }
+            Thread.sleep(200);
+            assertEquals(failures + 1, (long)MergedDictionary.stats().get("failures"));
+            assertEquals(builds, (long)MergedDictionary.stats().get("builds"));
+        } finally {
+            CustomDictionary.dat = dat;
+        }
+        // 自定义词典再次变化后重新合并
+        DictionaryVersion.incrementCustomDictionary();
+        awaitBuilt();
+        assertEquals(builds + 1, (long)MergedDictionary.stats().get("builds"));
+        assertEquals(expected, tokens(merged, text));
+    }
+
+    private static void awaitFailures(long failures) throws InterruptedException {
+        for (int i = 0; i < 300 && (long)MergedDictionary.stats().get("failures") < failures; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(failures, (long)MergedDictionary.stats().get("failures"));
+        for (int i = 0; i < 300 && (boolean)MergedDictionary.stats().get("rebuilding"); i++) {
+            Thread.sleep(100);
+        }
+    }
+
+    /**
+     * 等待合并词典与当前的自定义词典版本一致
+     */
+    private static void awaitBuilt() throws InterruptedException {
+        for (int i = 0; i < 300; i++) {
+            MergedDictionary.current();
+            Map<String, Object> stats = MergedDictionary.stats();
+            if ((long)stats.get("custom_dictionary_version") == DictionaryVersion.customDictionary() &&
+                !(boolean)stats.get("rebuilding")) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        fail("merged dictionary is not built");
+    }
+
+    @Ignore
+    @Test
+    public void benchmarkSpeedCustomDictionary() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            text.append(TEXT).append("北京大学生前来应聘，价格是12.5元，这个方案可以。");
+        }
+        Segment threePass = new DoubleArrayTrieSegment().enableCustomDictionary(true).enableOffset(true);
+        Analyzer[] analyzers = {new HanLPSpeedAnalyzer(configuration()),
+            new HanLPSpeedAnalyzer(configuration("enable_custom_dictionary", "true")), new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                return new TokenStreamComponents(TokenizerBuilder.tokenizer(threePass, configuration()));
+            }
+        }};
+        // three-pass为HanLP自带的依次匹配核心词典、自定义词典和动态词典的实现
+        String[] names = {"core", "merged", "three-pass"};
+        for (int round = 0; round < 8; round++) {
+            for (int a = 0; a < analyzers.length; a++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < 2000; i++) {
+                    tokens(analyzers[a], text.toString());
+                }
+                System.out.println(names[a] + ": " + (System.nanoTime() - start) / 2000 / 1000 + " us/doc");
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.hankcs.lucene;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 文档内并行分词，结果必须与串行分词完全一致
+ * @author: Kenn
+ * @create: 2019-06-24 10:26
+ */
+public class ParallelSegmentationTests extends HanLPTestCase {
+
+    private static final String[] PARAGRAPHS = {
+        "攻城狮逆袭单身狗，迎娶白富美，走上人生巅峰。张三李四王五去了北京大学和中国科学院计算技术研究所！",
+        "江西鄱阳湖干枯，中国最大淡水湖变成大草原。美国阿拉斯加州发生8.0级地震？结婚的和尚未结婚的；",
+        "商品和服务。他说的确实在理。Running the tests quickly! 价格是12.5元。北京大学生前来应聘。",
+    };
+
+    @Test
+    public void testParallelMatchesSerial() throws Exception {
+        String text = text();
+        for (String[] settings : new String[][]{{}, {"enable_index_mode", "true"}, {"enable_custom_dictionary", "false"}}) {
+            List<String> expected = positions(tokenizer(SegmentEngine.VITERBI, false, settings), text);
+            assertEquals(expected, positions(tokenizer(SegmentEngine.VITERBI, true, settings), text));
+        }
+        List<String> expected = positions(tokenizer(SegmentEngine.SPEED, false), text);
+        assertEquals(expected, positions(tokenizer(SegmentEngine.SPEED, true), text));
+    }
+
+    @Test
+    public void testConcurrentParallelSegmentation() throws Exception {
+        String text = text();
+        List<String> expected = positions(tokenizer(SegmentEngine.VITERBI, false), text);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> {
+                    Tokenizer tokenizer = tokenizer(SegmentEngine.VITERBI, true);
+                    List<String> last = null;
+                    for (int round = 0; round < 10; round++) {
+                        last = positions(tokenizer, text);
+                    }
+                    return last;
+                }));
+            }
+            for (Future<List<String>> future : futures) {
+                assertEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // 插件关闭后线程池被释放，再次使用时重新创建
+        ParallelSegmentation.shutdown();
+        assertEquals(expected, positions(tokenizer(SegmentEngine.VITERBI, true), text));
+    }
+
+    @Test
+    public void testParallelWithAsciiFastPath() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append(PARAGRAPHS[i % PARAGRAPHS.length]);
+            // 西文片段之间的中文超过并行阈值
+            text.append(i % 4 == 3 ? " Running version " + i + ".0 now " : "");
+        }
+        List<String> expected = positions(tokenizer(SegmentEngine.VITERBI, false), text.toString());
+        Tokenizer tokenizer = tokenizer(SegmentEngine.VITERBI, true, "enable_ascii_fast_path", "true");
+        Map<String, Object> before = SegmentPool.stats();
+        assertEquals(expected, positions(tokenizer, text.toString()));
+        // 快速通道交给分词器的片段照常并行，工作线程从Segment池中取分词器
+        Map<String, Object> after = SegmentPool.stats();
+        long acquired = (long)after.get("hits") + (long)after.get("misses") - (long)before.get("hits") - (long)before.get("misses");
+        assertTrue(String.valueOf(acquired), acquired > 1);
+    }
+
+    private static String text() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append(PARAGRAPHS[i % PARAGRAPHS.length]);
+            text.append(i % 5 == 4 ? "\n\n" : "");
+        }
+        return text.toString();
+    }
+
+    private static Tokenizer tokenizer(SegmentEngine engine, boolean parallel, String... settings) {
+        String[] all = new String[settings.length + 4];
+        System.arraycopy(settings, 0, all, 0, settings.length);
+        all[settings.length] = "enable_parallel_segmentation";
+        all[settings.length + 1] = String.valueOf(parallel);
+        all[settings.length + 2] = "parallel_segmentation_threshold";
+        all[settings.length + 3] = "64";
+        return TokenizerBuilder.tokenizer(new SegmentationProfile(engine, configuration(all)));
+    }
+
+    /**
+     * @return 每个token为“词/起始偏移-结束偏移/位置增量”
+     */
+    private static List<String> positions(Tokenizer tokenizer, String text) throws Exception {
+        CharTermAttribute termAtt = tokenizer.getAttribute(CharTermAttribute.class);
+        OffsetAttribute offsetAtt = tokenizer.getAttribute(OffsetAttribute.class);
+        PositionIncrementAttribute positionAtt = tokenizer.getAttribute(PositionIncrementAttribute.class);
+        List<String> tokens = new ArrayList<>();
+        tokenizer.setReader(new StringReader(text));
+        tokenizer.reset();
+        while (tokenizer.incrementToken()) {
+            tokens.add(termAtt + "/" + offsetAtt.startOffset() + "-" + offsetAtt.endOffset() + "/" + positionAtt.getPositionIncrement());
+        }
+        tokenizer.end();
+        tokenizer.close();
+        return tokens;
+    }
+}
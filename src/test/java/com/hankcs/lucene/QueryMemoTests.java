@@ -0,0 +1,101 @@
+package com.hankcs.lucene;
+
+import com.hankcs.dic.DictionaryVersion;
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.seg.common.Term;
+import org.apache.lucene.analysis.Tokenizer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 短查询分词结果缓存
+ * @author: Kenn
+ * @create: 2019-06-24 10:09
+ */
+public class QueryMemoTests extends HanLPTestCase {
+
+    @Test
+    public void testQueryMemo() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Segment viterbi = HanLP.newSegment();
+        Segment segment = new Segment() {
+            @Override
+            protected List<Term> segSentence(char[] sentence) {
+                calls.incrementAndGet();
+                return viterbi.seg(sentence);
+            }
+        };
+        String text = "走上人生巅峰 Running tests";
+        Tokenizer first = TokenizerBuilder.tokenizer(segment, configuration("enable_query_memo", "true", "enable_porter_stemming", "true"));
+        Tokenizer second = TokenizerBuilder.tokenizer(segment, configuration("enable_query_memo", "true", "enable_porter_stemming", "true"));
+        List<String> expected = tokens(first, text);
+        assertEquals(1, calls.get());
+        assertEquals(expected, tokens(second, text));
+        assertEquals(1, calls.get());
+        assertEquals(tokens(TokenizerBuilder.tokenizer(segment, configuration("enable_porter_stemming", "true")), text), expected);
+        assertEquals(2, calls.get());
+        DictionaryVersion.increment();
+        assertEquals(expected, tokens(first, text));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void testLongTextBypassesMemo() throws Exception {
+        String text = CharWindowReaderTests.repeat("攻城狮逆袭单身狗，", QueryMemo.MAX_TEXT_LENGTH / 9 + 1) + "迎娶白富美";
+        assertTrue(text.length() > QueryMemo.MAX_TEXT_LENGTH);
+        Tokenizer memo = TokenizerBuilder.tokenizer(HanLP.newSegment(), configuration("enable_query_memo", "true"));
+        long entries = (long)QueryMemo.stats().get("entries");
+        List<String> expected = tokens(TokenizerBuilder.tokenizer(HanLP.newSegment(), configuration()), text);
+        assertEquals(expected, tokens(memo, text));
+        assertEquals(entries, (long)QueryMemo.stats().get("entries"));
+        // 正好在长度限制内的文本仍然备忘
+        String limit = text.substring(0, QueryMemo.MAX_TEXT_LENGTH);
+        assertEquals(tokens(TokenizerBuilder.tokenizer(HanLP.newSegment(), configuration()), limit), tokens(memo, limit));
+        assertEquals(entries + 1, (long)QueryMemo.stats().get("entries"));
+    }
+
+    @Test
+    public void testStripedEvictionAndConcurrency() throws Exception {
+        QueryMemo.configure(32, 60000);
+        try {
+            Map<String, Object> before = QueryMemo.stats();
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    Tokenizer memo = TokenizerBuilder.tokenizer(HanLP.newSegment(), configuration("enable_query_memo", "true"));
+                    Tokenizer plain = TokenizerBuilder.tokenizer(HanLP.newSegment(), configuration());
+                    for (int i = 0; i < 200; i++) {
+                        String text = "走上人生巅峰" + (i % 100);
+                        if (!tokens(plain, text).equals(tokens(memo, text))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+            executor.shutdown();
+            Map<String, Object> after = QueryMemo.stats();
+            assertTrue((long)after.get("entries") <= 32);
+            assertTrue((long)after.get("evictions") > (long)before.get("evictions"));
+            assertEquals(800, (long)after.get("hits") + (long)after.get("misses") - (long)before.get("hits") - (long)before.get("misses"));
+        } finally {
+            QueryMemo.configure(10000, 60000);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.seg.Other.DoubleArrayTrieSegment;
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.seg.common.Term;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 单文档分词预算
+ * @author: Kenn
+ * @create: 2019-06-24 10:03
+ */
+public class SegmentBudgetTests extends HanLPTestCase {
+
+    @Test
+    public void testSegmentBudget() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Segment viterbi = HanLP.newSegment().enableOffset(true);
+        Segment segment = new Segment() {
+            @Override
+            protected List<Term> segSentence(char[] sentence) {
+                calls.incrementAndGet();
+                return viterbi.seg(sentence);
+            }
+        };
+        String text = "攻城狮逆袭单身狗\n迎娶白富美\n走上人生巅峰";
+        List<String> full = tokens(TokenizerBuilder.tokenizer(segment, configuration()), text);
+        List<String> speed = tokens(TokenizerBuilder.tokenizer(new DoubleArrayTrieSegment(), configuration()), text);
+        calls.set(0);
+
+        long fallbacks = (Long)SegmentBudget.stats().get("token_fallbacks");
+        List<String> degraded = tokens(TokenizerBuilder.tokenizer(segment, configuration("max_tokens_per_document", "2")), text);
+        assertEquals(1, calls.get());
+        assertEquals(fallbacks + 1, SegmentBudget.stats().get("token_fallbacks"));
+        int firstLine = full.indexOf("迎娶/8-10");
+        assertEquals(full.subList(0, firstLine), degraded.subList(0, firstLine));
+        assertEquals(speed.subList(speed.indexOf("迎娶/8-10"), speed.size()), degraded.subList(firstLine, degraded.size()));
+
+        calls.set(0);
+        long drops = (Long)SegmentBudget.stats().get("token_drops");
+        List<String> tokens = tokens(TokenizerBuilder.tokenizer(segment, configuration("max_tokens_per_document", "2",
+            "segment_budget_policy", "drop")), text);
+        assertEquals(1, calls.get());
+        assertEquals(drops + 1, SegmentBudget.stats().get("token_drops"));
+        assertEquals(full.subList(0, firstLine), tokens.subList(0, tokens.size() - 1));
+
+        Segment slow = new Segment() {
+            @Override
+            protected List<Term> segSentence(char[] sentence) {
+                calls.incrementAndGet();
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return viterbi.seg(sentence);
+            }
+        };
+        calls.set(0);
+        fallbacks = (Long)SegmentBudget.stats().get("time_fallbacks");
+        tokens = tokens(TokenizerBuilder.tokenizer(slow, configuration("max_segment_millis", "10")), text);
+        assertEquals(1, calls.get());
+        assertEquals(fallbacks + 1, SegmentBudget.stats().get("time_fallbacks"));
+        assertEquals(degraded, tokens);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownBudgetPolicy() {
+        configuration("segment_budget_policy", "Drop");
+    }
+}
@@ -0,0 +1,63 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.seg.Segment;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 节点级Segment池
+ * @author: Kenn
+ * @create: 2019-06-24 10:27
+ */
+public class SegmentPoolTests extends HanLPTestCase {
+
+    @Test
+    public void testCountsAndPerThreadReuse() throws Exception {
+        SegmentSpec speed = new SegmentSpec(SegmentEngine.SPEED, configuration());
+        SegmentSpec viterbi = new SegmentSpec(SegmentEngine.VITERBI, configuration());
+        SegmentSpec index = new SegmentSpec(SegmentEngine.VITERBI, configuration("enable_index_mode", "true"));
+        // 每个线程的池只在第一次使用时创建，用新线程避免其他测试留下的分词器
+        ExecutorService first = Executors.newSingleThreadExecutor();
+        ExecutorService second = Executors.newSingleThreadExecutor();
+        SegmentPool.configure(2);
+        try {
+            Map<String, Object> before = SegmentPool.stats();
+            Segment segment = first.submit(() -> SegmentPool.acquire(speed)).get();
+            assertSame(segment, first.submit(() -> SegmentPool.acquire(speed)).get());
+            assertSame(segment, first.submit(() -> SegmentPool.acquire(new SegmentSpec(SegmentEngine.SPEED, configuration()))).get());
+            assertCounts(before, 2, 1, 0);
+
+            // 其他线程持有自己的分词器
+            assertNotSame(segment, second.submit(() -> SegmentPool.acquire(speed)).get());
+            assertCounts(before, 2, 2, 0);
+
+            // 超出每线程上限时淘汰最久未使用的分词器
+            first.submit(() -> SegmentPool.acquire(viterbi)).get();
+            first.submit(() -> SegmentPool.acquire(speed)).get();
+            first.submit(() -> SegmentPool.acquire(index)).get();
+            assertCounts(before, 3, 4, 1);
+            assertSame(segment, first.submit(() -> SegmentPool.acquire(speed)).get());
+            first.submit(() -> SegmentPool.acquire(viterbi)).get();
+            assertCounts(before, 4, 5, 2);
+        } finally {
+            SegmentPool.configure(32);
+            first.shutdown();
+            second.shutdown();
+        }
+    }
+
+    private static void assertCounts(Map<String, Object> before, long hits, long misses, long evictions) {
+        Map<String, Object> after = SegmentPool.stats();
+        assertEquals(hits, (long)after.get("hits") - (long)before.get("hits"));
+        assertEquals(misses, (long)after.get("misses") - (long)before.get("misses"));
+        assertEquals(evictions, (long)after.get("evictions") - (long)before.get("evictions"));
+    }
+}
@@ -0,0 +1,176 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.seg.common.Term;
+import org.apache.lucene.analysis.Analyzer;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 按行读取和分词的SegmentWrapper
+ * @author: Kenn
+ * @create: 2019-06-24 10:20
+ */
+public class SegmentWrapperTests extends HanLPTestCase {
+
+    @Test
+    public void testLineWithoutTerms() throws Exception {
+        Segment viterbi = HanLP.newSegment();
+        Segment segment = new Segment() {
+            @Override
+            protected List<Term> segSentence(char[] sentence) {
+                return "跳过".equals(new String(sentence)) ? Collections.<Term>emptyList() : viterbi.seg(sentence);
+            }
+        };
+        String text = "攻城狮\n跳过\n\n迎娶白富美\n跳过\n单身狗";
+        List<String> expected = new ArrayList<>(tokens(TokenizerBuilder.tokenizer(viterbi, configuration()), text));
+        expected.removeIf(token -> token.startsWith("跳过/") || token.startsWith("end/"));
+        List<String> actual = tokens(TokenizerBuilder.tokenizer(segment, configuration()), text);
+        // end()的偏移量按输出的词长累加，与跳过的行无关，只比较各个词
+        assertEquals(expected, actual.subList(0, actual.size() - 1));
+    }
+
+    @Test
+    public void testMaxChunkLengthAtSentenceDelimiter() throws Exception {
+        String text = "攻城狮逆袭单身狗。迎娶白富美！走上人生巅峰";
+        List<String> tokens = chunkedTokens(text, 10);
+        assertOffsets(text, tokens);
+        List<String> expected = tokens(TokenizerBuilder.tokenizer(HanLP.newSegment(), configuration()), "攻城狮逆袭单身狗。");
+        assertEquals(expected.subList(0, expected.size() - 1), tokens.subList(0, expected.size() - 1));
+    }
+
+    @Test
+    public void testMaxChunkLengthAtWhitespace() throws Exception {
+        String text = "Running the tests quickly and happily";
+        List<String> tokens = chunkedTokens(text, 10);
+        assertOffsets(text, tokens);
+        assertTrue(tokens.contains("Running/0-7"));
+        assertTrue(tokens.contains("quickly/18-25"));
+        assertTrue(tokens.contains("happily/30-37"));
+    }
+
+    @Test
+    public void testMaxChunkLengthHardCutPushesBackLastWord() throws Exception {
+        String text = "攻城狮逆袭单身狗迎娶白富美走上人生巅峰";
+        List<String> expected = tokens(TokenizerBuilder.tokenizer(HanLP.newSegment(), configuration()), text);
+        // 截断点落在“单身狗”中间
+        List<String> tokens = chunkedTokens(text, 7);
+        assertOffsets(text, tokens);
+        assertEquals(expected.subList(0, expected.size() - 1), tokens.subList(0, tokens.size() - 1));
+    }
+
+    @Test
+    public void testMaxChunkLengthWordFillsChunk() throws Exception {
+        // 片段只包含一个词时放大片段重新切分，不能把词从截断点切开
+        String text = "攻城狮逆袭";
+        List<String> expected = tokens(TokenizerBuilder.tokenizer(HanLP.newSegment(), configuration()), text);
+        List<String> tokens = chunkedTokens(text, 2);
+        assertOffsets(text, tokens);
+        assertEquals(expected.subList(0, expected.size() - 1), tokens.subList(0, tokens.size() - 1));
+
+        String word = CharWindowReaderTests.repeat("abcdefgh", 5);
+        assertEquals(Arrays.asList(word + "/0-40", "end/40"), chunkedTokens(word, 8));
+    }
+
+    @Test
+    public void testMaxChunkLengthSurrogatePair() throws Exception {
+        String text = "攻城\uD840\uDC00狮逆袭\uD840\uDC01单身狗";
+        for (int maxLength = 2; maxLength <= 6; maxLength++) {
+            List<String> tokens = chunkedTokens(text, maxLength);
+            assertOffsets(text, tokens);
+            for (String token : tokens.subList(0, tokens.size() - 1)) {
+                String term = token.substring(0, token.lastIndexOf('/'));
+                assertFalse(token, Character.isLowSurrogate(term.charAt(0)));
+                assertFalse(token, Character.isHighSurrogate(term.charAt(term.length() - 1)));
+            }
+        }
+    }
+
+    private static List<String> chunkedTokens(String text, int maxChunkLength) throws Exception {
+        return tokens(TokenizerBuilder.tokenizer(HanLP.newSegment(), configuration("max_chunk_length", String.valueOf(maxChunkLength))), text);
+    }
+
+    /**
+     * 每个词的起止偏移量在原文中截取的内容必须与词相同
+     */
+    private static void assertOffsets(String text, List<String> tokens) {
+        for (String token : tokens.subList(0, tokens.size() - 1)) {
+            int slash = token.lastIndexOf('/');
+            int dash = token.indexOf('-', slash);
+            int start = Integer.parseInt(token.substring(slash + 1, dash));
+            int end = Integer.parseInt(token.substring(dash + 1));
+            assertEquals(token, token.substring(0, slash), text.substring(start, end));
+        }
+    }
+
+    @Test
+    public void testCoalesceMatchesPerLine() throws Exception {
+        String[] lines = {"好的", "收到，马上处理", "", "明天几点开会？", "  ", "下午三点在会议室", "ok", "谢谢老板", "价格是12.5元",
+            "北京大学生前来应聘", "\t", "攻城狮逆袭单身狗，迎娶白富美，走上人生巅峰。", "这个方案可以", "哈哈哈哈", "张三去了北京大学"};
+        StringBuilder text = new StringBuilder("\n");
+        for (int i = 0; i < 300; i++) {
+            text.append(lines[i % lines.length]).append(i % 7 == 6 ? "\n\n" : "\n");
+        }
+        text.append("最后一行");
+        // 自适应分词的档位边界落在短行的长度范围内，合并的行分属不同档位
+        String[] adaptive = {"adaptive_nlp_max_length", "4", "adaptive_standard_max_length", "8"};
+        for (String type : new String[]{"hanlp", "index", "speed", "adaptive"}) {
+            for (String cache : new String[]{"false", "true"}) {
+                List<String> expected = tokens(coalesceAnalyzer(type, "0", cache, adaptive), text.toString());
+                List<String> actual = tokens(coalesceAnalyzer(type, "32", cache, adaptive), text.toString());
+                assertEquals(type + " cache=" + cache, expected, actual);
+            }
+        }
+    }
+
+    private static Analyzer coalesceAnalyzer(String type, String coalesceLineLength, String cache, String... settings) {
+        String[] all = Arrays.copyOf(settings, settings.length + 4);
+        all[settings.length] = "coalesce_line_length";
+        all[settings.length + 1] = coalesceLineLength;
+        all[settings.length + 2] = "enable_segment_cache";
+        all[settings.length + 3] = cache;
+        switch (type) {
+            case "speed":
+                return new HanLPSpeedAnalyzer(configuration(all));
+            case "adaptive":
+                return new HanLPAdaptiveAnalyzer(configuration(all));
+            default:
+                return analyzer(type, configuration(all));
+        }
+    }
+
+    @Ignore
+    @Test
+    public void benchmarkCoalesceShortLines() throws Exception {
+        String[] lines = {"好的", "收到，马上处理", "明天几点开会？", "下午三点在会议室", "ok", "谢谢老板", "价格是12.5元",
+            "北京大学生前来应聘", "这个方案可以", "哈哈哈哈"};
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append(lines[i % lines.length]).append('\n');
+        }
+        for (String type : new String[]{"hanlp", "speed"}) {
+            for (String setting : new String[]{"0", "32"}) {
+                Analyzer analyzer = "speed".equals(type) ? new HanLPSpeedAnalyzer(configuration("coalesce_line_length", setting)) :
+                    analyzer(type, configuration("coalesce_line_length", setting));
+                for (int round = 0; round < 8; round++) {
+                    long start = System.nanoTime();
+                    for (int i = 0; i < 200; i++) {
+                        tokens(analyzer, text.toString());
+                    }
+                    System.out.println(type + " coalesce_line_length=" + setting + ": " + (System.nanoTime() - start) / 200 / 1000 + " us/doc");
+                }
+            }
+        }
+    }
+}
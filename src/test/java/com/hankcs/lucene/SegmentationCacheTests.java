@@ -0,0 +1,44 @@
+package com.hankcs.lucene;
+
+import com.hankcs.dic.DictionaryVersion;
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.seg.common.Term;
+import org.apache.lucene.analysis.Tokenizer;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 分词结果缓存
+ * @author: Kenn
+ * @create: 2019-06-24 10:02
+ */
+public class SegmentationCacheTests extends HanLPTestCase {
+
+    @Test
+    public void testSegmentationCache() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Segment viterbi = HanLP.newSegment();
+        Segment segment = new Segment() {
+            @Override
+            protected List<Term> segSentence(char[] sentence) {
+                calls.incrementAndGet();
+                return viterbi.seg(sentence);
+            }
+        };
+        Tokenizer tokenizer = TokenizerBuilder.tokenizer(segment, configuration("enable_segment_cache", "true"));
+        String text = "攻城狮逆袭单身狗\n\n迎娶白富美";
+        List<String> expected = tokens(tokenizer, text);
+        assertEquals(2, calls.get());
+        assertEquals(expected, tokens(tokenizer, text));
+        assertEquals(2, calls.get());
+        DictionaryVersion.increment();
+        assertEquals(expected, tokens(tokenizer, text));
+        assertEquals(4, calls.get());
+    }
+}
@@ -0,0 +1,141 @@
+package com.hankcs.lucene;
+
+import com.hankcs.hanlp.dictionary.CoreDictionary;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 索引模式子词裁剪
+ * @author: Kenn
+ * @create: 2019-06-24 10:13
+ */
+public class SubWordPruningTests extends HanLPTestCase {
+
+    @Test
+    public void testSubWordPruning() throws Exception {
+        String text = "中华人民共和国成立了，北京大学生前来应聘，中国科学院计算技术研究所发布了三百多个新产品，" + TEXT;
+        List<String> full = tokens(analyzer("index", configuration()), text);
+        List<String> coarse = tokens(analyzer("hanlp", configuration()), text);
+        assertEquals(full, tokens(analyzer("index", configuration("index_mode_min_length", "2")), text));
+        String[][] settings = {{"index_mode_min_length", "3"}, {"index_mode_max_sub_words", "1"},
+            {"index_mode_max_frequency", "1000"}, {"index_mode_max_sub_words", "2", "index_mode_max_frequency", "1000"}};
+        for (String[] setting : settings) {
+            List<String> pruned = tokens(analyzer("index", configuration(setting)), text);
+            // 裁剪后的结果是原结果的子序列，且粗粒度词全部保留
+            int next = 0;
+            for (String token : pruned) {
+                next = full.subList(next, full.size()).indexOf(token) + next + 1;
+                assertTrue(token, next > 0);
+            }
+            assertTrue(pruned.toString(), pruned.containsAll(coarse));
+            assertTrue(pruned.toString(), pruned.size() < full.size());
+            int start = 0;
+            int end = 0;
+            int subWords = 0;
+            for (String token : pruned) {
+                String[] parts = token.split("/");
+                String[] span = parts[1].split("-");
+                if (Integer.parseInt(span[0]) >= end) {
+                    end = Integer.parseInt(span[1]);
+                    subWords = 0;
+                    continue;
+                }
+                subWords++;
+                if ("3".equals(setting[1])) {
+                    assertTrue(token, parts[0].length() >= 3);
+                }
+                if ("index_mode_max_sub_words".equals(setting[0])) {
+                    assertTrue(token, subWords <= Integer.parseInt(setting[1]));
+                }
+                if (setting.length > 2 || "index_mode_max_frequency".equals(setting[0])) {
+                    assertTrue(token, CoreDictionary.getTermFrequency(parts[0]) <= 1000);
+                }
+            }
+        }
+        List<String> longest = tokens(analyzer("index", configuration("index_mode_max_sub_words", "1")), text);
+        assertTrue(longest.toString(), longest.contains("共和国/4-7/n"));
+        assertTrue(longest.toString(), !longest.contains("中华/0-2/nz"));
+    }
+
+    /**
+     * 用hanlp_index把样本语料写入Lucene索引，对比各裁剪配置的索引大小、写入和合并耗时。
+     * 可以用-Dhanlp.benchmark.corpus指定每行一句的语料文件，否则使用内置的句子
+     */
+    @Ignore
+    @Test
+    public void benchmarkSubWordPruning() throws Exception {
+        String corpus = System.getProperty("hanlp.benchmark.corpus");
+        String[] sentences = corpus != null ? Files.readAllLines(Paths.get(corpus)).toArray(new String[0]) : new String[]{"中华人民共和国成立了，北京大学生前来应聘。", "中国科学院计算技术研究所发布了三百多个新产品。",
+            "国务院总理在人民大会堂会见了来访的德国总理。", "广东省深圳市今年前三季度地区生产总值同比增长百分之七点五。",
+            "江西鄱阳湖干枯，中国最大淡水湖变成大草原。", "上海交通大学图书馆新馆于本周末正式对外开放。",
+            "新能源汽车销售量连续五个月保持两位数增长。", "全国人民代表大会常务委员会审议通过了环境保护法修正案。",
+            "攻城狮逆袭单身狗，迎娶白富美，走上人生巅峰。", "互联网金融监管政策将进一步完善。"};
+        Random random = new Random(42);
+        List<String> docs = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder doc = new StringBuilder();
+            for (int j = 0; j < 8; j++) {
+                doc.append(sentences[random.nextInt(sentences.length)]);
+            }
+            docs.add(doc.toString());
+        }
+        String[][] settings = {{}, {"index_mode_min_length", "3"}, {"index_mode_max_sub_words", "2"},
+            {"index_mode_max_frequency", "500"}, {"index_mode_max_sub_words", "2", "index_mode_max_frequency", "500"}};
+        // 第一轮只用于预热词典和JIT
+        for (int round = 0; round < 2; round++) {
+            for (String[] setting : settings) {
+                Path path = Files.createTempDirectory("hanlp-index");
+                try (Directory directory = FSDirectory.open(path)) {
+                    // 写入时不合并，每1000篇一个段，最后统一合并成一个段
+                    IndexWriterConfig config = new IndexWriterConfig(analyzer("index", configuration(setting)))
+                        .setMaxBufferedDocs(1000).setMergePolicy(NoMergePolicy.INSTANCE);
+                    long index = System.nanoTime();
+                    long merge;
+                    try (IndexWriter writer = new IndexWriter(directory, config)) {
+                        for (String text : docs) {
+                            Document doc = new Document();
+                            doc.add(new TextField("f", text, Field.Store.NO));
+                            writer.addDocument(doc);
+                        }
+                        writer.commit();
+                        index = System.nanoTime() - index;
+                        merge = System.nanoTime();
+                        writer.getConfig().setMergePolicy(new TieredMergePolicy());
+                        writer.forceMerge(1);
+                        writer.commit();
+                        merge = System.nanoTime() - merge;
+                    }
+                    long bytes = 0;
+                    for (String file : directory.listAll()) {
+                        bytes += directory.fileLength(file);
+                    }
+                    if (round > 0) {
+                        System.out.println(Arrays.toString(setting) + ": " + bytes / 1024 + " KB, index " +
+                            index / 1_000_000 + " ms, merge " + merge / 1_000_000 + " ms");
+                    }
+                }
+            }
+        }
+    }
+}
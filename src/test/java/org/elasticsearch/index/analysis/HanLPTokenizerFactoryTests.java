@@ -0,0 +1,54 @@
+package org.elasticsearch.index.analysis;
+
+import com.hankcs.lucene.HanLPTestCase;
+import com.hankcs.lucene.SegmentEngine;
+import com.hankcs.lucene.SegmentSpec;
+import com.hankcs.lucene.SegmentationProfile;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 各分词类型编译出的分词引擎和配置
+ * @author: Kenn
+ * @create: 2019-06-24 10:28
+ */
+public class HanLPTokenizerFactoryTests extends HanLPTestCase {
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testEngineTable() {
+        // 分词类型、引擎、索引模式、自定义词典、命名实体识别、自适应
+        Object[][] table = {
+            {HanLPType.HANLP, SegmentEngine.VITERBI, false, true, true, false},
+            {HanLPType.STANDARD, SegmentEngine.VITERBI, false, true, true, false},
+            {HanLPType.INDEX, SegmentEngine.VITERBI, true, true, true, false},
+            {HanLPType.NLP, SegmentEngine.VITERBI, false, true, true, false},
+            {HanLPType.N_SHORT, SegmentEngine.N_SHORT, false, false, true, false},
+            {HanLPType.DIJKSTRA, SegmentEngine.DIJKSTRA, false, false, true, false},
+            {HanLPType.CRF, SegmentEngine.CRF, false, true, true, false},
+            {HanLPType.SPEED, SegmentEngine.SPEED, false, false, true, false},
+            {HanLPType.ADAPTIVE, SegmentEngine.VITERBI, false, true, true, true},
+            {HanLPType.PERCEPTRON, SegmentEngine.PERCEPTRON, false, true, true, false},
+            {HanLPType.GRAPH, SegmentEngine.VITERBI, true, true, true, false},
+        };
+        assertEquals(HanLPType.values().length, table.length);
+        for (Object[] row : table) {
+            HanLPType type = (HanLPType)row[0];
+            SegmentationProfile profile = HanLPTokenizerFactory.compile(type, configuration());
+            SegmentSpec spec = profile.getSpec();
+            assertEquals(type.name(), row[1], spec.getEngine());
+            assertEquals(type.name(), row[2], spec.isIndexMode());
+            assertEquals(type.name(), row[3], spec.isCustomDictionary());
+            assertEquals(type.name(), row[4], spec.isRecognition());
+            assertEquals(type.name(), row[5], profile.isAdaptive());
+        }
+        // hanlp_nlp开启全部命名实体识别和词性标注
+        SegmentSpec nlp = HanLPTokenizerFactory.compile(HanLPType.NLP, configuration()).getSpec();
+        assertEquals(nlp.withRecognition(), nlp);
+        // hanlp_speed显式开启时使用自定义词典
+        assertEquals(true, HanLPTokenizerFactory.compile(HanLPType.SPEED,
+            configuration("enable_custom_dictionary", "true")).getSpec().isCustomDictionary());
+    }
+}
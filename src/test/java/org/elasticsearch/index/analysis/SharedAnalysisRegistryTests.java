@@ -0,0 +1,106 @@
+package org.elasticsearch.index.analysis;
+
+import com.hankcs.lucene.HanLPTestCase;
+import com.hankcs.lucene.SegmentationProfile;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexSettings;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @project: elasticsearch-analysis-hanlp
+ * @description: 跨索引共享analyzer
+ * @author: Kenn
+ * @create: 2019-06-24 10:07
+ */
+public class SharedAnalysisRegistryTests extends HanLPTestCase {
+
+    @Test
+    public void testSharedAnalysis() throws Exception {
+        Settings settings = Settings.builder().put("type", "hanlp").put("enable_remote_dict", "false")
+            .put("enable_stop_dictionary", "true").build();
+        Analyzer first = new HanLPAnalyzerProvider(indexSettings("logs-2019.06.10"), environment, "hanlp", settings,
+            HanLPType.HANLP).get();
+        Analyzer second = new HanLPAnalyzerProvider(indexSettings("logs-2019.06.11"), environment, "hanlp",
+            Settings.builder().put(settings).put("index.version.created", Version.CURRENT).build(), HanLPType.HANLP).get();
+        List<String> expected = tokens(first, TEXT);
+        // 共享同一个analyzer，一个索引关闭后另一个仍可使用
+        TokenStream stream = first.tokenStream("f", TEXT);
+        stream.close();
+        try (TokenStream shared = second.tokenStream("f", TEXT)) {
+            assertSame(stream, shared);
+        }
+        first.close();
+        assertEquals(expected, tokens(second, TEXT));
+        Analyzer other = new HanLPAnalyzerProvider(indexSettings("logs-2019.06.12"), environment, "hanlp",
+            Settings.builder().put(settings).put("enable_stop_dictionary", "false").build(), HanLPType.HANLP).get();
+        assertTrue(expected.size() < tokens(other, TEXT).size());
+    }
+
+    @Test
+    public void testReleaseOnLastClose() throws Exception {
+        Settings settings = Settings.builder().put("type", "hanlp").put("enable_remote_dict", "false")
+            .put("enable_number_quantifier_recognize", "true").build();
+        long analyzers = stat("analyzers");
+        long releases = stat("releases");
+        Analyzer first = new HanLPAnalyzerProvider(indexSettings("metrics-2019.06.10"), environment, "hanlp", settings,
+            HanLPType.HANLP).get();
+        Analyzer second = new HanLPAnalyzerProvider(indexSettings("metrics-2019.06.11"), environment, "hanlp", settings,
+            HanLPType.HANLP).get();
+        assertEquals(analyzers + 1, stat("analyzers"));
+        List<String> expected = tokens(first, TEXT);
+        first.close();
+        // 重复关闭不会重复释放
+        first.close();
+        assertEquals(analyzers + 1, stat("analyzers"));
+        assertEquals(expected, tokens(second, TEXT));
+        second.close();
+        assertEquals(analyzers, stat("analyzers"));
+        assertEquals(releases + 1, stat("releases"));
+        // 之后新建的索引重新创建共享的analyzer
+        long misses = stat("misses");
+        Analyzer third = new HanLPAnalyzerProvider(indexSettings("metrics-2019.06.12"), environment, "hanlp", settings,
+            HanLPType.HANLP).get();
+        assertEquals(misses + 1, stat("misses"));
+        assertEquals(expected, tokens(third, TEXT));
+        third.close();
+    }
+
+    @Test
+    public void testProfileReleasedWhenUnreferenced() throws Exception {
+        Settings settings = Settings.builder().put("type", "hanlp").put("enable_remote_dict", "false")
+            .put("enable_japanese_name_recognize", "true").build();
+        long profiles = stat("profiles");
+        SegmentationProfile profile = SharedAnalysisRegistry.profile(HanLPType.HANLP, settings,
+            () -> HanLPTokenizerFactory.compile(HanLPType.HANLP, configuration()));
+        assertSame(profile, SharedAnalysisRegistry.profile(HanLPType.HANLP, settings, () -> {
+            throw new AssertionError("profile should be shared");
+        }));
+        assertEquals(profiles + 1, stat("profiles"));
+        profile = null;
+        for (int i = 0; i < 100 && stat("profiles") > profiles; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(profiles, stat("profiles"));
+    }
+
+    private static long stat(String name) {
+        return ((Number)SharedAnalysisRegistry.stats().get(name)).longValue();
+    }
+
+    private static IndexSettings indexSettings(String index) {
+        Settings settings = Settings.builder().put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+            .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1).put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0).build();
+        return new IndexSettings(IndexMetaData.builder(index).settings(settings).build(), Settings.EMPTY);
+    }
+}